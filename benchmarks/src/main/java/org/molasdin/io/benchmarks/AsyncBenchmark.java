@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.DeviceInputChannel;
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.serial.AsyncSerial;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.molasdin.io.serial.SerialReactor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request/response transactions on many pseudo terminal ports.
+ * Master ends echo requests through reactor, slave ends issue them either with
+ * completion based AsyncSerial or with executor backed readNoBlock/writeNoBlock.
+ * Each invocation runs one transaction on every port.
+ * Thread count is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncBenchmark {
+
+    @Param({"1", "100"})
+    public int ports;
+
+    @Param({"async", "noBlock"})
+    public String mode;
+
+    @Param({"16"})
+    public int size;
+
+    private PseudoTerminal[] terminals;
+    private SerialReactor reactor;
+    private AsyncSerial[] echoes;
+    private AsyncSerial[] clients;
+    private ByteBuffer[] requests;
+    private ByteBuffer[] responses;
+    private CompletableFuture<?>[] transactions;
+    private Future<?>[] writes;
+    private Future<?>[] reads;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminals = new PseudoTerminal[ports];
+        echoes = new AsyncSerial[ports];
+        clients = new AsyncSerial[ports];
+        requests = new ByteBuffer[ports];
+        responses = new ByteBuffer[ports];
+        transactions = new CompletableFuture<?>[ports];
+        writes = new Future<?>[ports];
+        reads = new Future<?>[ports];
+        reactor = new SerialReactor(1);
+        for (int i = 0; i < ports; i++) {
+            terminals[i] = PseudoTerminal.open();
+            echoes[i] = new AsyncSerial(reactor, terminals[i].master());
+            echo(echoes[i], ByteBuffer.allocateDirect(size));
+            requests[i] = ByteBuffer.allocateDirect(size);
+            responses[i] = ByteBuffer.allocateDirect(size);
+            if ("async".equals(mode)) {
+                clients[i] = new AsyncSerial(reactor, terminals[i].slave());
+            } else {
+                terminals[i].slave().input().setExactMode(true);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s, ports: %d, live threads: %d%n", mode, ports, Thread.activeCount());
+        for (int i = 0; i < ports; i++) {
+            if (clients[i] != null) {
+                clients[i].close();
+            }
+            echoes[i].close();
+        }
+        reactor.close();
+        for (PseudoTerminal terminal : terminals) {
+            terminal.close();
+        }
+    }
+
+    @Benchmark
+    public int transaction() throws Exception {
+        if ("async".equals(mode)) {
+            for (int i = 0; i < ports; i++) {
+                AsyncSerial client = clients[i];
+                ByteBuffer request = requests[i];
+                ByteBuffer response = responses[i];
+                request.clear();
+                response.clear();
+                transactions[i] = client.write(request).thenCompose(total -> client.readFully(response));
+            }
+            CompletableFuture.allOf(transactions).get();
+        } else {
+            for (int i = 0; i < ports; i++) {
+                DeviceOutputChannel output = terminals[i].slave().output();
+                DeviceInputChannel input = terminals[i].slave().input();
+                requests[i].clear();
+                responses[i].clear();
+                writes[i] = output.writeNoBlock(requests[i]);
+                reads[i] = input.readNoBlock(responses[i]);
+            }
+            for (int i = 0; i < ports; i++) {
+                writes[i].get();
+                reads[i].get();
+            }
+        }
+        return responses[0].position();
+    }
+
+    private static void echo(AsyncSerial serial, ByteBuffer buffer) {
+        buffer.clear();
+        serial.readFully(buffer)
+                .thenCompose(total -> {
+                    buffer.flip();
+                    return serial.write(buffer);
+                })
+                .whenComplete((total, error) -> {
+                    if (error == null) {
+                        echo(serial, buffer);
+                    }
+                });
+    }
+}
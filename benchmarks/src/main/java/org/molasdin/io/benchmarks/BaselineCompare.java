@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH json results, usually stored baseline with fresh run.
+ * Results are matched by benchmark name and parameters, primary and secondary
+ * metrics are compared. Change which is worse than threshold is reported
+ * as regression and makes exit status non zero. Secondary metrics of unknown
+ * direction are printed but not judged.
+ *
+ * Usage: BaselineCompare baseline.json current.json [thresholdPercent]
+ */
+public class BaselineCompare {
+
+    private static final double DEFAULT_THRESHOLD = 10.0;
+    private static final Set<String> WORK_COUNTERS = new HashSet<>(Arrays.asList("bytes", "bits"));
+    private static final Set<String> COST_COUNTERS = new HashSet<>(Arrays.asList("syscalls"));
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCompare baseline.json current.json [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, Score> baseline = scores(args[0]);
+        Map<String, Score> current = scores(args[1]);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", after.value, "new");
+                continue;
+            }
+            double change = before.value == 0 ? 0 : (after.value - before.value) * 100.0 / before.value;
+            if (after.higherIsBetter == null) {
+                System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  not judged%n", entry.getKey(), before.value,
+                        after.value, change);
+                continue;
+            }
+            double gain = after.higherIsBetter ? change : -change;
+            boolean regression = gain < -threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value, after.value,
+                    change, regression ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regressions worse than %.1f%%%n", regressions, threshold);
+        if (regressions != 0) {
+            System.exit(1);
+        }
+    }
+
+    private static final class Score {
+        private final double value;
+        private final Boolean higherIsBetter;
+
+        Score(double value, Boolean higherIsBetter) {
+            this.value = value;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Score> scores(String file) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        List<Object> runs = (List<Object>) new JsonReader(text).read();
+        Map<String, Score> result = new TreeMap<>();
+        for (Object item : runs) {
+            Map<String, Object> run = (Map<String, Object>) item;
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            Map<String, Object> params = (Map<String, Object>) run.get("params");
+            if (params != null) {
+                for (Map.Entry<String, Object> param : new TreeMap<>(params).entrySet()) {
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue());
+                }
+            }
+            //throughput is better when higher, times are better when lower
+            boolean higherIsBetter = "thrpt".equals(run.get("mode"));
+            Map<String, Object> primary = (Map<String, Object>) run.get("primaryMetric");
+            result.put(key.toString(), new Score((Double) primary.get("score"), higherIsBetter));
+            Map<String, Object> secondary = (Map<String, Object>) run.get("secondaryMetrics");
+            if (secondary != null) {
+                for (Map.Entry<String, Object> metric : secondary.entrySet()) {
+                    Map<String, Object> values = (Map<String, Object>) metric.getValue();
+                    result.put(key + " :" + metric.getKey(),
+                            new Score((Double) values.get("score"), direction(metric.getKey(), higherIsBetter)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Percentiles and counted work are measured like primary metric, costs such as
+     * system calls, allocation and drops are better when lower in any mode
+     * @return null if direction of metric is unknown
+     */
+    private static Boolean direction(String metric, boolean primaryHigherIsBetter) {
+        String name = metric.startsWith("\u00b7") ? metric.substring(1) : metric;
+        if (name.matches("p[01]\\.\\d+") || WORK_COUNTERS.contains(name)) {
+            return primaryHigherIsBetter;
+        }
+        if (COST_COUNTERS.contains(name) || name.startsWith("gc.") || name.contains("drop")) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Minimal reader for json produced by JMH, numbers are read as doubles
+     */
+    private static final class JsonReader {
+        private final String text;
+        private int pos = 0;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object read() {
+            skipSpaces();
+            char current = text.charAt(pos);
+            if (current == '{') {
+                return readObject();
+            }
+            if (current == '[') {
+                return readArray();
+            }
+            //JMH writes scores which are not numbers as strings
+            if (text.startsWith("\"NaN\"", pos)) {
+                pos += 5;
+                return Double.NaN;
+            }
+            if (current == '"') {
+                return readString();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            return readNumber();
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            pos++;
+            skipSpaces();
+            if (text.charAt(pos) == '}') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipSpaces();
+                String name = readString();
+                skipSpaces();
+                expect(':');
+                result.put(name, read());
+                skipSpaces();
+                if (text.charAt(pos++) == '}') {
+                    return result;
+                }
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> result = new ArrayList<>();
+            pos++;
+            skipSpaces();
+            if (text.charAt(pos) == ']') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                result.add(read());
+                skipSpaces();
+                if (text.charAt(pos++) == ']') {
+                    return result;
+                }
+            }
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            char current;
+            while ((current = text.charAt(pos++)) != '"') {
+                if (current == '\\') {
+                    char escaped = text.charAt(pos++);
+                    switch (escaped) {
+                        case 'n':
+                            result.append('\n');
+                            break;
+                        case 't':
+                            result.append('\t');
+                            break;
+                        case 'u':
+                            result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default:
+                            result.append(escaped);
+                    }
+                } else {
+                    result.append(current);
+                }
+            }
+            return result.toString();
+        }
+
+        private Double readNumber() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            return Double.valueOf(text.substring(start, pos));
+        }
+
+        private void expect(char value) {
+            if (text.charAt(pos++) != value) {
+                throw new IllegalArgumentException("Unexpected character at " + (pos - 1));
+            }
+        }
+
+        private void skipSpaces() {
+            while (Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
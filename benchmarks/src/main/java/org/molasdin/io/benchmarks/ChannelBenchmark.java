@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.DeviceInputChannel;
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of channels over pseudo terminal pair.
+ * Each operation writes one chunk to master end and reads it back from slave end
+ * on the same thread, with exact mode read loop is performed by channel.
+ * "bytes" and "syscalls" counters are reported per second, their ratio is
+ * amount of read and write system calls per byte. System calls are taken from
+ * "/proc/thread-self/io" and are reported as 0 where it is not available.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBenchmark {
+
+    private static final Path IO_STATS = Paths.get("/proc/thread-self/io");
+
+    @Param({"1", "64", "4096"})
+    public int chunk;
+
+    @Param({"direct", "heap"})
+    public String buffer;
+
+    @Param({"false", "true"})
+    public boolean exact;
+
+    private PseudoTerminal terminal;
+    private DeviceOutputChannel output;
+    private DeviceInputChannel input;
+    private ByteBuffer out;
+    private ByteBuffer in;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+        public long syscalls;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            syscalls = 0;
+            start = syscalls();
+        }
+
+        @TearDown(Level.Iteration)
+        public void collect() {
+            long current = syscalls();
+            syscalls = start < 0 || current < 0 ? 0 : current - start;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminal = PseudoTerminal.open();
+        output = terminal.master().output();
+        input = terminal.slave().input();
+        output.setExactMode(exact);
+        input.setExactMode(exact);
+        boolean direct = "direct".equals(buffer);
+        out = direct ? ByteBuffer.allocateDirect(chunk) : ByteBuffer.allocate(chunk);
+        in = direct ? ByteBuffer.allocateDirect(chunk) : ByteBuffer.allocate(chunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public int transfer(Counters counters) throws IOException {
+        out.clear();
+        in.clear();
+        while (out.hasRemaining()) {
+            output.write(out);
+        }
+        while (in.hasRemaining()) {
+            if (input.read(in) < 0) {
+                throw new IOException("Read failed");
+            }
+        }
+        counters.bytes += chunk;
+        return in.position();
+    }
+
+    /**
+     * @return read and write system calls of current thread, -1 if unknown
+     */
+    private static long syscalls() {
+        try {
+            long total = 0;
+            for (String line : Files.readAllLines(IO_STATS, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("syscr:") || line.startsWith("syscw:")) {
+                    total += Long.parseLong(line.substring(6).trim());
+                }
+            }
+            return total;
+        } catch (IOException | RuntimeException ex) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.frame.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and encoding throughput of framing codecs.
+ * One operation is one byte of encoded stream, so ops/us equals MB/s.
+ * Stream is decoded in parts of "chunk" bytes as they would be returned by reads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+
+    private static final int FRAMES = 4096;
+    private static final int STREAM_SIZE = 1 << 20;
+
+    @Param({"slip", "cobs", "length", "delimiter"})
+    private String codec;
+
+    @Param({"64", "1024"})
+    private int payload;
+
+    @Param({"256"})
+    private int chunk;
+
+    private FrameDecoder decoder;
+    private FrameEncoder encoder;
+    private ByteBuffer stream;
+    private ByteBuffer[] payloads;
+    private ByteBuffer target;
+    private Blackhole blackhole;
+    private final FrameHandler handler = frame -> blackhole.consume(frame.remaining());
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        decoder = create();
+        encoder = (FrameEncoder) create();
+        Random random = new Random(1);
+        payloads = new ByteBuffer[FRAMES];
+        target = ByteBuffer.allocate(encoder.maxEncodedLength(payload));
+        ByteBuffer tmp = ByteBuffer.allocate(STREAM_SIZE * 3);
+        for (int i = 0; i < FRAMES; i++) {
+            byte[] data = new byte[payload];
+            for (int j = 0; j < data.length; j++) {
+                //text like data for delimiter framing, binary for others
+                data[j] = codec.equals("delimiter") ? (byte) (' ' + random.nextInt(90)) : (byte) random.nextInt(256);
+            }
+            payloads[i] = ByteBuffer.wrap(data);
+            if (tmp.position() < STREAM_SIZE) {
+                encoder.encode(payloads[i].duplicate(), tmp);
+            }
+        }
+        tmp.flip();
+        stream = ByteBuffer.allocate(STREAM_SIZE);
+        tmp.limit(STREAM_SIZE);
+        stream.put(tmp);
+        stream.flip();
+    }
+
+    private AbstractFrameCodec create() {
+        switch (codec) {
+            case "slip":
+                return new SlipCodec(payload);
+            case "cobs":
+                return new CobsCodec(payload);
+            case "length":
+                return new LengthPrefixedCodec(2, ByteOrder.BIG_ENDIAN, payload);
+            default:
+                return new DelimiterCodec(new byte[]{'\r', '\n'}, payload);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_SIZE)
+    public void decode() {
+        for (int offset = 0; offset < STREAM_SIZE; offset += chunk) {
+            stream.limit(Math.min(offset + chunk, STREAM_SIZE)).position(offset);
+            decoder.decode(stream, handler);
+        }
+    }
+
+    /**
+     * Encodes frames until stream size of payload bytes is processed
+     */
+    @Benchmark
+    @OperationsPerInvocation(STREAM_SIZE)
+    public int encode() {
+        int total = 0;
+        int index = 0;
+        while (total < STREAM_SIZE) {
+            ByteBuffer data = payloads[index];
+            index = (index + 1) % FRAMES;
+            data.clear();
+            target.clear();
+            encoder.encode(data, target);
+            total += payload;
+        }
+        return target.position();
+    }
+}
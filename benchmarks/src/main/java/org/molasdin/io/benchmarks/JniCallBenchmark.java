@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.DeviceInputChannel;
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.InPin;
+import org.molasdin.io.serial.InputSignal;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of small native calls.
+ * Run against two versions of library to compare call paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JniCallBenchmark {
+
+    private PseudoTerminal terminal;
+    private DeviceOutputChannel output;
+    private DeviceInputChannel input;
+    private InPin cts;
+    private ByteBuffer directOut;
+    private ByteBuffer directIn;
+    private ByteBuffer heapOut;
+    private ByteBuffer heapIn;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminal = PseudoTerminal.open();
+        output = terminal.master().output();
+        input = terminal.slave().input();
+        cts = terminal.slave().inputPinFor(InputSignal.CTS);
+        directOut = ByteBuffer.allocateDirect(1);
+        directIn = ByteBuffer.allocateDirect(1);
+        heapOut = ByteBuffer.allocate(1);
+        heapIn = ByteBuffer.allocate(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    /**
+     * One byte written to one end and read from another, two native calls
+     */
+    @Benchmark
+    public int directByteRoundTrip() throws IOException {
+        directOut.clear();
+        directIn.clear();
+        output.write(directOut);
+        return input.read(directIn);
+    }
+
+    @Benchmark
+    public int heapByteRoundTrip() throws IOException {
+        heapOut.clear();
+        heapIn.clear();
+        output.write(heapOut);
+        return input.read(heapIn);
+    }
+
+    /**
+     * Pin read, lines of pseudo terminal are emulated so no native call is made
+     */
+    @Benchmark
+    public Boolean pinValue() {
+        return cts.value();
+    }
+}
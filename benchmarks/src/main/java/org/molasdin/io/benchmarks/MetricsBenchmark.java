@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.metrics.DeviceMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording metrics on read path, with and without timing.
+ * "baseline" measures empty call for reference
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean timing;
+
+    private DeviceMetrics metrics;
+    private int result = 64;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        metrics = new DeviceMetrics("benchmark");
+        metrics.setTiming(timing);
+    }
+
+    @Benchmark
+    public int baseline() {
+        return result;
+    }
+
+    @Benchmark
+    public int recordRead() {
+        long start = metrics.start();
+        metrics.readDone(start, result);
+        return result;
+    }
+
+    @Benchmark
+    public void recordListener() {
+        metrics.listenerCalled(System.nanoTime());
+    }
+}
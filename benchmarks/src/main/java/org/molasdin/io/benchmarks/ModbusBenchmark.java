@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.modbus.RtuMaster;
+import org.molasdin.io.modbus.RtuSlave;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request rate of Modbus RTU master against slave on other end of pseudo terminal.
+ * Every benchmark thread owns its own bus, so thread count shows scaling across ports.
+ * Pseudo terminals do not delay bytes, rate is bounded by T3.5 gaps and timing for given baud.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModbusBenchmark {
+
+    @Param({"9600", "115200", "921600"})
+    public int baud;
+
+    @Param({"10", "125"})
+    public int registers;
+
+    private PseudoTerminal terminal;
+    private RtuSlave slave;
+    private RtuMaster master;
+    private int[] values;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminal = PseudoTerminal.open();
+        terminal.master().setBaudRateValue(baud);
+        terminal.slave().setBaudRateValue(baud);
+        slave = new RtuSlave(terminal.slave(), 1, 125).start();
+        master = new RtuMaster(terminal.master());
+        values = new int[registers];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%nbaud: %d, transactions: %d, timeouts: %d%n",
+                baud, master.transactions(), master.timeouts());
+        master.close();
+        slave.close();
+        terminal.close();
+    }
+
+    @Benchmark
+    public int readHoldingRegisters() {
+        return master.readHoldingRegisters(1, 0, registers, values, 0);
+    }
+}
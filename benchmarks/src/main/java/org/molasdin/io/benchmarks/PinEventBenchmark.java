@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.PinEventPolicy;
+import org.molasdin.io.SignalsProcessor;
+import org.molasdin.io.metrics.DeviceMetrics;
+import org.molasdin.io.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storm of edges on all pins of synthetic processor, each operation waits until
+ * every edge is delivered or dropped by ring policy. Listener latency percentiles,
+ * dropped events and peak amount of threads are printed after trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinEventBenchmark {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @Param({"DROP_OLDEST", "COALESCE", "BLOCK"})
+    public PinEventPolicy policy;
+
+    @Param({"4", "32"})
+    public int pins;
+
+    @Param({"100"})
+    public int edges;
+
+    @Param({"64"})
+    public int capacity;
+
+    @Param({"200"})
+    public int listenerWork;
+
+    private Storm storm;
+    private DeviceMetrics metrics;
+    private final AtomicLong delivered = new AtomicLong();
+    private long offered;
+    private int threadsBefore;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        metrics = new DeviceMetrics("storm");
+        storm = new Storm(pins);
+        storm.setMetrics(metrics);
+        storm.setEventPolicy(policy, capacity);
+        for (int i = 0; i < pins; i++) {
+            storm.addPinListener(event -> {
+                Blackhole.consumeCPU(listenerWork);
+                delivered.incrementAndGet();
+            }, i);
+        }
+        storm.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storm.stop();
+        LatencyHistogram latency = metrics.listenerLatency();
+        System.out.printf("%nlatency p50 %d us, p99 %d us, max %d us; dropped %d of %d; peak threads +%d%n",
+                TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.5)),
+                TimeUnit.NANOSECONDS.toMicros(latency.percentile(0.99)),
+                TimeUnit.NANOSECONDS.toMicros(latency.max()),
+                storm.droppedEvents(), offered,
+                ManagementFactory.getThreadMXBean().getPeakThreadCount() - threadsBefore);
+    }
+
+    @Benchmark
+    public long storm() {
+        offered = offered + (long) edges * pins;
+        long start = System.nanoTime();
+        storm.emit(edges);
+        while (delivered.get() + storm.droppedEvents() < offered) {
+            if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                throw new IllegalStateException("Events were not delivered");
+            }
+            Thread.yield();
+        }
+        return delivered.get();
+    }
+
+    /**
+     * Toggles all pins on each pass while edges are requested
+     */
+    private static final class Storm extends SignalsProcessor {
+        private final int[] signals;
+        private int requested;
+        private boolean stopped;
+        private boolean level;
+
+        Storm(int pins) {
+            signals = new int[pins];
+            for (int i = 0; i < pins; i++) {
+                signals[i] = i;
+            }
+        }
+
+        synchronized void emit(int amount) {
+            requested = requested + amount;
+            notifyAll();
+        }
+
+        @Override
+        protected void analyzeSignals() {
+            synchronized (this) {
+                if (requested == 0 && !stopped) {
+                    try {
+                        wait(10);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (requested == 0) {
+                    return;
+                }
+                requested--;
+            }
+            level = !level;
+            for (int id : signals) {
+                change(id, level);
+            }
+        }
+
+        @Override
+        protected void prepareToCheckSignals(int[] signals) {
+            stopped = false;
+        }
+
+        @Override
+        protected int[] supportedSignals() {
+            return signals;
+        }
+
+        @Override
+        protected synchronized void terminateSignalsWait() {
+            stopped = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.util.DirectBufferPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Direct allocation against pooled buffers.
+ * Sample mode shows tail latency caused by direct memory reclamation,
+ * so run it with small "-XX:MaxDirectMemorySize" to make it visible.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=64m")
+@Threads(4)
+public class PoolBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    private int size;
+
+    private DirectBufferPool cached;
+    private DirectBufferPool shared;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cached = new DirectBufferPool();
+        shared = new DirectBufferPool(DirectBufferPool.DEFAULT_MIN_SIZE, DirectBufferPool.DEFAULT_MAX_SIZE,
+                DirectBufferPool.DEFAULT_BUFFERS_PER_CLASS, false, false);
+    }
+
+    @Benchmark
+    public ByteBuffer allocateDirect() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(0, (byte) 1);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer pooledThreadCache() {
+        ByteBuffer buffer = cached.acquire(size);
+        buffer.put(0, (byte) 1);
+        cached.release(buffer);
+        return buffer;
+    }
+
+    /**
+     * All threads go through shared queues
+     */
+    @Benchmark
+    public ByteBuffer pooledShared() {
+        ByteBuffer buffer = shared.acquire(size);
+        buffer.put(0, (byte) 1);
+        shared.release(buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.DeviceInputChannel;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.molasdin.io.serial.SerialReactor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of many pseudo terminal ports served by reactor
+ * compared with thread per port blocking reads.
+ * Each invocation writes one chunk to every port and waits until all of them are consumed.
+ * Thread count is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactorBenchmark {
+
+    @Param({"1", "10", "100", "500"})
+    public int ports;
+
+    @Param({"64"})
+    public int chunk;
+
+    @Param({"reactor", "threadPerPort"})
+    public String mode;
+
+    @Param({"2"})
+    public int loops;
+
+    private PseudoTerminal[] terminals;
+    private ByteBuffer[] chunks;
+    private SerialReactor reactor;
+    private final AtomicLong received = new AtomicLong();
+    private long expected;
+    private final List<Thread> readers = new ArrayList<>();
+    private volatile boolean terminate = false;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminals = new PseudoTerminal[ports];
+        chunks = new ByteBuffer[ports];
+        for (int i = 0; i < ports; i++) {
+            terminals[i] = PseudoTerminal.open();
+            chunks[i] = ByteBuffer.allocateDirect(chunk);
+        }
+        if ("reactor".equals(mode)) {
+            reactor = new SerialReactor(loops);
+            for (PseudoTerminal terminal : terminals) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+                reactor.register(terminal.slave(), SerialReactor.OP_READ, (key, ops) -> {
+                    buffer.clear();
+                    int total = key.read(buffer);
+                    if (total > 0) {
+                        received.addAndGet(total);
+                    }
+                });
+            }
+        } else {
+            for (PseudoTerminal terminal : terminals) {
+                terminal.slave().setReadTimeout(100L);
+                DeviceInputChannel input = terminal.slave().input();
+                Thread reader = new Thread(() -> {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+                    while (!terminate) {
+                        buffer.clear();
+                        try {
+                            int total = input.read(buffer);
+                            if (total > 0) {
+                                received.addAndGet(total);
+                            }
+                        } catch (IOException ex) {
+                            return;
+                        }
+                    }
+                });
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s, ports: %d, live threads: %d%n", mode, ports, Thread.activeCount());
+        if (reactor != null) {
+            reactor.close();
+        }
+        terminate = true;
+        for (Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (PseudoTerminal terminal : terminals) {
+            terminal.close();
+        }
+    }
+
+    @Benchmark
+    public long roundTrip() throws IOException {
+        expected += (long) ports * chunk;
+        for (int i = 0; i < ports; i++) {
+            ByteBuffer buffer = chunks[i];
+            buffer.clear();
+            terminals[i].master().output().write(buffer);
+        }
+        while (received.get() < expected) {
+            Thread.yield();
+        }
+        return received.get();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.InPin;
+import org.molasdin.io.OutPin;
+import org.molasdin.io.serial.BasicSerial;
+import org.molasdin.io.serial.InputSignal;
+import org.molasdin.io.serial.OutputSignal;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.molasdin.io.serial.Serial;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from output pin change until listener of linked input pin is called.
+ * With "pty" lines of pseudo terminal are emulated, so result covers
+ * listener dispatch of SignalsProcessor only. Name of real port with RTS wired
+ * to CTS can be passed as "device" to include driver and line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalLatencyBenchmark {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Param({"pty"})
+    public String device;
+
+    private PseudoTerminal terminal;
+    private Serial port;
+    private OutPin rts;
+    private volatile long events;
+    private long expected;
+    private boolean value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Serial receiver;
+        if ("pty".equals(device)) {
+            terminal = PseudoTerminal.open();
+            rts = terminal.master().outputPinFor(OutputSignal.RTS);
+            receiver = terminal.slave();
+        } else {
+            port = new BasicSerial(device);
+            port.open();
+            rts = port.outputPinFor(OutputSignal.RTS);
+            receiver = port;
+        }
+        value = receiver.inputPinFor(InputSignal.CTS).value();
+        InPin cts = receiver.inputPinFor(InputSignal.CTS);
+        cts.addListener(event -> events++);
+        receiver.activatePinListeners();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (terminal != null) {
+            terminal.close();
+        }
+        if (port != null) {
+            port.close();
+        }
+    }
+
+    @Benchmark
+    public long pinChangeToListener() {
+        value = !value;
+        expected = events + 1;
+        long start = System.nanoTime();
+        rts.setValue(value);
+        while (events < expected) {
+            if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                throw new IllegalStateException("Pin change was not reported");
+            }
+            Thread.yield();
+        }
+        return events;
+    }
+}
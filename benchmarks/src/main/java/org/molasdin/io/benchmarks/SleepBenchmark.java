@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.Sleep;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accuracy of hybrid park and spin waits compared with pure spinning.
+ * Score is actual duration of wait, CPU share of waiting thread
+ * is printed at the end of each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SleepBenchmark {
+
+    @Param({"50", "1000", "20000"})
+    public long micros;
+
+    @Param({"hybrid", "spin"})
+    public String mode;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long cpuStart;
+    private long wallStart;
+
+    @Setup(Level.Iteration)
+    public void start() {
+        cpuStart = threads.getCurrentThreadCpuTime();
+        wallStart = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+        long wall = System.nanoTime() - wallStart;
+        System.out.printf("%n%s, %d us, cpu share: %.1f%%, spin slice: %d ns%n",
+                mode, micros, cpu * 100.0 / wall, Sleep.spinNanos());
+    }
+
+    @Benchmark
+    public void sleep() {
+        if ("spin".equals(mode)) {
+            long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+            while (deadline > System.nanoTime()) {
+            }
+        } else {
+            Sleep.sleepMicros(micros);
+        }
+    }
+}
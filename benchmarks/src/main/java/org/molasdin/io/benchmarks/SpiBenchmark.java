@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.benchmarks;
+
+import org.molasdin.io.InPin;
+import org.molasdin.io.InputPinListener;
+import org.molasdin.io.OutPin;
+import org.molasdin.io.serial.BasicSerial;
+import org.molasdin.io.serial.InputSignal;
+import org.molasdin.io.serial.OutputSignal;
+import org.molasdin.io.serial.PseudoTerminal;
+import org.molasdin.io.spi.PinsSPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bit rate of bit banged SPI.
+ * "memory" uses in memory pins with MISO looped back to MOSI, so only cost of PinsSPI itself is measured.
+ * "port-java" and "port-native" clock RTS, DTR and CTS of pseudo terminal opened as serial port
+ * per pin and per transfer respectively. Pseudo terminal has no modem lines, so only call overhead is measured.
+ * "transfer" goes through device channels, "duplex" uses allocation free SPI.transfer.
+ * "bits" counter is reported in bits per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpiBenchmark {
+
+    @Param({"0", "1"})
+    public long sckPeriod;
+
+    @Param({"16"})
+    public int size;
+
+    @Param({"memory", "port-java", "port-native"})
+    public String pins;
+
+    private PinsSPI spi;
+    private PseudoTerminal terminal;
+    private BasicSerial serial;
+    private ByteBuffer tx;
+    private ByteBuffer rx;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bits = 0;
+        }
+    }
+
+    private static final class MemoryPin implements OutPin, InPin {
+        private final String name;
+        private final MemoryPin source;
+        private boolean value;
+
+        MemoryPin(String name, MemoryPin source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        @Override
+        public void setValue(Boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public Boolean value() {
+            return source != null ? source.value : value;
+        }
+
+        @Override
+        public void addListener(InputPinListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeListener(InputPinListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if ("memory".equals(pins)) {
+            MemoryPin mosi = new MemoryPin("MOSI", null);
+            spi = new PinsSPI(new MemoryPin("SCK", null), mosi, new MemoryPin("MISO", mosi));
+        } else {
+            terminal = PseudoTerminal.open();
+            serial = new BasicSerial(terminal.slave().name());
+            serial.open();
+            spi = new PinsSPI(serial.outputPinFor(OutputSignal.RTS), serial.outputPinFor(OutputSignal.DTR),
+                    serial.inputPinFor(InputSignal.CTS));
+            spi.setNativeTransfer("port-native".equals(pins));
+        }
+        spi.setSCKPeriod(sckPeriod);
+        tx = ByteBuffer.allocate(size);
+        rx = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            tx.put(i, (byte) (i * 37));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        spi.close();
+        if (serial != null) {
+            serial.close();
+            terminal.close();
+        }
+    }
+
+    @Benchmark
+    public int transfer(Counters counters) throws IOException {
+        tx.clear();
+        rx.clear();
+        spi.output().write(tx);
+        spi.input().read(rx);
+        counters.bits += size * 8L;
+        return rx.position();
+    }
+
+    @Benchmark
+    public int duplex(Counters counters) {
+        tx.clear();
+        rx.clear();
+        spi.transfer(tx, rx);
+        counters.bits += size * 8L;
+        return rx.position();
+    }
+}
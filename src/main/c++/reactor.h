@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef __SerialInterface__reactor__
+#define __SerialInterface__reactor__
+
+#include <stdint.h>
+
+#include "serial.h"
+
+class ReactorException: public SerialException{
+
+};
+
+/**
+    Readiness multiplexer which allows to serve
+    many ports from one thread
+*/
+class Reactor{
+public:
+    enum Events{
+        READ = 1, WRITE = 2
+    };
+
+    virtual ~Reactor(){
+    }
+
+    virtual void add(int fd, int32_t token, int events) = 0;
+    virtual void modify(int fd, int32_t token, int events) = 0;
+    virtual void remove(int fd) = 0;
+
+    /**
+        Waits for ready descriptors
+        "ready" has following format:
+        0 int - token of descriptor 1
+        1 int - ready events of descriptor 1
+        etc
+        Returns amount of ready descriptors, 0 when wait was interrupted
+    */
+    virtual int wait(int32_t ready[], int capacity, long timeout) = 0;
+
+    /**
+        Interrupts wait from any thread
+    */
+    virtual void wakeup() = 0;
+
+    static Reactor* create();
+};
+
+#endif /* defined(__SerialInterface__reactor__) */
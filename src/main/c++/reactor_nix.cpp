@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifdef SERIAL_NIX
+
+#include "reactor.h"
+
+#ifdef __linux__
+
+#include <errno.h>
+#include <unistd.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+
+class EpollReactor: public Reactor{
+private:
+    static const uint64_t WAKE_TOKEN = 0xFFFFFFFFFFFFFFFFULL;
+
+    int epfd;
+    int wakeFd;
+    epoll_event *events = nullptr;
+    int eventsSize = 0;
+public:
+    EpollReactor(){
+        epfd = epoll_create1(EPOLL_CLOEXEC);
+        if(epfd == -1){
+            throw ReactorException();
+        }
+        wakeFd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+        if(wakeFd == -1){
+            ::close(epfd);
+            throw ReactorException();
+        }
+        epoll_event ev;
+        ev.events = EPOLLIN;
+        ev.data.u64 = WAKE_TOKEN;
+        epoll_ctl(epfd, EPOLL_CTL_ADD, wakeFd, &ev);
+    }
+
+    virtual ~EpollReactor(){
+        ::close(wakeFd);
+        ::close(epfd);
+        if(events != nullptr){
+            delete [] events;
+        }
+    }
+
+    /**
+        Descriptors without interest are kept out of epoll,
+        otherwise hangup is reported for them on every wait
+    */
+    virtual void add(int fd, int32_t token, int events) override{
+        if(events != 0){
+            control(EPOLL_CTL_ADD, fd, token, events);
+        }
+    }
+
+    virtual void modify(int fd, int32_t token, int events) override{
+        if(events == 0){
+            remove(fd);
+            return;
+        }
+        epoll_event ev = eventFor(token, events);
+        if(epoll_ctl(epfd, EPOLL_CTL_MOD, fd, &ev) == 0){
+            return;
+        }
+        if(errno != ENOENT || epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &ev) == -1){
+            throw ReactorException();
+        }
+    }
+
+    virtual void remove(int fd) override{
+        epoll_event ev = {0};
+        epoll_ctl(epfd, EPOLL_CTL_DEL, fd, &ev);
+    }
+
+    virtual int wait(int32_t ready[], int capacity, long timeout) override{
+        if(eventsSize < capacity){
+            if(events != nullptr){
+                delete [] events;
+            }
+            events = new epoll_event[capacity];
+            eventsSize = capacity;
+        }
+        int total = epoll_wait(epfd, events, capacity, static_cast<int>(timeout));
+        if(total == -1){
+            if(errno == EINTR){
+                return 0;
+            }
+            throw ReactorException();
+        }
+        int qty = 0;
+        for(int i = 0; i < total; i++){
+            if(events[i].data.u64 == WAKE_TOKEN){
+                uint64_t tmp;
+                ssize_t drained = ::read(wakeFd, &tmp, sizeof(tmp));
+                (void)drained;
+                continue;
+            }
+            int result = 0;
+            if(events[i].events & (EPOLLIN | EPOLLERR | EPOLLHUP)){
+                result |= READ;
+            }
+            if(events[i].events & (EPOLLOUT | EPOLLERR)){
+                result |= WRITE;
+            }
+            ready[qty * 2] = static_cast<int32_t>(events[i].data.u64);
+            ready[qty * 2 + 1] = result;
+            qty++;
+        }
+        return qty;
+    }
+
+    virtual void wakeup() override{
+        uint64_t tmp = 1;
+        ssize_t written = ::write(wakeFd, &tmp, sizeof(tmp));
+        (void)written;
+    }
+
+private:
+    void control(int op, int fd, int32_t token, int events){
+        epoll_event ev = eventFor(token, events);
+        if(epoll_ctl(epfd, op, fd, &ev) == -1){
+            throw ReactorException();
+        }
+    }
+
+    static epoll_event eventFor(int32_t token, int events){
+        epoll_event ev = {0};
+        if(events & READ){
+            ev.events |= EPOLLIN;
+        }
+        if(events & WRITE){
+            ev.events |= EPOLLOUT;
+        }
+        ev.data.u64 = static_cast<uint32_t>(token);
+        return ev;
+    }
+};
+
+Reactor* Reactor::create(){
+    return new EpollReactor();
+}
+
+#else
+
+Reactor* Reactor::create(){
+    throw ReactorException();
+}
+
+#endif
+
+#endif
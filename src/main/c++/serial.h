@@ -20,6 +20,13 @@
 #include <stdint.h>
 #include <string.h>
 #include <thread>
+#include <atomic>
+#include <chrono>
+#include <bitset>
+#include <cmath>
+#ifdef __linux__
+#include <time.h>
+#endif
 
 class SerialException{
 
@@ -51,6 +58,14 @@ class WriteException: public SerialException{
 
 
 
+/**
+    Part of memory used by vectored read/write
+*/
+struct IoSpan{
+    uint8_t *data;
+    int size;
+};
+
 class Serial{
 public:
     enum class DataBits{
@@ -67,7 +82,7 @@ public:
     
     enum class Signal{
         TXD = 0, RXD = 1, RTS = 2, DTR = 3,
-        CTS = 4, DSR = 5, DCD = 6
+        CTS = 4, DSR = 5, DCD = 6, RI = 7
     };
     
     enum class FlowControl{
@@ -86,7 +101,35 @@ private:
     Signal *snapshot = nullptr;
     bool *snapshotValues= nullptr;
     long timeout = 12000;
-    bool isTerminateSigWait = false;
+    std::atomic<bool> isTerminateSigWait{false};
+    //bit per signal id, changes of other signals are tracked but not reported
+    std::atomic<uint32_t> watchMask{0xFFFFFFFFu};
+    std::atomic<bool> captureStopped{false};
+    //lines driven by spi transfer and their last state, sck is bit 0 and mosi is bit 1
+    Signal spiSck = Signal::RTS;
+    Signal spiMosi = Signal::DTR;
+    int spiState = -1;
+    //number of last reported change, only detecting thread updates it
+    uint64_t changedSequence = 0;
+
+    /**
+        Debounce of one signal, configuration may be changed during detection,
+        rest is owned by detecting thread
+    */
+    struct Debounce{
+        std::atomic<int64_t> stableNanos{0};
+        std::atomic<int> samples{0};
+        int appliedSamples = 0;
+        uint32_t history = 0;
+        int64_t nextSample = 0;
+        bool pending = false;
+        bool candidate = false;
+        int64_t since = 0;
+    };
+    static const int SIGNALS_COUNT = 8;
+    //readings per stable time of line without majority filter
+    static const int SETTLE_STEPS = 16;
+    Debounce debounce[SIGNALS_COUNT];
     
 public:
 
@@ -120,6 +163,17 @@ public:
     virtual void setBaudRate(int baudRate) = 0;
 
     virtual int baudRate() = 0;
+
+    /**
+        Sets exact rate in bits per second, not limited to standard values.
+        Throws CanNotWriteConfigException when driver rejects the rate
+    */
+    virtual void setBaudRateValue(int baudRate) = 0;
+
+    /**
+        Rate actually applied by driver
+    */
+    virtual int baudRateValue() = 0;
     
     virtual void setDataBits(DataBits dataBits) = 0;
     virtual DataBits dataBits() = 0;
@@ -143,6 +197,116 @@ public:
     virtual int read(uint8_t *buffer, int size) = 0;
     virtual int write(uint8_t *buffer, int size) = 0;
 
+    /**
+        Scattering read, fills spans in order.
+        Default implementation reads span by span
+    */
+    virtual long readVector(IoSpan spans[], int count){
+        long total = 0;
+        for(int i = 0; i < count; i++){
+            int result = read(spans[i].data, spans[i].size);
+            if(result <= 0){
+                return total == 0 ? result : total;
+            }
+            total += result;
+            if(result < spans[i].size){
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+        Gathering write, drains spans in order.
+        Default implementation writes span by span
+    */
+    virtual long writeVector(IoSpan spans[], int count){
+        long total = 0;
+        for(int i = 0; i < count; i++){
+            int result = write(spans[i].data, spans[i].size);
+            if(result <= 0){
+                return total == 0 ? result : total;
+            }
+            total += result;
+            if(result < spans[i].size){
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+        OS level descriptor which can be used for readiness selection
+        or -1 if it is not supported
+    */
+    virtual int descriptor(){
+        return -1;
+    }
+
+    virtual void setNonBlocking(bool flag){
+    }
+
+    /**
+        Waits up to "micros" for incoming data without reading it.
+        Implementations without such wait report readiness at once
+    */
+    virtual bool awaitReadable(long micros){
+        return true;
+    }
+
+    /**
+        Read/write without waiting, should be used only when
+        readiness was reported for the descriptor.
+        Read returns 0 when nothing is available and -1 on error or end of stream
+    */
+    virtual int readReady(uint8_t *buffer, int size){
+        return read(buffer, size);
+    }
+
+    virtual int writeReady(uint8_t *buffer, int size){
+        return write(buffer, size);
+    }
+
+    //single wait fits into long and poll millis everywhere
+    static const long MAX_WAIT_MICROS = 0x7FFFFFFFL;
+
+    /**
+        Reads until at least "min" bytes are received or "micros" pass.
+        Thread waits in kernel between reads, so blocked read does not use CPU
+    */
+    virtual int readAtLeast(uint8_t *buffer, int size, int min, long long micros){
+        using namespace std::chrono;
+        steady_clock::time_point deadline = steady_clock::now() + microseconds(micros);
+        int total = 0;
+        while(total < min){
+            long long left = duration_cast<microseconds>(deadline - steady_clock::now()).count();
+            if(left < 0){
+                left = 0;
+            } else if(left > MAX_WAIT_MICROS){
+                left = MAX_WAIT_MICROS;
+            }
+            if(!awaitReadable(static_cast<long>(left))){
+                break;
+            }
+            int result = readReady(buffer + total, size - total);
+            if(result < 0){
+                return total == 0 ? result : total;
+            }
+            total += result;
+            if(left == 0 && steady_clock::now() >= deadline){
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+        Name of linked end for pseudo terminals
+    */
+    virtual const char* peerName(){
+        return nullptr;
+    }
+
     virtual void setReadTimeout(long value){
         timeout = value;
     }
@@ -151,13 +315,34 @@ public:
         return timeout;
     }
 
+    static const int CHANGED_HEADER = 8;
+    static const int CHANGED_RECORD = 24;
+
+    /**
+        Monotonic time in nanoseconds, CLOCK_MONOTONIC where available
+        which is also source of System.nanoTime
+    */
+    static int64_t monotonicNanos(){
+#ifdef __linux__
+        timespec now;
+        clock_gettime(CLOCK_MONOTONIC, &now);
+        return static_cast<int64_t>(now.tv_sec) * 1000000000LL + now.tv_nsec;
+#else
+        using namespace std::chrono;
+        return duration_cast<nanoseconds>(steady_clock::now().time_since_epoch()).count();
+#endif
+    }
+
     /**
         Determines which signals changed their state
-        "changed" has following format:
+        "changed" has following format, numbers are in native order:
         0 byte - how many signals
-        1 byte - signal 1 id
-        2 byte - signal 1 value (0,1)
-        etc
+        1-7 bytes - unused
+        then record of CHANGED_RECORD bytes per signal
+        0-7 bytes - monotonic time of detection in nanos
+        8-15 bytes - sequence number of change within port
+        16 byte - signal id
+        17 byte - signal value (0,1)
     */
     virtual void detectChanged(uint8_t changed[]) {
         cleanChanged(changed);
@@ -165,24 +350,192 @@ public:
         bool detected = false;
 
         while(!isTerminateSigWait && !detected){
+            int64_t now = monotonicNanos();
             for(int i = 0; i < snapshotSignalsSize();i++){
-                Signal sig = snapshotSignals()[i];
-                bool current = signal(sig);
-                if(current != snaphotSignalsValues()[i]){
-                    snaphotSignalsValues()[i] = current;
-                    addChanged(changed, sig, current);
-                    detected = true;
-                }
+                detected = filterChanged(changed, i, signal(snapshotSignals()[i]), now) || detected;
             }
 
             if(!detected && !isTerminateSigWait){
-                std::this_thread::yield();
+                int64_t settle = settleNanos(monotonicNanos());
+                if(settle > 0){
+                    //bounded, so termination is noticed in time
+                    std::this_thread::sleep_for(std::chrono::nanoseconds(settle < 1000000 ? settle : 1000000));
+                } else {
+                    std::this_thread::yield();
+                }
             }
         }
 
         isTerminateSigWait = false;
     }
 
+    /**
+        Selects signals which are reported, may be called during detection
+    */
+    virtual void setWatchMask(uint32_t mask){
+        watchMask = mask;
+    }
+
+    static const int MAX_DEBOUNCE_SAMPLES = 31;
+    static const int CAPTURE_RECORD = 8;
+    static const int CAPTURE_STATS = 8;
+    //part of timed wait which is spun instead of slept
+    static const int64_t TIMED_SPIN_NANOS = 200000;
+
+    /**
+        Samples input lines every "periodNanos" into "buffer" until it is full or capture is stopped.
+        Samples are run length encoded, record of CAPTURE_RECORD bytes in native order:
+        0-3 bytes - amount of samples
+        4 byte - levels, bit per signal id
+        Current record is kept up to date during capture.
+        Sample taken later than whole periods is placed on its grid point, skipped points
+        repeat previous levels and are counted as missed.
+        "stats" receives used bytes, samples, start nanos, end nanos, missed samples,
+        mean, standard deviation and maximum of lateness against grid in nanos
+        Stop flag is cleared by "beginCapture", so stop which comes before sampling starts is kept
+    */
+    virtual void capture(uint8_t *buffer, int capacity, int64_t periodNanos, int64_t stats[]){
+        int used = 0;
+        uint32_t run = 0;
+        uint8_t current = 0;
+        int64_t samples = 0;
+        int64_t missed = 0;
+        int64_t maxLate = 0;
+        double lateSum = 0;
+        double lateSquares = 0;
+        int64_t start = monotonicNanos();
+        int64_t next = start;
+        while(capacity >= CAPTURE_RECORD && captureWait(next)){
+            int64_t now = monotonicNanos();
+            uint8_t levels = captureLevels();
+            int64_t skipped = run == 0 ? 0 : (now - next) / periodNanos;
+            if(run != 0 && (levels != current || run > 0xFFFFFFFFu - skipped - 1)){
+                run = run + static_cast<uint32_t>(skipped);
+                captureRecord(buffer + used, run, current);
+                if(used + 2 * CAPTURE_RECORD > capacity){
+                    next = next + skipped * periodNanos;
+                    samples = samples + skipped;
+                    missed = missed + skipped;
+                    break;
+                }
+                used = used + CAPTURE_RECORD;
+                run = 0;
+            } else {
+                run = run + static_cast<uint32_t>(skipped);
+            }
+            next = next + skipped * periodNanos;
+            int64_t late = now - next;
+            current = levels;
+            run++;
+            captureRecord(buffer + used, run, current);
+            samples = samples + skipped + 1;
+            missed = missed + skipped;
+            lateSum = lateSum + late;
+            lateSquares = lateSquares + static_cast<double>(late) * late;
+            maxLate = late > maxLate ? late : maxLate;
+            next = next + periodNanos;
+        }
+        if(run != 0){
+            used = used + CAPTURE_RECORD;
+        }
+        int64_t taken = samples - missed;
+        double mean = taken == 0 ? 0 : lateSum / taken;
+        double variance = taken == 0 ? 0 : lateSquares / taken - mean * mean;
+        stats[0] = used;
+        stats[1] = samples;
+        stats[2] = start;
+        stats[3] = next;
+        stats[4] = missed;
+        stats[5] = static_cast<int64_t>(mean);
+        stats[6] = static_cast<int64_t>(variance > 0 ? std::sqrt(variance) : 0);
+        stats[7] = maxLate;
+    }
+
+    /**
+        Wiring of bit banged SPI on lines of port, inversion is applied on wire
+    */
+    struct SpiLines{
+        Signal sck;
+        Signal mosi;
+        Signal miso;
+        bool sckInverted;
+        bool mosiInverted;
+        bool misoInverted;
+        bool cpol;
+        bool cpha;
+    };
+
+    /**
+        Exchanges "size" bytes of "data" in place, most significant bit first.
+        Edges follow grid of "halfNanos", zero gives fastest clock.
+        MISO is sampled at end of active half of clock period
+    */
+    virtual void spiTransfer(uint8_t *data, int size, const SpiLines &lines, int64_t halfNanos){
+        if(size <= 0){
+            return;
+        }
+        prepareLines(lines.sck, lines.mosi);
+        int sckIdle = lines.cpol != lines.sckInverted ? 1 : 0;
+        int sckActive = 1 - sckIdle;
+        int mosiFlip = lines.mosiInverted ? 2 : 0;
+        int64_t edge = monotonicNanos();
+        int bit = (data[0] >> 7) & 1;
+        if(!lines.cpha){
+            driveLines(sckIdle | ((bit << 1) ^ mosiFlip));
+            edge = timedEdge(edge, halfNanos);
+        }
+        for(int i = 0; i < size; i++){
+            uint8_t out = data[i];
+            uint8_t in = 0;
+            for(int shift = 7; shift >= 0; shift--){
+                bit = (out >> shift) & 1;
+                driveLines(sckActive | ((bit << 1) ^ mosiFlip));
+                edge = timedEdge(edge, halfNanos);
+                bool miso = signal(lines.miso) != lines.misoInverted;
+                in = static_cast<uint8_t>((in << 1) | (miso ? 1 : 0));
+                int next = bit;
+                if(!lines.cpha){
+                    //data for next bit is set on trailing edge
+                    if(shift > 0){
+                        next = (out >> (shift - 1)) & 1;
+                    } else if(i + 1 < size){
+                        next = (data[i + 1] >> 7) & 1;
+                    }
+                }
+                driveLines(sckIdle | ((next << 1) ^ mosiFlip));
+                edge = timedEdge(edge, halfNanos);
+            }
+            data[i] = in;
+        }
+    }
+
+    /**
+        Prepares capture, should be called before thread which runs "capture" is started
+    */
+    virtual void beginCapture(){
+        captureStopped = false;
+    }
+
+    /**
+        Ends capture, may be called from any thread
+    */
+    virtual void stopCapture(){
+        captureStopped = true;
+    }
+
+    /**
+        Configures filter applied before change of signal is reported, may be called during detection.
+        Line should keep new level for "stableMicros", its change is reported with time when
+        it started. With "samples" above 1 level is majority of that many readings
+        taken every stableMicros/samples, so short glitches do not restart stable time.
+        Zeros disable filter
+    */
+    virtual void setDebounce(Signal signal, long long stableMicros, int samples){
+        Debounce &filter = debounce[static_cast<int>(signal)];
+        filter.stableNanos = stableMicros * 1000LL;
+        filter.samples = samples;
+    }
+
     /**
         Terminates signals detector
     */
@@ -204,8 +557,24 @@ public:
             snapshot[i] = signals[i];
             snapshotValues[i] = signal(signals[i]);
         }
+        for(int i = 0; i < SIGNALS_COUNT; i++){
+            debounce[i].appliedSamples = 0;
+            debounce[i].pending = false;
+        }
     }
 protected:
+
+    /**
+        Allows implementations with own waiting strategy
+        to observe and consume termination requests
+    */
+    bool isSignalsWaitTerminated(){
+        return isTerminateSigWait;
+    }
+
+    void resetSignalsWaitTermination(){
+        isTerminateSigWait = false;
+    }
     
     virtual void cleanChanged(uint8_t changed[]){
         changed[0] = 0;
@@ -213,14 +582,227 @@ protected:
 
     /**
         Convenient method to add new signal to "changed"
+        Sequence advances only for reported changes, so gap seen by listener
+        means that change was lost after detection
+        @param nanos time of detection from "monotonicNanos"
+        @return false if signal is not watched
     */
-    virtual void addChanged(uint8_t changed[], Signal signal, bool value){
+    virtual bool addChanged(uint8_t changed[], Signal signal, bool value, int64_t nanos){
+        if(((watchMask.load(std::memory_order_relaxed) >> static_cast<int>(signal)) & 1u) == 0){
+            return false;
+        }
         int qty = changed[0];
-        changed[1 + qty*2] = static_cast<uint8_t>(signal);
-        changed[1+ qty*2 + 1] = value;
+        uint8_t *record = changed + CHANGED_HEADER + qty * CHANGED_RECORD;
+        changedSequence++;
+        memcpy(record, &nanos, sizeof(nanos));
+        memcpy(record + 8, &changedSequence, sizeof(changedSequence));
+        record[16] = static_cast<uint8_t>(signal);
+        record[17] = value;
         changed[0] = changed[0] + 1;
+        return true;
     }
     
+    /**
+        Reads all input lines at once for capture
+        @return levels, bit per signal id
+    */
+    virtual uint8_t captureLevels(){
+        static const Signal lines[] = {Signal::CTS, Signal::DSR, Signal::DCD, Signal::RI};
+        uint8_t levels = 0;
+        for(Signal line: lines){
+            try {
+                if(signal(line)){
+                    levels = levels | (1u << static_cast<int>(line));
+                }
+            } catch (InvalidSignalException &ex) {
+            }
+        }
+        return levels;
+    }
+
+    /**
+        Sleeps until close to "deadline" and spins rest of time
+        @return false if capture was stopped
+    */
+    bool captureWait(int64_t deadline){
+        while(!captureStopped.load(std::memory_order_relaxed)){
+            int64_t left = deadline - monotonicNanos();
+            if(left <= 0){
+                return true;
+            }
+            if(left > TIMED_SPIN_NANOS){
+                //bounded, so stop is noticed in time
+                int64_t pause = left - TIMED_SPIN_NANOS;
+                std::this_thread::sleep_for(std::chrono::nanoseconds(pause < 1000000 ? pause : 1000000));
+            }
+        }
+        return false;
+    }
+
+    static void captureRecord(uint8_t *record, uint32_t run, uint8_t levels){
+        memcpy(record, &run, sizeof(run));
+        record[4] = levels;
+        record[5] = 0;
+        record[6] = 0;
+        record[7] = 0;
+    }
+
+    /**
+        Selects lines for "driveLines"
+    */
+    virtual void prepareLines(Signal sck, Signal mosi){
+        spiSck = sck;
+        spiMosi = mosi;
+        spiState = -1;
+    }
+
+    /**
+        Sets lines selected by "prepareLines", only changed ones are touched
+        @param state wire level of sck in bit 0 and of mosi in bit 1
+    */
+    virtual void driveLines(int state){
+        int changed = state ^ spiState;
+        if(changed & 1){
+            setSignal(spiSck, (state & 1) != 0);
+        }
+        if(changed & 2){
+            setSignal(spiMosi, (state & 2) != 0);
+        }
+        spiState = state;
+    }
+
+    /**
+        Waits for next edge of grid
+        @return time of that edge
+    */
+    static int64_t timedEdge(int64_t edge, int64_t halfNanos){
+        if(halfNanos <= 0){
+            return edge;
+        }
+        edge = edge + halfNanos;
+        timedWait(edge);
+        return edge;
+    }
+
+    /**
+        Sleeps until close to "deadline" and spins rest of time
+    */
+    static void timedWait(int64_t deadline){
+        while(true){
+            int64_t left = deadline - monotonicNanos();
+            if(left <= 0){
+                return;
+            }
+            if(left > TIMED_SPIN_NANOS){
+                std::this_thread::sleep_for(std::chrono::nanoseconds(left - TIMED_SPIN_NANOS));
+            }
+        }
+    }
+
+    bool debounced(Signal signal){
+        Debounce &filter = debounce[static_cast<int>(signal)];
+        return filter.stableNanos.load(std::memory_order_relaxed) > 0
+            || filter.samples.load(std::memory_order_relaxed) > 1;
+    }
+
+    bool hasDebounce(){
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            if(debounced(snapshotSignals()[i])){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        Passes reading of snapshot signal through its debounce filter
+        and adds clean change to "changed"
+        @param now time of reading
+        @param bounced line changed since previous reading even if level is same
+        @return true if change was added
+    */
+    bool filterChanged(uint8_t changed[], int index, bool raw, int64_t now, bool bounced = false){
+        Signal sig = snapshotSignals()[index];
+        Debounce &filter = debounce[static_cast<int>(sig)];
+        int64_t stable = filter.stableNanos.load(std::memory_order_relaxed);
+        int samples = filter.samples.load(std::memory_order_relaxed);
+        bool reported = snaphotSignalsValues()[index];
+        if(stable <= 0 && samples <= 1){
+            filter.pending = false;
+            if(raw == reported){
+                return false;
+            }
+            snaphotSignalsValues()[index] = raw;
+            return addChanged(changed, sig, raw, now);
+        }
+        bool level = raw;
+        if(samples > 1){
+            uint32_t mask = (1u << samples) - 1;
+            if(filter.appliedSamples != samples){
+                filter.appliedSamples = samples;
+                filter.history = reported ? mask : 0;
+                filter.nextSample = 0;
+            }
+            if(now < filter.nextSample){
+                return false;
+            }
+            filter.nextSample = now + stable / samples;
+            filter.history = ((filter.history << 1) | (raw ? 1u : 0u)) & mask;
+            int ones = static_cast<int>(std::bitset<32>(filter.history).count());
+            //tie keeps reported level
+            level = ones * 2 == samples ? reported : ones * 2 > samples;
+        }
+        if(level == reported){
+            filter.pending = false;
+            return false;
+        }
+        if(!filter.pending || filter.candidate != level || (bounced && samples <= 1)){
+            filter.pending = true;
+            filter.candidate = level;
+            filter.since = now;
+        }
+        if(now - filter.since < stable){
+            return false;
+        }
+        filter.pending = false;
+        snaphotSignalsValues()[index] = level;
+        return addChanged(changed, sig, level, filter.since);
+    }
+
+    /**
+        Debounced lines are read by time while they settle,
+        edge waiting does not tell when line became stable.
+        Lines without majority filter are read SETTLE_STEPS times per stable time
+        @return nanos until next reading is due, -1 if all filters are settled
+    */
+    int64_t settleNanos(int64_t now){
+        int64_t result = -1;
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            Debounce &filter = debounce[static_cast<int>(snapshotSignals()[i])];
+            int64_t stable = filter.stableNanos.load(std::memory_order_relaxed);
+            int samples = filter.samples.load(std::memory_order_relaxed);
+            int64_t due = -1;
+            if(samples > 1 && filter.appliedSamples == samples){
+                uint32_t mask = (1u << samples) - 1;
+                if(filter.pending || (filter.history != 0 && filter.history != mask)){
+                    due = filter.nextSample;
+                }
+            } else if(stable > 0 && filter.pending){
+                due = filter.since + stable;
+                int64_t step = now + stable / SETTLE_STEPS;
+                due = step < due ? step : due;
+            }
+            if(due < 0){
+                continue;
+            }
+            int64_t left = due > now ? due - now : 0;
+            if(result < 0 || left < result){
+                result = left;
+            }
+        }
+        return result;
+    }
+
     virtual Signal* snapshotSignals(){
         return snapshot;
     }
@@ -258,6 +840,18 @@ public:
     BasicSerial(const char *name){
         init(name);
     }
+
+    /**
+        Wraps already opened implementation
+    */
+    BasicSerial(Serial *impl):impl(impl){
+    }
+
+    /**
+        Opens master end of new pseudo terminal,
+        slave end can be opened using "peerName"
+    */
+    static BasicSerial* openPseudoTerminal();
     
     virtual ~BasicSerial(){
         if(impl->isOpen()){
@@ -284,6 +878,12 @@ public:
     virtual int baudRate() override{
         return impl->baudRate();
     }
+    virtual void setBaudRateValue(int baudRate) override{
+        impl->setBaudRateValue(baudRate);
+    }
+    virtual int baudRateValue() override{
+        return impl->baudRateValue();
+    }
     
     virtual void setDataBits(DataBits dataBits) override{
         impl->setDataBits(dataBits);
@@ -334,6 +934,66 @@ public:
     virtual int write(uint8_t *buffer, int size) override{
         return impl->write(buffer, size);
     }
+
+    virtual long readVector(IoSpan spans[], int count) override{
+        return impl->readVector(spans, count);
+    }
+
+    virtual long writeVector(IoSpan spans[], int count) override{
+        return impl->writeVector(spans, count);
+    }
+
+    virtual int descriptor() override{
+        return impl->descriptor();
+    }
+
+    virtual void setNonBlocking(bool flag) override{
+        impl->setNonBlocking(flag);
+    }
+
+    virtual int readAtLeast(uint8_t *buffer, int size, int min, long long micros) override{
+        return impl->readAtLeast(buffer, size, min, micros);
+    }
+
+    virtual void setWatchMask(uint32_t mask) override{
+        impl->setWatchMask(mask);
+    }
+
+    virtual void setDebounce(Signal signal, long long stableMicros, int samples) override{
+        impl->setDebounce(signal, stableMicros, samples);
+    }
+
+    virtual void capture(uint8_t *buffer, int capacity, int64_t periodNanos, int64_t stats[]) override{
+        impl->capture(buffer, capacity, periodNanos, stats);
+    }
+
+    virtual void beginCapture() override{
+        impl->beginCapture();
+    }
+
+    virtual void stopCapture() override{
+        impl->stopCapture();
+    }
+
+    virtual void spiTransfer(uint8_t *data, int size, const SpiLines &lines, int64_t halfNanos) override{
+        impl->spiTransfer(data, size, lines, halfNanos);
+    }
+
+    virtual bool awaitReadable(long micros) override{
+        return impl->awaitReadable(micros);
+    }
+
+    virtual int readReady(uint8_t *buffer, int size) override{
+        return impl->readReady(buffer, size);
+    }
+
+    virtual int writeReady(uint8_t *buffer, int size) override{
+        return impl->writeReady(buffer, size);
+    }
+
+    virtual const char* peerName() override{
+        return impl->peerName();
+    }
     
     virtual void setReadTimeout(long value) override{
         impl->setReadTimeout(value);
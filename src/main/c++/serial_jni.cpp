@@ -19,45 +19,84 @@
 #include <jni.h>
 
 #include "serial.h"
+#include "reactor.h"
 
+/**
+    All natives are static and receive native handle directly,
+    so calls do not require any upcalls to JVM.
+    Direct buffers are passed together with position,
+    heap buffers are passed as arrays with offset
+    and only requested window of array is touched
+*/
 extern "C" {
     jint JNI_OnLoad(JavaVM *vm, void *reserved);
     void JNI_OnUnload(JavaVM *vm, void *reserved);
-    
-    Serial* fromObject(JNIEnv* env, jobject self);
-    unsigned char * directAddress(JNIEnv *env, jobject buffer);
-    bool isDirectBuffer(JNIEnv *env, jobject buffer);
-    jbyteArray toArray(JNIEnv* env, jobject buffer);
-    
-    static jclass mainClazz;
-    static jmethodID portHnd;
-    
-    static jclass bufferClass;
-    static jmethodID isDirect;
-    static jmethodID arrayMethod;
-    
+
+    static jclass exceptionClass;
+
     jint JNI_OnLoad(JavaVM *vm, void *reserved){
         JNIEnv *env;
         vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_8);
-        jclass clazz = env->FindClass("org/molasdin/io/serial/BasicSerial");
-        mainClazz = static_cast<jclass>(env->NewGlobalRef(clazz));
-        portHnd = env->GetMethodID(mainClazz, "portHnd", "()J");
-        
-        clazz = env->FindClass("java/nio/ByteBuffer");
-        bufferClass = static_cast<jclass>(env->NewGlobalRef(clazz));
-        isDirect = env->GetMethodID(bufferClass, "isDirect", "()Z");
-        arrayMethod = env->GetMethodID(bufferClass, "array", "()[B");
+        jclass clazz = env->FindClass("java/lang/Exception");
+        exceptionClass = static_cast<jclass>(env->NewGlobalRef(clazz));
         return JNI_VERSION_1_8;
     }
     
     void JNI_OnUnload(JavaVM *vm, void *reserved){
         JNIEnv *env;
-        vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6);
-        env->DeleteGlobalRef(mainClazz);
-        env->DeleteGlobalRef(bufferClass);
+        vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_8);
+        env->DeleteGlobalRef(exceptionClass);
+    }
+
+    static inline Serial* fromHandle(jlong hnd){
+        return reinterpret_cast<Serial*>(hnd);
+    }
+
+    static inline uint8_t* directAddress(JNIEnv *env, jobject buffer, jint offset){
+        return static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer)) + offset;
+    }
+
+    static void throwException(JNIEnv *env, const char *message){
+        env->ThrowNew(exceptionClass, message);
+    }
+
+    /**
+        Heap arrays are never pinned or copied as a whole:
+        only [offset, offset + size) window is copied through
+        stack chunk, so cost depends on transferred bytes only
+    */
+    static const int HEAP_CHUNK = 8192;
+
+    typedef int (Serial::*Transfer)(uint8_t*, int);
+
+    static jint readRegion(JNIEnv *env, Serial *serial, Transfer op, jbyteArray data, jint offset, jint size){
+        uint8_t chunk[HEAP_CHUNK];
+        int result = (serial->*op)(chunk, size < HEAP_CHUNK ? size : HEAP_CHUNK);
+        if(result > 0){
+            env->SetByteArrayRegion(data, offset, result, reinterpret_cast<jbyte*>(chunk));
+        }
+        return result;
+    }
+
+    static jint writeRegion(JNIEnv *env, Serial *serial, Transfer op, jbyteArray data, jint offset, jint size){
+        uint8_t chunk[HEAP_CHUNK];
+        jint total = 0;
+        while(total < size){
+            int part = size - total < HEAP_CHUNK ? size - total : HEAP_CHUNK;
+            env->GetByteArrayRegion(data, offset + total, part, reinterpret_cast<jbyte*>(chunk));
+            int result = (serial->*op)(chunk, part);
+            if(result <= 0){
+                return total == 0 ? result : total;
+            }
+            total += result;
+            if(result < part){
+                break;
+            }
+        }
+        return total;
     }
     
-    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_openPort(JNIEnv *env, jobject self, jstring str){
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_openPort(JNIEnv *env, jclass clazz, jstring str){
         jboolean isCopy = false;
         const char* value = env->GetStringUTFChars(str, &isCopy);
         Serial *serial = nullptr;
@@ -70,154 +109,294 @@ extern "C" {
             if(serial != nullptr){
                 delete serial;
             }
-            jclass exClass = env->FindClass("java/lang/Exception");
-            env->ThrowNew(exClass, "Can not open port");
+            throwException(env, "Can not open port");
         }
         return 0;
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_closePort(JNIEnv *env, jobject self){
-        Serial* serial = fromObject(env, self);
-        delete serial;
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_closePort(JNIEnv *env, jclass clazz, jlong hnd){
+        delete fromHandle(hnd);
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortReadTimeout(JNIEnv *env, jobject self, jlong timeout){
-        Serial *serial = fromObject(env, self);
-        serial->setReadTimeout(static_cast<long>(timeout));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortReadTimeout(JNIEnv *env, jclass clazz, jlong hnd, jlong timeout){
+        fromHandle(hnd)->setReadTimeout(static_cast<long>(timeout));
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortBaud(JNIEnv *env, jobject self, jint baud){
-        Serial* serial = fromObject(env, self);
-        serial->setBaudRate(static_cast<int>(baud));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortBaud(JNIEnv *env, jclass clazz, jlong hnd, jint baud){
+        fromHandle(hnd)->setBaudRate(static_cast<int>(baud));
     }
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portBaud(JNIEnv *env, jobject self, jint bits){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jint>(serial->baudRate());
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portBaud(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->baudRate());
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortBits(JNIEnv *env, jobject self, jint bits){
-        Serial* serial = fromObject(env, self);
-        serial->setDataBits(static_cast<Serial::DataBits>(bits));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortBaudValue(JNIEnv *env, jclass clazz, jlong hnd, jint baud){
+        try {
+            fromHandle(hnd)->setBaudRateValue(static_cast<int>(baud));
+        } catch (SerialException &ex) {
+            throwException(env, "Baud rate is not supported");
+        }
+    }
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portBaudValue(JNIEnv *env, jclass clazz, jlong hnd){
+        try {
+            return static_cast<jint>(fromHandle(hnd)->baudRateValue());
+        } catch (SerialException &ex) {
+            throwException(env, "Can not read baud rate");
+        }
+        return 0;
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortBits(JNIEnv *env, jclass clazz, jlong hnd, jint bits){
+        fromHandle(hnd)->setDataBits(static_cast<Serial::DataBits>(bits));
     }
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portBits(JNIEnv *env, jobject self){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jint>(serial->dataBits());
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portBits(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->dataBits());
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortStopBits(JNIEnv *env, jobject self, jint bits){
-        Serial* serial = fromObject(env, self);
-        serial->setStopBits(static_cast<Serial::StopBits>(bits));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortStopBits(JNIEnv *env, jclass clazz, jlong hnd, jint bits){
+        fromHandle(hnd)->setStopBits(static_cast<Serial::StopBits>(bits));
     }
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portStopBits(JNIEnv *env, jobject self){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jint>(serial->stopBits());
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portStopBits(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->stopBits());
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortParity(JNIEnv *env, jobject self, jint parity){
-        Serial* serial = fromObject(env, self);
-        serial->setParity(static_cast<Serial::Parity>(parity));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortParity(JNIEnv *env, jclass clazz, jlong hnd, jint parity){
+        fromHandle(hnd)->setParity(static_cast<Serial::Parity>(parity));
     }
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portParity(JNIEnv *env, jobject self){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jint>(serial->parity());
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portParity(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->parity());
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortFlowCtl(JNIEnv *env, jobject self, jint ctl){
-        Serial* serial = fromObject(env, self);
-        serial->setFlowControl(static_cast<Serial::FlowControl>(ctl));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortFlowCtl(JNIEnv *env, jclass clazz, jlong hnd, jint ctl){
+        fromHandle(hnd)->setFlowControl(static_cast<Serial::FlowControl>(ctl));
     }
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portFlowCtl(JNIEnv *env, jobject self){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jint>(serial->flowControl());
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portFlowCtl(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->flowControl());
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortChar(JNIEnv *env, jobject self, jint id, jbyte value){
-        Serial* serial = fromObject(env, self);
-        serial->setControlCharacter(static_cast<Serial::ControlCharacter>(id), static_cast<uint8_t>(value));
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortChar(JNIEnv *env, jclass clazz, jlong hnd, jint id, jbyte value){
+        fromHandle(hnd)->setControlCharacter(static_cast<Serial::ControlCharacter>(id), static_cast<uint8_t>(value));
     }
-    JNIEXPORT jbyte JNICALL Java_org_molasdin_io_serial_BasicSerial_portChar(JNIEnv *env, jobject self, jint id){
-        Serial* serial = fromObject(env, self);
-        return static_cast<jbyte>(serial->controlCharacter(static_cast<Serial::ControlCharacter>(id)));
+    JNIEXPORT jbyte JNICALL Java_org_molasdin_io_serial_BasicSerial_portChar(JNIEnv *env, jclass clazz, jlong hnd, jint id){
+        return static_cast<jbyte>(fromHandle(hnd)->controlCharacter(static_cast<Serial::ControlCharacter>(id)));
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPinSignal(JNIEnv *env, jobject self, jint signal, jboolean value){
-        Serial* serial = fromObject(env, self);
-        serial->setSignal(static_cast<Serial::Signal>(signal), value);
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPinSignal(JNIEnv *env, jclass clazz, jlong hnd, jint signal, jboolean value){
+        fromHandle(hnd)->setSignal(static_cast<Serial::Signal>(signal), value);
     }
-    JNIEXPORT jboolean JNICALL Java_org_molasdin_io_serial_BasicSerial_pinSignal(JNIEnv *env, jobject self, jint signal){
-        Serial* serial = fromObject(env, self);
-        return serial->signal(static_cast<Serial::Signal>(signal));
+    JNIEXPORT jboolean JNICALL Java_org_molasdin_io_serial_BasicSerial_pinSignal(JNIEnv *env, jclass clazz, jlong hnd, jint signal){
+        return fromHandle(hnd)->signal(static_cast<Serial::Signal>(signal));
     }
     
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_read(JNIEnv *env, jobject self, jobject data, jint size){
-        Serial* serial = fromObject(env, self);
-        jint result = 0;
-        if(isDirectBuffer(env, data)){
-            result = serial->read(directAddress(env, data), static_cast<int>(size));
-        } else {
-            jbyteArray tmpArray = toArray(env, data);
-            jbyte *array = env->GetByteArrayElements(tmpArray, 0);
-            result = serial->read(reinterpret_cast<uint8_t*>(array), static_cast<int>(size));
-            env->ReleaseByteArrayElements(static_cast<jbyteArray>(tmpArray), array, 0);
-        }
-        return result;
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_read(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size){
+        return fromHandle(hnd)->read(directAddress(env, data, offset), static_cast<int>(size));
     }
     
-    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_write(JNIEnv *env, jobject self, jobject data, jint size){
-        Serial* serial = fromObject(env, self);
-        jint result = 0;
-        if(isDirectBuffer(env, data)){
-            result = serial->write(directAddress(env, data), static_cast<int>(size));
-        } else {
-            jbyteArray tmpArray = toArray(env, data);
-            jbyte *array = env->GetByteArrayElements(tmpArray, 0);
-            result = serial->write(reinterpret_cast<uint8_t*>(array), static_cast<int>(size));
-            env->ReleaseByteArrayElements(static_cast<jbyteArray>(tmpArray), array, 0);
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_write(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size){
+        return fromHandle(hnd)->write(directAddress(env, data, offset), static_cast<int>(size));
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_readArray(JNIEnv *env, jclass clazz, jlong hnd, jbyteArray data, jint offset, jint size){
+        return readRegion(env, fromHandle(hnd), &Serial::read, data, offset, size);
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_writeArray(JNIEnv *env, jclass clazz, jlong hnd, jbyteArray data, jint offset, jint size){
+        return writeRegion(env, fromHandle(hnd), &Serial::write, data, offset, size);
+    }
+
+    /**
+        "spans" contains position and size for each buffer
+    */
+    static jlong transferVector(JNIEnv *env, jlong hnd, jobjectArray buffers, jintArray spans, jint count, bool write){
+        IoSpan local[16];
+        IoSpan *ioSpans = count <= 16 ? local : new IoSpan[count];
+        jint *positions = env->GetIntArrayElements(spans, 0);
+        for(int i = 0; i < count; i++){
+            jobject buffer = env->GetObjectArrayElement(buffers, i);
+            ioSpans[i].data = directAddress(env, buffer, positions[i * 2]);
+            ioSpans[i].size = static_cast<int>(positions[i * 2 + 1]);
+            env->DeleteLocalRef(buffer);
         }
-        return result;
+        env->ReleaseIntArrayElements(spans, positions, JNI_ABORT);
+        Serial *serial = fromHandle(hnd);
+        long result = write ? serial->writeVector(ioSpans, count) : serial->readVector(ioSpans, count);
+        if(ioSpans != local){
+            delete [] ioSpans;
+        }
+        return static_cast<jlong>(result);
+    }
+
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_readVector(JNIEnv *env, jclass clazz, jlong hnd, jobjectArray buffers, jintArray spans, jint count){
+        return transferVector(env, hnd, buffers, spans, count, false);
+    }
+
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_writeVector(JNIEnv *env, jclass clazz, jlong hnd, jobjectArray buffers, jintArray spans, jint count){
+        return transferVector(env, hnd, buffers, spans, count, true);
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_prepareToCheckSignals(JNIEnv *env, jobject self, jobject signals){
-        Serial* serial = fromObject(env, self);
-        jint *signalsArray = env->GetIntArrayElements(static_cast<jintArray>(signals), 0);
-        serial->prepareToCheckSignals(reinterpret_cast<Serial::Signal*>(signalsArray),
-            static_cast<uint16_t>(env->GetArrayLength(static_cast<jarray>(signals))));
-        env->ReleaseIntArrayElements(static_cast<jintArray>(signals), signalsArray, JNI_ABORT);
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_prepareToCheckSignals(JNIEnv *env, jclass clazz, jlong hnd, jintArray signals){
+        jint *signalsArray = env->GetIntArrayElements(signals, 0);
+        fromHandle(hnd)->prepareToCheckSignals(reinterpret_cast<Serial::Signal*>(signalsArray),
+            static_cast<uint16_t>(env->GetArrayLength(signals)));
+        env->ReleaseIntArrayElements(signals, signalsArray, JNI_ABORT);
     }
     
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_changedSignals(JNIEnv *env, jobject self, jobject changedSignals){
-        Serial* serial = fromObject(env, self);
-        if(!isDirectBuffer(env, changedSignals)){
-          jclass exClass = env->FindClass("java/lang/Exception");
-          env->ThrowNew(exClass, "Signals buffer must be direct");
-          return;
+    /**
+        Long lived buffers are resolved once and then passed as raw address
+    */
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_bufferAddress(JNIEnv *env, jclass clazz, jobject buffer){
+        return reinterpret_cast<jlong>(env->GetDirectBufferAddress(buffer));
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_changedSignals(JNIEnv *env, jclass clazz, jlong hnd, jlong address){
+        fromHandle(hnd)->detectChanged(reinterpret_cast<uint8_t *>(address));
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setWatchMask(JNIEnv *env, jclass clazz, jlong hnd, jint mask){
+        fromHandle(hnd)->setWatchMask(static_cast<uint32_t>(mask));
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setDebounce(JNIEnv *env, jclass clazz, jlong hnd, jint signal, jlong micros, jint samples){
+        fromHandle(hnd)->setDebounce(static_cast<Serial::Signal>(signal), micros, samples);
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_capture(JNIEnv *env, jclass clazz, jlong hnd, jobject buffer, jint offset, jint size, jlong periodNanos, jlongArray stats){
+        int64_t result[Serial::CAPTURE_STATS];
+        fromHandle(hnd)->capture(directAddress(env, buffer, offset), size, periodNanos, result);
+        jlong converted[Serial::CAPTURE_STATS];
+        for(int i = 0; i < Serial::CAPTURE_STATS; i++){
+            converted[i] = static_cast<jlong>(result[i]);
         }
-        serial->detectChanged(directAddress(env, changedSignals));
+        env->SetLongArrayRegion(stats, 0, Serial::CAPTURE_STATS, converted);
     }
 
-    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_terminateWaitForSignals(JNIEnv *env, jobject self) {
-        Serial* serial = fromObject(env, self);
-        serial->terminateSignalsWait();
+    /**
+        "wiring" packs line ids by four bits as sck, mosi, miso
+        followed by flags: inverted sck, mosi, miso, cpol, cpha
+    */
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_spiTransfer(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size, jint wiring, jlong halfNanos){
+        Serial::SpiLines lines;
+        lines.sck = static_cast<Serial::Signal>(wiring & 0xF);
+        lines.mosi = static_cast<Serial::Signal>((wiring >> 4) & 0xF);
+        lines.miso = static_cast<Serial::Signal>((wiring >> 8) & 0xF);
+        lines.sckInverted = (wiring & (1 << 12)) != 0;
+        lines.mosiInverted = (wiring & (1 << 13)) != 0;
+        lines.misoInverted = (wiring & (1 << 14)) != 0;
+        lines.cpol = (wiring & (1 << 15)) != 0;
+        lines.cpha = (wiring & (1 << 16)) != 0;
+        try {
+            fromHandle(hnd)->spiTransfer(directAddress(env, data, offset), size, lines, halfNanos);
+        } catch (InvalidSignalException &ex) {
+            throwException(env, "Signal can not be used for SPI");
+        }
     }
-    
-    Serial* fromObject(JNIEnv* env, jobject self){
-        jlong ref = env->CallLongMethod(self, portHnd);
-        return reinterpret_cast<Serial*>(ref);
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_beginCapture(JNIEnv *env, jclass clazz, jlong hnd){
+        fromHandle(hnd)->beginCapture();
     }
-    
-    uint8_t * directAddress(JNIEnv *env, jobject buffer){
-        return static_cast<uint8_t *>(env->GetDirectBufferAddress(buffer));
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_stopCapture(JNIEnv *env, jclass clazz, jlong hnd){
+        fromHandle(hnd)->stopCapture();
     }
-    bool isDirectBuffer(JNIEnv *env, jobject buffer){
-        return env->CallBooleanMethod(buffer, isDirect);
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_terminateWaitForSignals(JNIEnv *env, jclass clazz, jlong hnd) {
+        fromHandle(hnd)->terminateSignalsWait();
     }
-    
-    jbyteArray toArray(JNIEnv* env, jobject buffer){
-        return static_cast<jbyteArray>(env->CallObjectMethod(buffer, arrayMethod));
+
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_BasicSerial_openPtyMaster(JNIEnv *env, jclass clazz){
+        try {
+            return reinterpret_cast<jlong>(BasicSerial::openPseudoTerminal());
+        } catch (CanNotOpenPortException &ex) {
+            throwException(env, "Can not open pseudo terminal");
+        }
+        return 0;
+    }
+
+    JNIEXPORT jstring JNICALL Java_org_molasdin_io_serial_BasicSerial_pseudoTerminalPeer(JNIEnv *env, jclass clazz, jlong hnd){
+        const char *peer = fromHandle(hnd)->peerName();
+        return peer == nullptr ? nullptr : env->NewStringUTF(peer);
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_portDescriptor(JNIEnv *env, jclass clazz, jlong hnd){
+        return static_cast<jint>(fromHandle(hnd)->descriptor());
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_BasicSerial_setPortNonBlocking(JNIEnv *env, jclass clazz, jlong hnd, jboolean flag){
+        fromHandle(hnd)->setNonBlocking(flag);
+    }
+
+    JNIEXPORT jboolean JNICALL Java_org_molasdin_io_serial_BasicSerial_awaitReadable(JNIEnv *env, jclass clazz, jlong hnd, jlong micros){
+        return fromHandle(hnd)->awaitReadable(static_cast<long>(micros)) ? JNI_TRUE : JNI_FALSE;
     }
-}
-#endif
 
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_readAtLeast(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size, jint min, jlong micros){
+        return fromHandle(hnd)->readAtLeast(directAddress(env, data, offset), static_cast<int>(size), static_cast<int>(min), static_cast<long long>(micros));
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_readReady(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size){
+        return fromHandle(hnd)->readReady(directAddress(env, data, offset), static_cast<int>(size));
+    }
 
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_readReadyAt(JNIEnv *env, jclass clazz, jlong hnd, jlong address, jint size){
+        return fromHandle(hnd)->readReady(reinterpret_cast<uint8_t *>(address), static_cast<int>(size));
+    }
 
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_writeReady(JNIEnv *env, jclass clazz, jlong hnd, jobject data, jint offset, jint size){
+        return fromHandle(hnd)->writeReady(directAddress(env, data, offset), static_cast<int>(size));
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_readReadyArray(JNIEnv *env, jclass clazz, jlong hnd, jbyteArray data, jint offset, jint size){
+        return readRegion(env, fromHandle(hnd), &Serial::readReady, data, offset, size);
+    }
 
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_BasicSerial_writeReadyArray(JNIEnv *env, jclass clazz, jlong hnd, jbyteArray data, jint offset, jint size){
+        return writeRegion(env, fromHandle(hnd), &Serial::writeReady, data, offset, size);
+    }
+
+    JNIEXPORT jlong JNICALL Java_org_molasdin_io_serial_SerialReactor_createReactor(JNIEnv *env, jclass clazz){
+        try {
+            return reinterpret_cast<jlong>(Reactor::create());
+        } catch (ReactorException &ex) {
+            throwException(env, "Can not create reactor");
+        }
+        return 0;
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_SerialReactor_closeReactor(JNIEnv *env, jclass clazz, jlong hnd){
+        delete reinterpret_cast<Reactor*>(hnd);
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_SerialReactor_addPort(JNIEnv *env, jclass clazz, jlong hnd, jint fd, jint token, jint events){
+        try {
+            reinterpret_cast<Reactor*>(hnd)->add(fd, token, events);
+        } catch (ReactorException &ex) {
+            throwException(env, "Can not register port");
+        }
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_SerialReactor_modifyPort(JNIEnv *env, jclass clazz, jlong hnd, jint fd, jint token, jint events){
+        try {
+            reinterpret_cast<Reactor*>(hnd)->modify(fd, token, events);
+        } catch (ReactorException &ex) {
+            throwException(env, "Can not modify port registration");
+        }
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_SerialReactor_removePort(JNIEnv *env, jclass clazz, jlong hnd, jint fd){
+        reinterpret_cast<Reactor*>(hnd)->remove(fd);
+    }
+
+    JNIEXPORT jint JNICALL Java_org_molasdin_io_serial_SerialReactor_waitReady(JNIEnv *env, jclass clazz, jlong hnd, jobject ready, jint capacity, jlong timeout){
+        try {
+            return reinterpret_cast<Reactor*>(hnd)->wait(static_cast<int32_t*>(env->GetDirectBufferAddress(ready)),
+                static_cast<int>(capacity), static_cast<long>(timeout));
+        } catch (ReactorException &ex) {
+            throwException(env, "Reactor wait failed");
+        }
+        return 0;
+    }
+
+    JNIEXPORT void JNICALL Java_org_molasdin_io_serial_SerialReactor_wakeup(JNIEnv *env, jclass clazz, jlong hnd){
+        reinterpret_cast<Reactor*>(hnd)->wakeup();
+    }
+}
+#endif
@@ -24,24 +24,135 @@
 #include <sys/time.h>
 #include <sys/select.h>
 #include <sys/types.h>
+#include <sys/uio.h>
+#include <errno.h>
+#include <poll.h>
+#include <stdlib.h>
+#include <vector>
+
+#ifdef __linux__
+#include <signal.h>
+#include <pthread.h>
+#include <chrono>
+#include <linux/serial.h>
+#endif
+
+#ifdef __APPLE__
+#include <IOKit/serial/ioss.h>
+#endif
 
 #include "serial.h"
 
+#ifdef __linux__
+/**
+    Kernel layout of termios2 (asm-generic/termbits.h).
+    It can not be included together with termios.h,
+    so it is declared here, TCGETS2/TCSETS2 refer to it by name
+*/
+struct termios2{
+    tcflag_t c_iflag;
+    tcflag_t c_oflag;
+    tcflag_t c_cflag;
+    tcflag_t c_lflag;
+    cc_t c_line;
+    cc_t c_cc[19];
+    speed_t c_ispeed;
+    speed_t c_ospeed;
+};
+
+#ifndef BOTHER
+#define BOTHER 0010000
+#endif
+
+#ifndef IBSHIFT
+#define IBSHIFT 16
+#endif
+
+/**
+    Signal used to interrupt TIOCMIWAIT.
+    Handler is empty and installed without SA_RESTART
+    so blocked ioctl returns with EINTR
+*/
+static void wakeHandler(int){
+}
+
+static int wakeSignal(){
+    return SIGRTMIN + 4;
+}
+
+static bool installWakeHandler(){
+    static int installed = -1;
+    if(installed == -1){
+        struct sigaction current;
+        sigaction(wakeSignal(), nullptr, &current);
+        if(current.sa_handler != SIG_DFL && current.sa_handler != wakeHandler){
+            //somebody else owns this signal, interrupt mode can not be used
+            installed = 0;
+        } else {
+            struct sigaction action;
+            memset(&action, 0, sizeof(action));
+            action.sa_handler = wakeHandler;
+            sigemptyset(&action.sa_mask);
+            installed = sigaction(wakeSignal(), &action, nullptr) == 0 ? 1 : 0;
+        }
+    }
+    return installed == 1;
+}
+#endif
+
 
 class NixSerial:public Serial{
 private:
     int fd;
     termios options;
+    //pseudo terminal slave end kept open by master
+    int peerFd = -1;
+    char peer[128];
+    //vectors reused by scattering/gathering operations
+    std::vector<iovec> readVec;
+    std::vector<iovec> writeVec;
+    //modem states for SPI lines, index is sck | mosi << 1
+    bool maskedLines = false;
+    int lineStates[4];
+    int lineState = -1;
+#ifdef __linux__
+    //interrupt driven detection state
+    bool modemWaitSupported = true;
+    bool icountSupported = true;
+    serial_icounter_struct lastCount;
+    bool *pendingRestore = nullptr;
+    //detection time of pulses which are restored on next call
+    int64_t restoreNanos = 0;
+    std::atomic<bool> waiting{false};
+    pthread_t waiter;
+#endif
 public:
     NixSerial(const char *name):Serial(name){
        
     }
+
+    /**
+        Adopts already opened pseudo terminal master
+    */
+    NixSerial(int master, int slave, const char *slaveName):Serial("/dev/ptmx"), fd(master), peerFd(slave){
+        strncpy(peer, slaveName, sizeof(peer) - 1);
+        peer[sizeof(peer) - 1] = 0;
+        termios options;
+        tcgetattr(fd, &options);
+        cfmakeraw(&options);
+        tcsetattr(fd, TCSANOW, &options);
+    }
     
     virtual ~NixSerial() {
         if(isOpen()){
             terminateSignalsWait();
             close();
         }
+#ifdef __linux__
+        if(pendingRestore != nullptr){
+            delete [] pendingRestore;
+        }
+#endif
     }
     
     virtual void open() override{
@@ -60,6 +171,10 @@ public:
     virtual void close() override{
         ::close(fd);
         fd = 0;
+        if(peerFd != -1){
+            ::close(peerFd);
+            peerFd = -1;
+        }
     }
     
     virtual bool isOpen() override{
@@ -91,9 +206,11 @@ public:
             case 9600:
                 tmp = B9600;
                 break;
+#ifdef B14400
             case 14400:
                 tmp = B14400;
                 break;
+#endif
             case 19200:
                 tmp = B19200;
                 break;
@@ -140,9 +257,11 @@ public:
             case B9600:
                 tmp = 9600;
                 break;
+#ifdef B14400
             case B14400:
                 tmp = 14400;
                 break;
+#endif
             case B19200:
                 tmp = 19200;
                 break;
@@ -162,6 +281,63 @@ public:
 
         return tmp;
     }
+
+#ifdef __linux__
+    /**
+        Any rate is passed to driver with BOTHER, driver
+        stores rate it actually uses into c_ospeed
+    */
+    virtual void setBaudRateValue(int baudRate) override{
+        termios2 tio;
+        if(ioctl(fd, TCGETS2, &tio) == -1){
+            throw CanNotReadConfigException();
+        }
+        tio.c_cflag &= ~(CBAUD | (CBAUD << IBSHIFT));
+        tio.c_cflag |= BOTHER | (BOTHER << IBSHIFT);
+        tio.c_ispeed = static_cast<speed_t>(baudRate);
+        tio.c_ospeed = static_cast<speed_t>(baudRate);
+        if(ioctl(fd, TCSETS2, &tio) == -1){
+            throw CanNotWriteConfigException();
+        }
+    }
+
+    virtual int baudRateValue() override{
+        termios2 tio;
+        if(ioctl(fd, TCGETS2, &tio) == -1){
+            throw CanNotReadConfigException();
+        }
+        return static_cast<int>(tio.c_ospeed);
+    }
+#elif defined(__APPLE__)
+    virtual void setBaudRateValue(int baudRate) override{
+        speed_t speed = static_cast<speed_t>(baudRate);
+        if(ioctl(fd, IOSSIOSPEED, &speed) == -1){
+            throw CanNotWriteConfigException();
+        }
+    }
+
+    virtual int baudRateValue() override{
+        readOptions();
+        return static_cast<int>(cfgetospeed(&options));
+    }
+#else
+    /**
+        BSD speed_t values are plain rates
+    */
+    virtual void setBaudRateValue(int baudRate) override{
+        readOptions();
+        cfsetispeed(&options, static_cast<speed_t>(baudRate));
+        cfsetospeed(&options, static_cast<speed_t>(baudRate));
+        if(tcsetattr(fd, TCSANOW, &options) == -1){
+            throw CanNotWriteConfigException();
+        }
+    }
+
+    virtual int baudRateValue() override{
+        readOptions();
+        return static_cast<int>(cfgetospeed(&options));
+    }
+#endif
     
     virtual void setDataBits(Serial::DataBits dataBits) override{
         readOptions();
@@ -317,7 +493,12 @@ public:
         if(signalCode == Signal::TXD){
             ioctl(fd, value?TIOCSBRK:TIOCCBRK);
         } else if (signalCode == Signal::DTR){
+#ifdef TIOCSDTR
             ioctl(fd, value?TIOCSDTR:TIOCCDTR);
+#else
+            int bits = TIOCM_DTR;
+            ioctl(fd, value?TIOCMBIS:TIOCMBIC, &bits);
+#endif
         } else if (signalCode == Signal::RTS){
             int status;
             ioctl(fd, TIOCMGET, &status);
@@ -329,7 +510,7 @@ public:
     }
     
     virtual bool signal(Signal signalCode) override{
-        int status;
+        int status = 0;
         ioctl(fd, TIOCMGET, &status);
         if(signalCode == Signal::CTS){
             return status&TIOCM_CTS;
@@ -341,36 +522,358 @@ public:
             return status&TIOCM_RTS;
         } else if (signalCode == Signal::DCD){
             return status&TIOCM_CAR;
+        } else if (signalCode == Signal::RI){
+            return status&TIOCM_RNG;
         } else {
             throw InvalidSignalException();
         }
         return false;
     }
     
+#ifdef __linux__
+    virtual void prepareToCheckSignals(Signal signals[], int size) override{
+        Serial::prepareToCheckSignals(signals, size);
+        if(pendingRestore != nullptr){
+            delete [] pendingRestore;
+        }
+        pendingRestore = new bool[size];
+        for(int i = 0; i < size; i++){
+            pendingRestore[i] = false;
+        }
+        if(icountSupported && ioctl(fd, TIOCGICOUNT, &lastCount) == -1){
+            icountSupported = false;
+        }
+    }
+
+    /**
+        Blocks in kernel until one of watched lines changes.
+        Falls back to polling when driver does not support TIOCMIWAIT
+    */
+    virtual void detectChanged(uint8_t changed[]) override{
+        if(!modemWaitSupported || !installWakeHandler()){
+            Serial::detectChanged(changed);
+            return;
+        }
+        cleanChanged(changed);
+        waiter = pthread_self();
+        waiting = true;
+        bool detected = restorePending(changed);
+        while(!detected && !isSignalsWaitTerminated()){
+            detected = collectChanged(changed);
+            if(detected){
+                break;
+            }
+            int64_t settle = settleNanos(monotonicNanos());
+            if(settle >= 0){
+                //wake signal interrupts sleep on termination
+                timespec pause = {static_cast<time_t>(settle / 1000000000LL), static_cast<long>(settle % 1000000000LL)};
+                nanosleep(&pause, nullptr);
+                continue;
+            }
+            if(countersMoved()){
+                continue;
+            }
+            if(ioctl(fd, TIOCMIWAIT, watchedMask()) == -1 && errno != EINTR){
+                modemWaitSupported = false;
+                break;
+            }
+        }
+        waiting = false;
+        if(!modemWaitSupported && !detected){
+            Serial::detectChanged(changed);
+            return;
+        }
+        resetSignalsWaitTermination();
+    }
+
+    virtual void terminateSignalsWait() override{
+        Serial::terminateSignalsWait();
+        while(waiting){
+            pthread_kill(waiter, wakeSignal());
+            std::this_thread::sleep_for(std::chrono::microseconds(100));
+        }
+    }
+#endif
+
+    /**
+        Modem states for every combination of SPI lines are computed once,
+        so each edge is single TIOCMSET. Break on TXD is driven line by line
+    */
+    virtual void prepareLines(Signal sck, Signal mosi) override{
+        Serial::prepareLines(sck, mosi);
+        maskedLines = (sck == Signal::RTS || sck == Signal::DTR) && (mosi == Signal::RTS || mosi == Signal::DTR);
+        if(!maskedLines){
+            return;
+        }
+        int status = 0;
+        ioctl(fd, TIOCMGET, &status);
+        int sckBit = sck == Signal::RTS ? TIOCM_RTS : TIOCM_DTR;
+        int mosiBit = mosi == Signal::RTS ? TIOCM_RTS : TIOCM_DTR;
+        int base = status & ~(sckBit | mosiBit);
+        for(int state = 0; state < 4; state++){
+            lineStates[state] = base | ((state & 1) != 0 ? sckBit : 0) | ((state & 2) != 0 ? mosiBit : 0);
+        }
+        lineState = -1;
+    }
+
+    virtual void driveLines(int state) override{
+        if(!maskedLines){
+            Serial::driveLines(state);
+            return;
+        }
+        if(state != lineState){
+            ioctl(fd, TIOCMSET, &lineStates[state]);
+            lineState = state;
+        }
+    }
+
+    /**
+        One call for all lines, so levels of sample are coherent
+    */
+    virtual uint8_t captureLevels() override{
+        int status = 0;
+        ioctl(fd, TIOCMGET, &status);
+        uint8_t levels = 0;
+        levels = levels | ((status & TIOCM_CTS) != 0 ? 1u << static_cast<int>(Signal::CTS) : 0u);
+        levels = levels | ((status & TIOCM_DSR) != 0 ? 1u << static_cast<int>(Signal::DSR) : 0u);
+        levels = levels | ((status & TIOCM_CAR) != 0 ? 1u << static_cast<int>(Signal::DCD) : 0u);
+        levels = levels | ((status & TIOCM_RNG) != 0 ? 1u << static_cast<int>(Signal::RI) : 0u);
+        return levels;
+    }
+
     virtual int read(uint8_t *buffer, int size) override{
-        fd_set descr;
-        timeval tm;
-        long seconds = readTimeout()/1000;
-        long miliseconds = readTimeout()%1000;
-        tm.tv_sec = seconds;
-        tm.tv_usec = static_cast<decltype(tm.tv_usec)>(miliseconds*1000);
-        FD_ZERO(&descr);
-        FD_SET(fd, &descr);
-        int retCode = select(fd + 1, &descr, 0, 0, &tm);
-        if(retCode == 1){
-            return ::read(fd, buffer, (size_t)size);
+        if(waitReadable()){
+            return readReady(buffer, size);
         }
         return 0;
     }
     
     virtual int write(uint8_t *buffer, int size) override{
-        return ::write(fd, buffer, (size_t)size);
+        int result = writeReady(buffer, size);
+        //descriptor may be in non blocking mode when port is served by reactor
+        while(result == 0 && size > 0){
+            pollfd descr = {fd, POLLOUT, 0};
+            if(poll(&descr, 1, -1) == -1 && errno != EINTR){
+                return -1;
+            }
+            result = writeReady(buffer, size);
+        }
+        return result;
+    }
+
+    virtual long readVector(IoSpan spans[], int count) override{
+        if(!waitReadable()){
+            return 0;
+        }
+        fillVector(readVec, spans, count);
+        ssize_t result = ::readv(fd, readVec.data(), count);
+        if(result == -1 && (errno == EAGAIN || errno == EWOULDBLOCK)){
+            return 0;
+        }
+        return static_cast<long>(result);
+    }
+
+    virtual long writeVector(IoSpan spans[], int count) override{
+        fillVector(writeVec, spans, count);
+        ssize_t result = ::writev(fd, writeVec.data(), count);
+        while(result == -1 && (errno == EAGAIN || errno == EWOULDBLOCK || errno == EINTR)){
+            pollfd descr = {fd, POLLOUT, 0};
+            if(poll(&descr, 1, -1) == -1 && errno != EINTR){
+                return -1;
+            }
+            result = ::writev(fd, writeVec.data(), count);
+        }
+        return static_cast<long>(result);
+    }
+
+    virtual int descriptor() override{
+        return fd;
+    }
+
+    virtual void setNonBlocking(bool flag) override{
+        int flags = fcntl(fd, F_GETFL);
+        fcntl(fd, F_SETFL, flag ? flags | O_NONBLOCK : flags & ~O_NONBLOCK);
+    }
+
+    virtual bool awaitReadable(long micros) override{
+        return pollReadable(micros);
+    }
+
+    virtual int readReady(uint8_t *buffer, int size) override{
+        int result = ::read(fd, buffer, (size_t)size);
+        if(result == -1 && (errno == EAGAIN || errno == EWOULDBLOCK)){
+            return 0;
+        }
+        //end of stream after hangup, level triggered readiness would repeat forever
+        if(result == 0 && size > 0){
+            return -1;
+        }
+        return result;
+    }
+
+    virtual int writeReady(uint8_t *buffer, int size) override{
+        int result = ::write(fd, buffer, (size_t)size);
+        if(result == -1 && (errno == EAGAIN || errno == EWOULDBLOCK)){
+            return 0;
+        }
+        return result;
+    }
+
+    virtual const char* peerName() override{
+        return peerFd == -1 ? nullptr : peer;
     }
     
 private:
     void readOptions(){
         tcgetattr(fd, &options);
     }
+
+    /**
+        Waits for data up to read timeout
+    */
+    bool waitReadable(){
+        return pollReadable(readTimeout() * 1000);
+    }
+
+    /**
+        select can not be used because descriptors above FD_SETSIZE
+        overflow fd_set, so ppoll provides microsecond resolution where it exists
+    */
+    bool pollReadable(long micros){
+        pollfd descr = {fd, POLLIN, 0};
+#ifdef __linux__
+        timespec tm;
+        tm.tv_sec = micros / 1000000;
+        tm.tv_nsec = (micros % 1000000) * 1000;
+        return ppoll(&descr, 1, &tm, nullptr) > 0;
+#else
+        int millis = micros <= 0 ? 0 : static_cast<int>((micros + 999) / 1000);
+        return poll(&descr, 1, millis) > 0;
+#endif
+    }
+
+    static void fillVector(std::vector<iovec> &vec, IoSpan spans[], int count){
+        if(vec.size() < static_cast<size_t>(count)){
+            vec.resize(count);
+        }
+        for(int i = 0; i < count; i++){
+            vec[i].iov_base = spans[i].data;
+            vec[i].iov_len = static_cast<size_t>(spans[i].size);
+        }
+    }
+
+#ifdef __linux__
+    static int modemBit(Signal signalCode){
+        switch(signalCode){
+            case Signal::CTS:
+                return TIOCM_CTS;
+            case Signal::DSR:
+                return TIOCM_DSR;
+            case Signal::DCD:
+                return TIOCM_CAR;
+            case Signal::RI:
+                return TIOCM_RNG;
+            case Signal::DTR:
+                return TIOCM_DTR;
+            case Signal::RTS:
+                return TIOCM_RTS;
+            default:
+                throw InvalidSignalException();
+        }
+    }
+
+    static int edges(const serial_icounter_struct &count, Signal signalCode){
+        switch(signalCode){
+            case Signal::CTS:
+                return count.cts;
+            case Signal::DSR:
+                return count.dsr;
+            case Signal::DCD:
+                return count.dcd;
+            case Signal::RI:
+                return count.rng;
+            default:
+                return 0;
+        }
+    }
+
+    int watchedMask(){
+        int mask = 0;
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            mask |= modemBit(snapshotSignals()[i]);
+        }
+        return mask;
+    }
+
+    /**
+        Reports current values for lines which were reported
+        with intermediate value during previous call
+    */
+    bool restorePending(uint8_t changed[]){
+        bool detected = false;
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            if(pendingRestore[i]){
+                pendingRestore[i] = false;
+                detected = addChanged(changed, snapshotSignals()[i], snaphotSignalsValues()[i], restoreNanos) || detected;
+            }
+        }
+        return detected;
+    }
+
+    /**
+        TIOCMIWAIT is not woken by edges which arrived before it was entered,
+        so counters are compared with last snapshot right before blocking
+    */
+    bool countersMoved(){
+        serial_icounter_struct count;
+        if(!icountSupported || ioctl(fd, TIOCGICOUNT, &count) == -1){
+            return false;
+        }
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            Signal sig = snapshotSignals()[i];
+            if(edges(count, sig) != edges(lastCount, sig)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+        Compares lines with snapshot.
+        Interrupt counters allow to recover pulses which
+        started and ended between two wakeups: such line is reported
+        with inverted value now and restored on next call
+    */
+    bool collectChanged(uint8_t changed[]){
+        serial_icounter_struct count;
+        bool hasCount = icountSupported && ioctl(fd, TIOCGICOUNT, &count) == 0;
+        int status = 0;
+        ioctl(fd, TIOCMGET, &status);
+        int64_t now = monotonicNanos();
+        bool detected = false;
+        for(int i = 0; i < snapshotSignalsSize(); i++){
+            Signal sig = snapshotSignals()[i];
+            bool current = (status & modemBit(sig)) != 0;
+            if(debounced(sig)){
+                //pulses between readings are bounces for filtered lines
+                bool bounced = hasCount && edges(count, sig) != edges(lastCount, sig);
+                detected = filterChanged(changed, i, current, now, bounced) || detected;
+            } else if(current != snaphotSignalsValues()[i]){
+                snaphotSignalsValues()[i] = current;
+                detected = addChanged(changed, sig, current, now) || detected;
+            } else if(hasCount && edges(count, sig) != edges(lastCount, sig)
+                    && addChanged(changed, sig, !current, now)){
+                pendingRestore[i] = true;
+                restoreNanos = now;
+                detected = true;
+            }
+        }
+        if(hasCount){
+            lastCount = count;
+        }
+        return detected;
+    }
+#endif
     
     void applyChanges(){
         tcsetattr(fd, TCSANOW, &options);
@@ -382,4 +885,24 @@ void BasicSerial::init(const char *name){
     this->impl = new NixSerial(name);
 }
 
+BasicSerial* BasicSerial::openPseudoTerminal(){
+    int master = posix_openpt(O_RDWR | O_NOCTTY);
+    if(master == -1){
+        throw CanNotOpenPortException();
+    }
+    char *slaveName = nullptr;
+    int slave = -1;
+    if(grantpt(master) == 0 && unlockpt(master) == 0){
+        slaveName = ptsname(master);
+    }
+    if(slaveName != nullptr){
+        slave = ::open(slaveName, O_RDWR | O_NOCTTY);
+    }
+    if(slave == -1){
+        ::close(master);
+        throw CanNotOpenPortException();
+    }
+    return new BasicSerial(new NixSerial(master, slave, slaveName));
+}
+
 #endif
\ No newline at end of file
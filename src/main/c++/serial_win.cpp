@@ -22,6 +22,7 @@
 #include <winbase.h>
 
 #include "serial.h"
+#include "reactor.h"
 
 
 class WinSerial:public Serial{
@@ -156,6 +157,20 @@ public:
         return tmp;
     }
 
+    /**
+        DCB accepts any rate, driver may round it
+    */
+    virtual void setBaudRateValue(int baudRate) override{
+        readOptions();
+        dcb.BaudRate = static_cast<DWORD>(baudRate);
+        applyChanges();
+    }
+
+    virtual int baudRateValue() override{
+        readOptions();
+        return static_cast<int>(dcb.BaudRate);
+    }
+
     virtual void setDataBits(Serial::DataBits dataBits) override{
         BYTE flag = 0;
         switch (dataBits) {
@@ -316,6 +331,17 @@ public:
         SetCommTimeouts(fd, &tm);
     }
 
+    virtual uint8_t captureLevels() override{
+        DWORD status = 0;
+        GetCommModemStatus(fd, &status);
+        uint8_t levels = 0;
+        levels = levels | ((status & MS_CTS_ON) != 0 ? 1u << static_cast<int>(Signal::CTS) : 0u);
+        levels = levels | ((status & MS_DSR_ON) != 0 ? 1u << static_cast<int>(Signal::DSR) : 0u);
+        levels = levels | ((status & MS_RLSD_ON) != 0 ? 1u << static_cast<int>(Signal::DCD) : 0u);
+        levels = levels | ((status & MS_RING_ON) != 0 ? 1u << static_cast<int>(Signal::RI) : 0u);
+        return levels;
+    }
+
     virtual bool signal(Signal signalCode) override{
         DWORD status = 0;
         GetCommModemStatus(fd, &status);
@@ -325,12 +351,22 @@ public:
             return (status&MS_DSR_ON) != 0;
         } else if (signalCode == Signal::DCD){
             return (status&MS_RLSD_ON) != 0;
+        } else if (signalCode == Signal::RI){
+            return (status&MS_RING_ON) != 0;
         } else {
             throw InvalidSignalException();
         }
     }
 
+    /**
+        Comm events do not tell when debounced line became stable,
+        so lines are polled while any filter is configured
+    */
     virtual void detectChanged(uint8_t changed[]) override{
+        if(hasDebounce()){
+            Serial::detectChanged(changed);
+            return;
+        }
         cleanChanged(changed);
         DWORD result = 0;
         DWORD tmp = 0;
@@ -342,22 +378,28 @@ public:
                 throw SerialException();
             }
         }
+        resetSignalsWaitTermination();
 
         if(result == 0){
             return;
         }
+        int64_t now = monotonicNanos();
         if(result & EV_CTS){
-            addChanged(changed, Signal::CTS, signal(Signal::CTS));
+            addChanged(changed, Signal::CTS, signal(Signal::CTS), now);
         }
         if (result & EV_DSR){
-            addChanged(changed, Signal::DSR, signal(Signal::DSR));
+            addChanged(changed, Signal::DSR, signal(Signal::DSR), now);
         }
         if (result & EV_RLSD){
-            addChanged(changed, Signal::DCD, signal(Signal::DCD));
+            addChanged(changed, Signal::DCD, signal(Signal::DCD), now);
+        }
+        if (result & EV_RING){
+            addChanged(changed, Signal::RI, signal(Signal::RI), now);
         }
     }
 
     virtual void terminateSignalsWait() override{
+        Serial::terminateSignalsWait();
         SetCommMask(fd, 0);
     }
 
@@ -373,10 +415,15 @@ public:
                     break;
                 case Signal::DCD:
                     mask = mask | EV_RLSD;
+                    break;
+                case Signal::RI:
+                    mask = mask | EV_RING;
+                    break;
                 default:
                     throw InvalidSignalException();
             }
         }
+        Serial::prepareToCheckSignals(signals, size);
         SetCommMask(fd, mask);
         prepareOverlapped();
     }
@@ -438,4 +485,12 @@ void BasicSerial::init(const char *name){
     this->impl = new WinSerial(name);
 }
 
+BasicSerial* BasicSerial::openPseudoTerminal(){
+    throw CanNotOpenPortException();
+}
+
+Reactor* Reactor::create(){
+    throw ReactorException();
+}
+
 #endif
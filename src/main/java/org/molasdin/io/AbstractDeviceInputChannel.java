@@ -16,10 +16,13 @@
 
 package org.molasdin.io;
 
+import org.molasdin.io.metrics.DeviceMetrics;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.CompletionHandler;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by molasdin on 3/10/15.
@@ -35,6 +38,10 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
     private long exactDelay = 1L;
     private Boolean readActive = false;
     private ExecutorService executorService;
+    private Executor executor;
+    private SerialExecutor serial;
+    private volatile Future<Integer> pending;
+    private DeviceMetrics metrics;
 
     @Override
     public void setExactMode(Boolean flag) {
@@ -48,7 +55,22 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
 
     @Override
     public void setExactDelay(Long micros) {
-        this.exactDelay = micros * 1000000;
+        this.exactDelay = micros;
+    }
+
+    /**
+     * Reads, zero length reads and exact mode retries are counted into "metrics"
+     */
+    public void setMetrics(DeviceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Non blocking reads run on "executor" instead of own thread,
+     * it is not shut down on close
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
     }
 
     @Override
@@ -61,13 +83,15 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
         return readActive;
     }
 
+    @Override
+    public Boolean awaitData(Long micros) {
+        return awaitImpl(micros);
+    }
+
     @Override
     public <A> Future<Integer> readNoBlock(final ByteBuffer dst, final A attachment, final CompletionHandler<Integer, ? super A> handler) {
         readStatus();
-        if (executorService == null) {
-            executorService = Executors.newFixedThreadPool(1);
-        }
-        return executorService.submit(new Callable<Integer>() {
+        Callable<Integer> task = new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 try {
@@ -85,7 +109,21 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
                 }
                 return null;
             }
-        });
+        };
+        Executor target = executor != null ? executor : DeviceExecution.INSTANCE.defaultExecutor();
+        if (target == null) {
+            if (executorService == null) {
+                executorService = Executors.newFixedThreadPool(1);
+            }
+            return executorService.submit(task);
+        }
+        if (serial == null || serial.target() != target) {
+            serial = new SerialExecutor(target);
+        }
+        FutureTask<Integer> future = new FutureTask<>(task);
+        pending = future;
+        serial.execute(future);
+        return future;
     }
 
     @Override
@@ -93,6 +131,41 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
         return readData(dst);
     }
 
+    @Override
+    public int read(ByteBuffer dst, int minBytes, long deadline) throws IOException {
+        if (minBytes < 0) {
+            throw new IllegalArgumentException("Amount of bytes should not be negative");
+        }
+        readStatus();
+        readActive = true;
+        try {
+            int min = Math.min(minBytes, dst.remaining());
+            DeviceMetrics current = metrics;
+            if (current == null) {
+                return readImpl(dst, min, deadline);
+            }
+            long start = current.start();
+            int result = readImpl(dst, min, deadline);
+            current.readDone(start, result);
+            return result;
+        } finally {
+            readActive = false;
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > dsts.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return readData(dsts, offset, length);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
     @Override
     public void close() throws IOException {
         try {
@@ -107,8 +180,10 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
                     executorService.shutdownNow();
                 }
             }
+            SerialExecutor.awaitDone(pending);
         } finally {
             executorService = null;
+            pending = null;
             closeImpl();
         }
     }
@@ -118,27 +193,19 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
         readActive = true;
         try {
             if (!exactMode) {
-                return readImpl(buffer);
+                return readCounted(buffer);
             }
             int total = 0;
             long attempts = exactAttempts;
             boolean firstRun = true;
-            long resultDelay = 0;
             while (buffer.remaining() != 0 && (attempts == -1L || attempts != 0L)) {
                 if(!firstRun){
-                    if(exactDelay == 0){
-                        Thread.yield();
-                    } else {
-                        resultDelay = System.nanoTime() + exactDelay;
-                        while(resultDelay > System.nanoTime()){
-                            Thread.yield();
-                        }
-                    }
+                    exactPause();
                 }
                 if (attempts != -1L) {
                     attempts = attempts - 1;
                 }
-                total = total + readImpl(buffer);
+                total = total + readCounted(buffer);
                 firstRun = false;
             }
             return total;
@@ -148,6 +215,85 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
 
     }
 
+    private Long readData(ByteBuffer[] buffers, int offset, int length) {
+        readStatus();
+        readActive = true;
+        try {
+            if (!exactMode) {
+                return readCounted(buffers, offset, length);
+            }
+            long total = 0;
+            long attempts = exactAttempts;
+            boolean firstRun = true;
+            while (remaining(buffers, offset, length) != 0 && (attempts == -1L || attempts != 0L)) {
+                if (!firstRun) {
+                    exactPause();
+                }
+                if (attempts != -1L) {
+                    attempts = attempts - 1;
+                }
+                total = total + readCounted(buffers, offset, length);
+                firstRun = false;
+            }
+            return total;
+        } finally {
+            readActive = false;
+        }
+    }
+
+    private int readCounted(ByteBuffer buffer) {
+        DeviceMetrics current = metrics;
+        if (current == null) {
+            return readImpl(buffer);
+        }
+        long start = current.start();
+        int result = readImpl(buffer);
+        current.readDone(start, result);
+        return result;
+    }
+
+    private long readCounted(ByteBuffer[] buffers, int offset, int length) {
+        DeviceMetrics current = metrics;
+        if (current == null) {
+            return readImpl(buffers, offset, length);
+        }
+        long start = current.start();
+        long result = readImpl(buffers, offset, length);
+        current.readDone(start, result);
+        return result;
+    }
+
+    private void exactPause() {
+        DeviceMetrics current = metrics;
+        if (current != null) {
+            current.exactRetry();
+        }
+        if(exactDelay == 0){
+            Thread.yield();
+        } else {
+            pause(exactDelay);
+        }
+    }
+
+    /**
+     * Waits for data up to "micros", devices which can not wait are polled after park
+     */
+    private void pause(long micros) {
+        if (awaitsData()) {
+            awaitImpl(micros);
+        } else {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+    }
+
+    private static long remaining(ByteBuffer[] buffers, int offset, int length) {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total = total + buffers[i].remaining();
+        }
+        return total;
+    }
+
     private void readStatus() {
         if (readActive) {
             throw new IllegalStateException("Read is in progress");
@@ -156,5 +302,73 @@ public abstract class AbstractDeviceInputChannel implements DeviceInputChannel {
 
     protected abstract Integer readImpl(ByteBuffer buffer);
 
+    /**
+     * Waits for data, devices without such wait report data at once
+     */
+    protected boolean awaitImpl(long micros) {
+        return true;
+    }
+
+    /**
+     * @return true if "awaitImpl" really waits for data, should be overridden with it
+     */
+    protected boolean awaitsData() {
+        return false;
+    }
+
+    /**
+     * Waits for data with "awaitImpl" and reads it until "minBytes" are read or deadline passes,
+     * readiness without data ends read as end of stream. Devices which can not wait are
+     * polled with exact delay between reads instead
+     * Can be overridden if device waits for amount of data itself
+     */
+    protected Integer readImpl(ByteBuffer buffer, int minBytes, long deadline) {
+        boolean awaits = awaitsData();
+        int total = 0;
+        while (total < minBytes) {
+            long left = Math.max(0L, deadline - System.nanoTime());
+            if (awaits && !awaitImpl(TimeUnit.NANOSECONDS.toMicros(left))) {
+                break;
+            }
+            int result = readImpl(buffer);
+            if (result < 0) {
+                return total == 0 ? result : total;
+            }
+            total = total + result;
+            if (left == 0 || (result == 0 && awaits)) {
+                break;
+            }
+            if (result == 0) {
+                LockSupport.parkNanos(Math.min(left, TimeUnit.MICROSECONDS.toNanos(Math.max(1L, exactDelay))));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Scattering read, fills buffers in order
+     * Can be overridden if device supports vectored io
+     * Default implementation reads buffer by buffer
+     */
+    protected Long readImpl(ByteBuffer[] buffers, int offset, int length) {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer buffer = buffers[i];
+            if (!buffer.hasRemaining()) {
+                continue;
+            }
+            int expected = buffer.remaining();
+            int result = readImpl(buffer);
+            if (result <= 0) {
+                return total == 0 ? result : total;
+            }
+            total = total + result;
+            if (result < expected) {
+                break;
+            }
+        }
+        return total;
+    }
+
     protected abstract void closeImpl();
 }
@@ -16,13 +16,19 @@
 
 package org.molasdin.io;
 
+import org.molasdin.io.metrics.DeviceMetrics;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.CompletionHandler;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by molasdin on 3/21/15.
@@ -39,6 +45,10 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
     private Integer partSize = 0;
     private long exactDelay = 1L;
     private ExecutorService executorService;
+    private Executor executor;
+    private SerialExecutor serial;
+    private volatile Future<Integer> pending;
+    private DeviceMetrics metrics;
 
     @Override
     public void setExactMode(Boolean exact) {
@@ -66,8 +76,8 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
     }
 
     @Override
-    public void setExactDelay(Long millis) {
-        this.exactDelay = millis*1000000;
+    public void setExactDelay(Long micros) {
+        this.exactDelay = micros;
     }
 
     @Override
@@ -80,6 +90,28 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
         return writeActive;
     }
 
+    /**
+     * Writes and exact mode retries are counted into "metrics"
+     */
+    public void setMetrics(DeviceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Non blocking writes run on "executor" instead of own thread,
+     * it is not shut down on close
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return executor set for channel or default one, null means own thread
+     */
+    protected Executor executor() {
+        return executor != null ? executor : DeviceExecution.INSTANCE.defaultExecutor();
+    }
+
     @Override
     public Future<Integer> writeNoBlock(ByteBuffer buffer) {
         return writeNoBlock(buffer, null, null);
@@ -88,14 +120,10 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
     @Override
     public <A> Future<Integer> writeNoBlock(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
         writeStatus();
-        if (executorService == null) {
-            executorService = Executors.newFixedThreadPool(1);
-        }
-        return executorService.submit(new Callable<Integer>() {
+        Callable<Integer> task = new Callable<Integer>() {
             @Override
             public Integer call() throws Exception {
                 try {
-                    writeActive = true;
                     Integer result = writeData(dst);
                     if (handler != null) {
                         handler.completed(result, attachment);
@@ -110,7 +138,21 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
                 }
                 return null;
             }
-        });
+        };
+        Executor target = executor();
+        if (target == null) {
+            if (executorService == null) {
+                executorService = Executors.newFixedThreadPool(1);
+            }
+            return executorService.submit(task);
+        }
+        if (serial == null || serial.target() != target) {
+            serial = new SerialExecutor(target);
+        }
+        FutureTask<Integer> future = new FutureTask<>(task);
+        pending = future;
+        serial.execute(future);
+        return future;
     }
 
     @Override
@@ -118,16 +160,46 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
         return writeData(src);
     }
 
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return writeData(srcs, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
     @Override
     public void close() throws IOException {
-        closeImpl();
+        try {
+            if (executorService != null) {
+                executorService.shutdown();
+                try {
+                    executorService.awaitTermination(5L, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                if (!executorService.isTerminated()) {
+                    executorService.shutdownNow();
+                }
+            }
+            SerialExecutor.awaitDone(pending);
+        } finally {
+            executorService = null;
+            pending = null;
+            closeImpl();
+        }
     }
 
     private Integer writeData(ByteBuffer buffer){
         writeStatus();
         writeActive = true;
         if(!exactMode) {
-            int result = writeImpl(buffer);
+            int result = writeCounted(buffer);
             writeActive = false;
             return result;
         }
@@ -135,17 +207,9 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
         boolean firstRun = true;
         int bufferSize = buffer.remaining();
         int total = 0;
-        long resultDelay = 0;
         while (total < bufferSize && (attempts == -1L || attempts != 0L)){
             if(!firstRun){
-                if(exactDelay == 0){
-                    Thread.yield();
-                } else {
-                    resultDelay = System.nanoTime() + exactDelay;
-                    while(resultDelay > System.nanoTime()){
-                        Thread.yield();
-                    }
-                }
+                exactPause();
             }
 
             if(partSize != 0 && bufferSize > buffer.position() + partSize){
@@ -158,7 +222,7 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
                 attempts = attempts - 1;
             }
 
-            total = total + writeImpl(buffer);
+            total = total + writeCounted(buffer);
 
             firstRun = false;
         }
@@ -166,6 +230,77 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
         return total;
     }
 
+    /**
+     * Part size is not applied to gathering writes
+     */
+    private Long writeData(ByteBuffer[] buffers, int offset, int length){
+        writeStatus();
+        writeActive = true;
+        try {
+            if (!exactMode) {
+                return writeCounted(buffers, offset, length);
+            }
+            long attempts = exactAttempts;
+            boolean firstRun = true;
+            long total = 0;
+            while (remaining(buffers, offset, length) != 0 && (attempts == -1L || attempts != 0L)) {
+                if (!firstRun) {
+                    exactPause();
+                }
+                if (attempts != -1L) {
+                    attempts = attempts - 1;
+                }
+                total = total + writeCounted(buffers, offset, length);
+                firstRun = false;
+            }
+            return total;
+        } finally {
+            writeActive = false;
+        }
+    }
+
+    private int writeCounted(ByteBuffer buffer) {
+        DeviceMetrics current = metrics;
+        if (current == null) {
+            return writeImpl(buffer);
+        }
+        long start = current.start();
+        int result = writeImpl(buffer);
+        current.writeDone(start, result);
+        return result;
+    }
+
+    private long writeCounted(ByteBuffer[] buffers, int offset, int length) {
+        DeviceMetrics current = metrics;
+        if (current == null) {
+            return writeImpl(buffers, offset, length);
+        }
+        long start = current.start();
+        long result = writeImpl(buffers, offset, length);
+        current.writeDone(start, result);
+        return result;
+    }
+
+    private void exactPause(){
+        DeviceMetrics current = metrics;
+        if (current != null) {
+            current.exactRetry();
+        }
+        if(exactDelay == 0){
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(exactDelay));
+        }
+    }
+
+    private static long remaining(ByteBuffer[] buffers, int offset, int length){
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total = total + buffers[i].remaining();
+        }
+        return total;
+    }
+
     private void writeStatus(){
         if(writeActive){
             throw new IllegalStateException("Write is in progress");
@@ -174,4 +309,29 @@ public abstract class AbstractDeviceOutputChannel implements DeviceOutputChannel
 
     protected abstract void closeImpl();
     protected abstract Integer writeImpl(ByteBuffer buffer);
+
+    /**
+     * Gathering write, drains buffers in order
+     * Can be overridden if device supports vectored io
+     * Default implementation writes buffer by buffer
+     */
+    protected Long writeImpl(ByteBuffer[] buffers, int offset, int length) {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer buffer = buffers[i];
+            if (!buffer.hasRemaining()) {
+                continue;
+            }
+            int expected = buffer.remaining();
+            int result = writeImpl(buffer);
+            if (result <= 0) {
+                return total == 0 ? result : total;
+            }
+            total = total + result;
+            if (result < expected) {
+                break;
+            }
+        }
+        return total;
+    }
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io;
+
+import org.molasdin.io.util.DirectBufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces small writes into off heap staging buffer and passes
+ * them to underlying channel in batches.
+ * Staged data is written when flush threshold is reached, when max delay
+ * since first staged byte expires or on explicit "flush".
+ * Writes bigger than threshold bypass staging.
+ * Failures of timed flush and of close are kept and thrown by next
+ * "write", "flush" or "close".
+ * Timed flush runs on channel executor or on shared device executor,
+ * so stalled port does not delay flushes of other ports.
+ */
+public class BufferedOutputChannel extends AbstractDeviceOutputChannel {
+
+    /**
+     * Only hands timed flushes to executors, never writes itself
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "output-flush-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DeviceOutputChannel target;
+    private final ByteBuffer staging;
+    private final int capacity;
+    private final Object lock = new Object();
+    private int threshold;
+    private long maxDelay = 1000L;
+    private boolean scheduled = false;
+    private boolean open = true;
+    private IOException failure;
+
+    private volatile long writes = 0;
+    private volatile long flushes = 0;
+
+    /**
+     * @param target   channel which receives batches
+     * @param capacity staging size in bytes, also default flush threshold
+     */
+    public BufferedOutputChannel(DeviceOutputChannel target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.target = target;
+        this.staging = DirectBufferPool.shared().acquire(capacity);
+        this.capacity = capacity;
+        this.threshold = capacity;
+    }
+
+    /**
+     * Amount of staged bytes which triggers write, not bigger than capacity
+     */
+    public void setFlushThreshold(Integer bytes) {
+        synchronized (lock) {
+            threshold = Math.max(1, Math.min(bytes, capacity));
+        }
+    }
+
+    public Integer flushThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Max time staged data waits for write, 0 disables timer
+     * @param micros
+     */
+    public void setMaxDelay(Long micros) {
+        this.maxDelay = micros;
+    }
+
+    public Long maxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Writes all staged data
+     * @return amount of bytes written
+     */
+    public int flush() throws IOException {
+        synchronized (lock) {
+            throwFailure();
+            try {
+                return flushStaged();
+            } finally {
+                scheduleFlush();
+            }
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        synchronized (lock) {
+            throwFailure();
+        }
+        return super.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        synchronized (lock) {
+            throwFailure();
+        }
+        return super.write(srcs, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        synchronized (lock) {
+            throwFailure();
+        }
+    }
+
+    /**
+     * @return amount of write calls which accepted data
+     */
+    public long writes() {
+        return writes;
+    }
+
+    /**
+     * @return amount of writes issued to underlying channel
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * @return amount of underlying writes avoided by coalescing
+     */
+    public long savedWrites() {
+        return Math.max(0L, writes - flushes);
+    }
+
+    public int staged() {
+        synchronized (lock) {
+            return staging.position();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    protected Integer writeImpl(ByteBuffer buffer) {
+        synchronized (lock) {
+            if (!open) {
+                throw new IllegalStateException("Channel is closed");
+            }
+            int result;
+            try {
+                result = stage(buffer);
+            } catch (IOException ex) {
+                return -1;
+            } finally {
+                scheduleFlush();
+            }
+            if (result > 0) {
+                writes++;
+            }
+            return result;
+        }
+    }
+
+    private int stage(ByteBuffer buffer) throws IOException {
+        int total = buffer.remaining();
+        if (total >= threshold || total > staging.remaining()) {
+            //staged bytes should leave first to keep order
+            flushStaged();
+            if (staging.position() != 0) {
+                return 0;
+            }
+            if (total >= threshold) {
+                return passThrough(buffer);
+            }
+        }
+        staging.put(buffer);
+        if (staging.position() >= threshold) {
+            flushStaged();
+        }
+        return total;
+    }
+
+    @Override
+    protected void closeImpl() {
+        synchronized (lock) {
+            if (!open) {
+                return;
+            }
+            try {
+                flushStaged();
+            } catch (IOException ex) {
+                record(ex);
+            }
+            open = false;
+            DirectBufferPool.shared().release(staging);
+        }
+        try {
+            target.close();
+        } catch (IOException ex) {
+            synchronized (lock) {
+                record(ex);
+            }
+        }
+    }
+
+    private void record(IOException ex) {
+        if (failure == null) {
+            failure = ex;
+        } else if (failure != ex) {
+            failure.addSuppressed(ex);
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        IOException ex = failure;
+        if (ex != null) {
+            failure = null;
+            throw ex;
+        }
+    }
+
+    private int passThrough(ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            flushes++;
+            int result = target.write(buffer);
+            if (result <= 0) {
+                return total == 0 ? result : total;
+            }
+            total += result;
+        }
+        return total;
+    }
+
+    private int flushStaged() throws IOException {
+        if (!open || staging.position() == 0) {
+            return 0;
+        }
+        staging.flip();
+        int total = 0;
+        try {
+            while (staging.hasRemaining()) {
+                flushes++;
+                int result = target.write(staging);
+                if (result < 0) {
+                    throw new IOException("Device write failed");
+                }
+                if (result == 0) {
+                    break;
+                }
+                total += result;
+            }
+        } finally {
+            staging.compact();
+            staging.limit(capacity);
+        }
+        return total;
+    }
+
+    /**
+     * Arms timer while data is staged, partially flushed data is rescheduled,
+     * failed flush is kept for caller and not retried until next write or flush
+     */
+    private void scheduleFlush() {
+        long delay = maxDelay;
+        if (scheduled || delay <= 0 || !open || staging.position() == 0) {
+            return;
+        }
+        scheduled = true;
+        TIMER.schedule(this::dispatchFlush, delay, TimeUnit.MICROSECONDS);
+    }
+
+    private void dispatchFlush() {
+        Executor executor = executor();
+        if (executor == null) {
+            executor = DeviceExecution.INSTANCE.shared();
+        }
+        try {
+            executor.execute(this::timedFlush);
+        } catch (RuntimeException ex) {
+            synchronized (lock) {
+                scheduled = false;
+            }
+            DeviceExecution.INSTANCE.reportFailure(ex);
+        }
+    }
+
+    private void timedFlush() {
+        synchronized (lock) {
+            scheduled = false;
+            try {
+                flushStaged();
+                scheduleFlush();
+            } catch (IOException ex) {
+                record(ex);
+            }
+        }
+    }
+}
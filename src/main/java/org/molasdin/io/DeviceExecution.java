@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor shared by devices for non blocking reads and writes and for pin listeners.
+ * Virtual threads are used when runtime provides them, otherwise shared pool of
+ * daemon platform threads. Virtual threads are disabled with
+ * "org.molasdin.io.virtualThreads=false" system property.
+ *
+ * By default every channel and signals processor keeps own threads. Shared mode is enabled
+ * with "org.molasdin.io.sharedExecution" system property or by "setDefaultExecutor",
+ * then amount of threads does not grow with amount of devices.
+ * Reads on virtual threads park until one native reactor thread reports readiness,
+ * without native reactor they poll and notice data up to 1 millisecond late.
+ */
+public enum DeviceExecution {
+    INSTANCE;
+
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private volatile ExecutorService shared;
+    private volatile Executor defaultExecutor;
+    private volatile Thread.UncaughtExceptionHandler failureHandler;
+
+    DeviceExecution() {
+        if (Boolean.getBoolean("org.molasdin.io.sharedExecution")) {
+            defaultExecutor = shared();
+        }
+    }
+
+    /**
+     * @return executor backed by virtual threads or by shared daemon pool
+     */
+    public Executor shared() {
+        ExecutorService current = shared;
+        if (current == null) {
+            synchronized (this) {
+                current = shared;
+                if (current == null) {
+                    current = createShared();
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Executor used by channels and signals processors without own executor,
+     * null means dedicated threads
+     */
+    public void setDefaultExecutor(Executor executor) {
+        this.defaultExecutor = executor;
+    }
+
+    public Executor defaultExecutor() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Enables shared mode with "shared" executor
+     */
+    public void useShared() {
+        setDefaultExecutor(shared());
+    }
+
+    /**
+     * Receives failures of listeners and of closing which can not be thrown to caller,
+     * null passes them to uncaught exception handler of current thread
+     */
+    public void setFailureHandler(Thread.UncaughtExceptionHandler handler) {
+        this.failureHandler = handler;
+    }
+
+    public Thread.UncaughtExceptionHandler failureHandler() {
+        return failureHandler;
+    }
+
+    public void reportFailure(Throwable ex) {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = failureHandler;
+        if (handler == null) {
+            handler = thread.getUncaughtExceptionHandler();
+        }
+        handler.uncaughtException(thread, ex);
+    }
+
+    /**
+     * @return true if virtual threads are available and enabled
+     */
+    public Boolean virtualThreads() {
+        return IS_VIRTUAL != null && !"false".equals(System.getProperty("org.molasdin.io.virtualThreads"));
+    }
+
+    /**
+     * Blocking native calls pin virtual thread to its carrier,
+     * so devices wait for data by parking when this returns true
+     */
+    public static boolean onVirtualThread() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    private ExecutorService createShared() {
+        if (virtualThreads()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                //platform threads are used instead
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "device-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Thread.isVirtual exists since Java 21, library is built for Java 8
+     */
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
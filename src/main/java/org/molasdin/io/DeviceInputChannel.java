@@ -16,11 +16,14 @@
 
 package org.molasdin.io;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousChannel;
 import java.nio.channels.CompletionHandler;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by molasdin on 3/10/15.
@@ -29,8 +32,9 @@ import java.util.concurrent.Future;
 /**
  * Represents device input
  * Supports blocking and non blocking io
+ * Scattering reads are supported, exact mode is applied to all buffers
  */
-public interface DeviceInputChannel extends ReadableByteChannel, AsynchronousChannel {
+public interface DeviceInputChannel extends ScatteringByteChannel, AsynchronousChannel {
     /**
      * Enables reading of exact amount data from device.
      * Read blocks untill all of the data is retrieved or attempts are exhausted.
@@ -45,8 +49,8 @@ public interface DeviceInputChannel extends ReadableByteChannel, AsynchronousCha
     void setExactAttempts(Long value);
 
     /**
-     * Delay between each low level read operation when exact
-     * amount of data is being retrieved
+     * Max delay between each low level read operation when exact
+     * amount of data is being retrieved, wait ends earlier when data arrives
      * @param micros
      */
     void setExactDelay(Long micros);
@@ -57,6 +61,44 @@ public interface DeviceInputChannel extends ReadableByteChannel, AsynchronousCha
      */
     Boolean isReadActive();
 
+    /**
+     * Waits until data can be read without blocking.
+     * Default implementation can not wait and reports readiness at once
+     * @param micros max wait
+     * @return true if data is available
+     */
+    default Boolean awaitData(Long micros) {
+        return true;
+    }
+
+    /**
+     * Reads until at least "minBytes" are received or deadline passes,
+     * waiting thread does not use CPU. Exact mode is not applied
+     * @param minBytes amount of bytes to wait for, limited by remaining space of "dst"
+     * @param deadline value of System.nanoTime when read returns with what it has
+     * @return amount of bytes read, -1 on device error when nothing was read
+     */
+    default int read(ByteBuffer dst, int minBytes, long deadline) throws IOException {
+        //repeats plain reads, empty ones are followed by short park
+        int min = Math.min(minBytes, dst.remaining());
+        int total = 0;
+        while (total < min) {
+            int result = read(dst);
+            if (result < 0) {
+                return total == 0 ? result : total;
+            }
+            total += result;
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+            if (result == 0) {
+                LockSupport.parkNanos(Math.min(left, TimeUnit.MICROSECONDS.toNanos(100)));
+            }
+        }
+        return total;
+    }
+
     /**
      * Operation is same as defined in NIO packages
      * @param buffer
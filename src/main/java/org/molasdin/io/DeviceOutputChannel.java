@@ -19,7 +19,7 @@ package org.molasdin.io;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousChannel;
 import java.nio.channels.CompletionHandler;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.util.concurrent.Future;
 
 /**
@@ -29,8 +29,9 @@ import java.util.concurrent.Future;
 /**
  * Represents device output
  * with blocking and non blocking capabilities
+ * Gathering writes are supported, exact mode is applied to all buffers
  */
-public interface DeviceOutputChannel extends WritableByteChannel, AsynchronousChannel {
+public interface DeviceOutputChannel extends GatheringByteChannel, AsynchronousChannel {
     /**
      * Same as for input
      * Write will be completed if and only if buffer is drained
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+/**
+ * Pin backed by line of device, lets device drive several such pins at once
+ */
+public interface DevicePin extends Pin {
+
+    /**
+     * @return device which owns line of pin
+     */
+    Device device();
+
+    /**
+     * @return id of line within device
+     */
+    Integer signal();
+}
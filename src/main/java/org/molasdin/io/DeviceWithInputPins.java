@@ -16,6 +16,11 @@
 
 package org.molasdin.io;
 
+import org.molasdin.io.capture.PinCapture;
+import org.molasdin.io.capture.PollingSampler;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -35,4 +40,33 @@ public interface DeviceWithInputPins extends Device{
      */
     void activatePinListeners();
     void stopPinListeners();
+
+    /**
+     * Starts sampling of all input pins every "periodNanos" into "buffer"
+     * until it is full or capture is stopped.
+     * Default implementation polls "value" of up to eight pins from Java
+     * @param buffer direct buffer or mapped file, receives run length encoded samples
+     */
+    default PinCapture capture(ByteBuffer buffer, Long periodNanos) {
+        final InPin[] pins = inputPins().values().toArray(new InPin[0]);
+        if (pins.length > Byte.SIZE) {
+            throw new IllegalStateException("Only " + Byte.SIZE + " pins can be captured");
+        }
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (int i = 0; i < pins.length; i++) {
+            lines.put(pins[i].name(), i);
+        }
+        return PinCapture.start(name(), lines, buffer, periodNanos, new PollingSampler() {
+            @Override
+            protected int levels() {
+                int levels = 0;
+                for (int i = 0; i < pins.length; i++) {
+                    if (Boolean.TRUE.equals(pins[i].value())) {
+                        levels |= 1 << i;
+                    }
+                }
+                return levels;
+            }
+        });
+    }
 }
@@ -27,4 +27,16 @@ public interface InPin extends Pin {
     Boolean value();
     void addListener(InputPinListener listener);
     void removeListener(InputPinListener listener);
+
+    /**
+     * Changes are reported only after pin keeps new level for "stableMicros".
+     * With "samples" above 1 level is majority of that many readings taken during
+     * stable time, so short glitches do not restart it. Zeros disable filtering.
+     * Default implementation has no filter and accepts only zeros
+     */
+    default void setDebounce(Long stableMicros, Integer samples) {
+        if (stableMicros != 0 || samples != 0) {
+            throw new IllegalArgumentException("Pin " + name() + " does not support debounce");
+        }
+    }
 }
@@ -27,6 +27,13 @@ public class InvertedInputPin implements InPin {
         this.pin = pin;
     }
 
+    /**
+     * @return pin which is inverted
+     */
+    public InPin original() {
+        return pin;
+    }
+
     @Override
     public Boolean value() {
         return !pin.value();
@@ -42,6 +49,11 @@ public class InvertedInputPin implements InPin {
         pin.removeListener(listener);
     }
 
+    @Override
+    public void setDebounce(Long stableMicros, Integer samples) {
+        pin.setDebounce(stableMicros, samples);
+    }
+
     @Override
     public String name() {
         return pin.name();
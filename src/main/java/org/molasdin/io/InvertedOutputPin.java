@@ -26,6 +26,13 @@ public class InvertedOutputPin implements OutPin {
         this.pin = pin;
     }
 
+    /**
+     * @return pin which is inverted
+     */
+    public OutPin original() {
+        return pin;
+    }
+
     @Override
     public void setValue(Boolean value) {
         pin.setValue(!value);
@@ -16,7 +16,12 @@
 
 package org.molasdin.io;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Created by molasdin on 3/18/15.
@@ -39,7 +44,28 @@ public class LibraryLoader {
         if(path == null){
             throw new RuntimeException("Library not found at class path");
         }
-        System.load(path.getFile());
+        if ("file".equals(path.getProtocol())) {
+            System.load(path.getFile());
+        } else {
+            System.load(extract(path, libFile));
+        }
+    }
+
+    /**
+     * Library packed into jar can not be loaded directly,
+     * so it is copied to temporary file first
+     */
+    private String extract(URL path, String libFile) {
+        try {
+            File tmp = File.createTempFile(libFile, null);
+            tmp.deleteOnExit();
+            try (InputStream stream = path.openStream()) {
+                Files.copy(stream, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return tmp.getAbsolutePath();
+        } catch (IOException ex) {
+            throw new RuntimeException("Library can not be extracted", ex);
+        }
     }
 
     private String boundName(){
@@ -53,7 +79,7 @@ public class LibraryLoader {
         if(os.contains("win")){
             return "win32";
         }
-        if(os.contains("nix")){
+        if(os.contains("nix") || os.contains("nux")){
             return "linux";
         }
         if(os.contains("freebsd")){
@@ -16,6 +16,8 @@
 
 package org.molasdin.io;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by molasdin on 2/17/15.
  */
@@ -25,13 +27,22 @@ public interface OutPin extends Pin {
     /**
      * Generates pulse
      * @param start   initial pulse value
-     * @param delay1  delay after initial value was set
-     * @param delay2  delay after initial value was inverted
+     * @param delay1  delay in millis after initial value was set
+     * @param delay2  delay in millis after initial value was inverted
      */
     default void pulsate(Boolean start, long delay1, long delay2){
+        pulsate(start, delay1, delay2, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Same as "pulsate" with delays in "unit", both delays are counted
+     * from pulse start so time of pin changes is not added to them
+     */
+    default void pulsate(Boolean start, long delay1, long delay2, TimeUnit unit){
+        long begin = System.nanoTime();
         setValue(start);
-        Sleep.sleepMillis(delay1);
+        Sleep.sleepUntil(begin + unit.toNanos(delay1));
         setValue(!start);
-        Sleep.sleepMillis(delay2);
+        Sleep.sleepUntil(begin + unit.toNanos(delay1) + unit.toNanos(delay2));
     }
 }
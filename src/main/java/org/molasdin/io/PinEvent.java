@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+/**
+ * Change of input pin, same instance is reused for next events of pin,
+ * so it is valid only during listener call
+ */
+public final class PinEvent {
+
+    private int signal;
+    private boolean value;
+    private long nanos;
+    private long sequence;
+
+    void set(int signal, boolean value, long nanos, long sequence) {
+        this.signal = signal;
+        this.value = value;
+        this.nanos = nanos;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return id of signal within device
+     */
+    public int signal() {
+        return signal;
+    }
+
+    /**
+     * @return new level of pin
+     */
+    public boolean value() {
+        return value;
+    }
+
+    /**
+     * @return time of detection, comparable with System.nanoTime. Ports take it
+     * in native code when change is seen
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return number of change within device, gap means lost events
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "PinEvent{signal=" + signal + ", value=" + value + ", nanos=" + nanos + ", sequence=" + sequence + '}';
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+/**
+ * Listener which gets time and sequence number of change,
+ * registered with "addListener" of pin like plain listener
+ */
+public interface PinEventListener extends InputPinListener {
+
+    /**
+     * @param event is reused after return, values should be copied to be kept
+     */
+    void pinChanged(PinEvent event);
+
+    @Override
+    default void pinChanged(boolean event) {
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+/**
+ * What happens to new pin event when ring of pin is full
+ */
+public enum PinEventPolicy {
+    /**
+     * Oldest queued event is dropped, listeners see most recent edges
+     */
+    DROP_OLDEST,
+    /**
+     * Newest queued edge is merged with new one, so level seen by listeners
+     * after all events is still current one while pulses inside burst are lost
+     */
+    COALESCE,
+    /**
+     * Watcher waits for space, edges are kept by device meanwhile if it can
+     */
+    BLOCK
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+/**
+ * Preallocated queue of events for one pin, single producer and single consumer.
+ * Consumer is scheduled at most once at a time, so events of pin are delivered in order
+ */
+final class PinEventRing {
+
+    private final int signal;
+    private final boolean[] values;
+    private final long[] detected;
+    private final long[] sequences;
+    private final int mask;
+    private final PinEvent event = new PinEvent();
+    private final PinEventPolicy policy;
+    private int head;
+    private int size;
+    private boolean scheduled;
+    private boolean closed;
+    private long dropped;
+
+    PinEventRing(int signal, int capacity, PinEventPolicy policy) {
+        int actual = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.signal = signal;
+        this.values = new boolean[actual];
+        this.detected = new long[actual];
+        this.sequences = new long[actual];
+        this.mask = actual - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * @return true if consumer should be scheduled
+     */
+    synchronized boolean offer(boolean value, long time, long sequence) {
+        if (size == values.length) {
+            PinEventPolicy current = closed ? PinEventPolicy.DROP_OLDEST : policy;
+            switch (current) {
+                case DROP_OLDEST:
+                    head = (head + 1) & mask;
+                    size--;
+                    dropped++;
+                    break;
+                case COALESCE:
+                    int last = (head + size - 1) & mask;
+                    if (values[last] == value) {
+                        detected[last] = time;
+                        sequences[last] = sequence;
+                        dropped++;
+                    } else {
+                        //edge and previous one make pulse which is removed
+                        size--;
+                        dropped = dropped + 2;
+                    }
+                    return schedule();
+                case BLOCK:
+                    while (size == values.length && !closed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            closed = true;
+                        }
+                    }
+                    return offer(value, time, sequence);
+            }
+        }
+        int tail = (head + size) & mask;
+        values[tail] = value;
+        detected[tail] = time;
+        sequences[tail] = sequence;
+        size++;
+        return schedule();
+    }
+
+    private boolean schedule() {
+        if (scheduled || size == 0) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * Takes oldest event into "event", consumer is unscheduled when ring is empty
+     * @return false if there are no events
+     */
+    synchronized boolean poll(PinEvent event) {
+        if (size == 0) {
+            scheduled = false;
+            return false;
+        }
+        event.set(signal, values[head], detected[head], sequences[head]);
+        head = (head + 1) & mask;
+        size--;
+        if (policy == PinEventPolicy.BLOCK) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Producer blocked on full ring drops oldest events after close
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * @return event object reused by consumer of this ring
+     */
+    PinEvent event() {
+        return event;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io;
+
+import org.molasdin.io.util.ByteRing;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains device continuously into off heap ring from dedicated thread,
+ * so device buffer does not overflow while application is busy.
+ * Reads are served from ring without native calls.
+ * Ring is filled by this reader only and consumed by one reading thread.
+ */
+public abstract class ReadAhead implements Runnable {
+
+    private static final long WAIT_SLICE_MICROS = 100000L;
+    private static final long FULL_PAUSE_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final ByteRing ring;
+    private final Thread thread;
+    private volatile boolean terminateFlag = false;
+    private volatile boolean failed = false;
+    private volatile Thread consumer;
+    private volatile Thread producerWaiting;
+
+    private volatile long overruns = 0;
+    private volatile long received = 0;
+    private volatile int peakOccupancy = 0;
+
+    /**
+     * @param capacity ring size, rounded up to power of two
+     * @param name     name of reader thread
+     */
+    protected ReadAhead(int capacity, String name) {
+        //consumer may still copy from ring after stop, so storage is never returned to pool
+        ring = new ByteRing(ByteBuffer.allocateDirect(ByteRing.capacityFor(capacity)));
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops reader, unread bytes are dropped
+     */
+    public void stop() {
+        terminateFlag = true;
+        LockSupport.unpark(thread);
+        wakeConsumer();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies buffered bytes, waits up to "timeout" millis when ring is empty
+     * @return amount of bytes copied, 0 on timeout, -1 when device failed or reader is stopped
+     */
+    public int read(ByteBuffer target, long timeout) {
+        int total = take(target);
+        if (total > 0 || !target.hasRemaining()) {
+            return total;
+        }
+        await(TimeUnit.MILLISECONDS.toMicros(timeout));
+        total = take(target);
+        if (total == 0 && (failed || terminateFlag)) {
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Waits up to "micros" until ring has data
+     * @return true if data is available
+     */
+    public boolean await(long micros) {
+        if (!ring.isEmpty()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        consumer = Thread.currentThread();
+        try {
+            while (ring.isEmpty() && !failed && !terminateFlag) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+        } finally {
+            consumer = null;
+        }
+        return !ring.isEmpty();
+    }
+
+    /**
+     * @return ring size in bytes
+     */
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return amount of bytes waiting to be read
+     */
+    public int occupancy() {
+        return ring.size();
+    }
+
+    /**
+     * @return biggest occupancy observed by reader
+     */
+    public int peakOccupancy() {
+        return peakOccupancy;
+    }
+
+    /**
+     * @return how many times ring was full and device was not drained
+     */
+    public long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return total amount of bytes taken from device
+     */
+    public long received() {
+        return received;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void run() {
+        boolean full = false;
+        while (!terminateFlag) {
+            int region = ring.writableRegion();
+            if (region == 0) {
+                if (!full) {
+                    overruns++;
+                    full = true;
+                }
+                producerWaiting = thread;
+                if (ring.writableRegion() == 0) {
+                    LockSupport.parkNanos(this, FULL_PAUSE_NANOS);
+                }
+                producerWaiting = null;
+                continue;
+            }
+            full = false;
+            if (!waitForData(WAIT_SLICE_MICROS)) {
+                continue;
+            }
+            int total = fill(ring.storage(), ring.writeOffset(), region);
+            //readiness without data means end of stream
+            if (total <= 0) {
+                failed = true;
+                wakeConsumer();
+                return;
+            }
+            if (total > 0) {
+                ring.commit(total);
+                received += total;
+                int occupancy = ring.size();
+                if (occupancy > peakOccupancy) {
+                    peakOccupancy = occupancy;
+                }
+                wakeConsumer();
+            }
+        }
+    }
+
+    private int take(ByteBuffer target) {
+        int total = ring.poll(target);
+        if (total > 0) {
+            Thread waiting = producerWaiting;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+        return total;
+    }
+
+    private void wakeConsumer() {
+        Thread waiting = consumer;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Waits for incoming data
+     * @return true if data may be read without waiting
+     */
+    protected abstract boolean waitForData(long micros);
+
+    /**
+     * Reads available data into direct "buffer" starting at "offset",
+     * called only after "waitForData" reported data
+     * @return amount of bytes read, -1 on device error or end of stream
+     */
+    protected abstract int fill(ByteBuffer buffer, int offset, int size);
+}
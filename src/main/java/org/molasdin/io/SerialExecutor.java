@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one by one in submission order on some other executor,
+ * so channel on shared executor behaves as with own single thread
+ */
+final class SerialExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Executor target;
+
+    SerialExecutor(Executor target) {
+        this.target = target;
+    }
+
+    Executor target() {
+        return target;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        tasks.add(command);
+        schedule();
+    }
+
+    /**
+     * Last operation gets same time to complete on close as with own thread
+     */
+    static void awaitDone(Future<?> future) {
+        if (future == null || future.isDone()) {
+            return;
+        }
+        try {
+            future.get(5L, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            future.cancel(true);
+        }
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+            try {
+                target.execute(this::drain);
+            } catch (RuntimeException ex) {
+                running.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        } finally {
+            running.set(false);
+            schedule();
+        }
+    }
+}
@@ -16,10 +16,11 @@
 
 package org.molasdin.io;
 
+import org.molasdin.io.metrics.DeviceMetrics;
+
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by molasdin on 3/10/15.
@@ -28,18 +29,39 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * Incapsulates signals activities
  * Provides multithreaded processing for pins events
+ * Listeners are kept in copy on write arrays indexed by signal id, so adding and
+ * removing them never interrupts detection. All supported signals are tracked
+ * from start, only signals with listeners are reported.
+ * Events are queued into preallocated ring per pin and delivered by bounded set of
+ * consumers, listeners of one pin see events in order of detection.
  */
 public abstract class SignalsProcessor implements Runnable {
 
-    private final Map<Integer, List<InputPinListener>> listeners = new HashMap<Integer, List<InputPinListener>>();
+    private static final InputPinListener[][] EMPTY = new InputPinListener[0][];
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Object registryLock = new Object();
+    private volatile InputPinListener[][] registry = EMPTY;
     private ExecutorService executorService;
-    private int[] signals = null;
     private volatile boolean terminateFlag = true;
-    private volatile boolean suspend = false;
-    private Map<Integer, Boolean> changed = new HashMap<>(5);
-    private ReentrantLock lock = new ReentrantLock();
-    private Condition condition = lock.newCondition();
     private ExecutorService eventsExecutor;
+    private Executor executor;
+    private volatile Executor dispatcher;
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private volatile DeviceMetrics metrics;
+    private PinEventPolicy policy = PinEventPolicy.DROP_OLDEST;
+    private int capacity = DEFAULT_CAPACITY;
+    private int consumers = 0;
+    private volatile PinEventRing[] rings = new PinEventRing[0];
+    private long droppedBefore;
+    private boolean[] changed = new boolean[0];
+    private boolean[] changedLevels = new boolean[0];
+    private int[] changedIds = new int[0];
+    private int changedCount;
+    private boolean[] stamped = new boolean[0];
+    private long[] stampNanos = new long[0];
+    private long[] stampSequences = new long[0];
+    private long sequence;
 
     /**
      * Add new listener for some pin
@@ -48,164 +70,386 @@ public abstract class SignalsProcessor implements Runnable {
      * @param id
      */
     public void addPinListener(InputPinListener listener, Integer id) {
-        synchronized (listeners) {
-            awaitTasks();
-            if (!listeners.containsKey(id)) {
-                listeners.put(id, new LinkedList<>());
-            }
-            listeners.get(id).add(listener);
-            rebuildSignals();
-            suspend = false;
-            if (!terminateFlag) {
-                if (lock.isLocked()) {
-                    lock.unlock();
-                }
+        synchronized (registryLock) {
+            InputPinListener[][] current = registry;
+            InputPinListener[][] next = Arrays.copyOf(current, Math.max(current.length, id + 1));
+            InputPinListener[] pinListeners = next[id];
+            if (pinListeners == null) {
+                next[id] = new InputPinListener[]{listener};
+            } else {
+                InputPinListener[] tmp = Arrays.copyOf(pinListeners, pinListeners.length + 1);
+                tmp[pinListeners.length] = listener;
+                next[id] = tmp;
             }
+            publish(next);
         }
     }
 
     /**
      * Same capabilities as with "addPinListener"
+     * Watching ends when last listener is removed
      * @param id
      * @param listener
      */
     public void removePinListener(Integer id, InputPinListener listener) {
-        synchronized (listeners) {
-            awaitTasks();
-            listeners.get(id).remove(listener);
-            if (listeners.get(id).isEmpty()) {
-                listeners.remove(id);
+        synchronized (registryLock) {
+            InputPinListener[][] current = registry;
+            if (id >= current.length || current[id] == null) {
+                return;
+            }
+            InputPinListener[] pinListeners = current[id];
+            int index = Arrays.asList(pinListeners).indexOf(listener);
+            if (index == -1) {
+                return;
+            }
+            InputPinListener[][] next = current.clone();
+            if (pinListeners.length == 1) {
+                next[id] = null;
+            } else {
+                InputPinListener[] tmp = new InputPinListener[pinListeners.length - 1];
+                System.arraycopy(pinListeners, 0, tmp, 0, index);
+                System.arraycopy(pinListeners, index + 1, tmp, index, tmp.length - index);
+                next[id] = tmp;
             }
-            if (listeners.isEmpty()) {
+            publish(next);
+            if (watchMask(next) == 0 && !terminateFlag) {
                 terminateFlag = true;
+                terminateSignalsWait();
             }
-            rebuildSignals();
-            suspend = false;
-            if (lock.isLocked()) {
-                lock.unlock();
+        }
+    }
+
+    private void publish(InputPinListener[][] next) {
+        registry = next;
+        if (!terminateFlag) {
+            watchSignals(watchMask(next));
+        }
+    }
+
+    private static int watchMask(InputPinListener[][] current) {
+        int mask = 0;
+        for (int i = 0; i < current.length && i < 32; i++) {
+            if (current[i] != null) {
+                mask = mask | (1 << i);
             }
         }
+        return mask;
     }
 
     /**
-     * Wait for all events to be processed
+     * Delay between time of pin event and listener call is recorded into "metrics"
      */
-    private void awaitTasks() {
-        if (!terminateFlag) {
-            lock.lock();
-            terminateSignalsWait();
-            suspend = true;
-            try {
-                condition.await();
-            } catch (InterruptedException ex) {
-                terminateFlag = true;
-                throw new RuntimeException(ex);
-            }
+    public void setMetrics(DeviceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Listeners are called on "executor" instead of own pool, it is not shut down on stop.
+     * Signals are still watched from own thread because native wait blocks
+     * Takes effect on next start
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Policy and capacity of event ring of each pin, take effect on next start
+     * @param policy what to do when listeners do not keep up
+     * @param capacity events queued per pin
+     */
+    public void setEventPolicy(PinEventPolicy policy, Integer capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
         }
+        this.policy = policy;
+        this.capacity = capacity;
+    }
 
+    /**
+     * Amount of threads calling listeners when no executor is set,
+     * by default it is smaller of pins and processors count. Takes effect on next start
+     */
+    public void setConsumers(Integer consumers) {
+        this.consumers = consumers;
     }
 
-    private void rebuildSignals() {
-        if (listeners.isEmpty()) {
-            signals = null;
-        } else {
-            signals = new int[listeners.size()];
-            int pos = 0;
-            for (Integer key : listeners.keySet()) {
-                signals[pos] = key;
+    /**
+     * @return events lost to ring policy since creation of processor
+     */
+    public long droppedEvents() {
+        long total = droppedBefore;
+        for (PinEventRing ring : rings) {
+            if (ring != null) {
+                total = total + ring.dropped();
             }
-            prepareToCheckSignals(signals);
         }
+        return total;
     }
 
-    protected Map<Integer, Boolean> changed() {
-        return changed;
+    /**
+     * Reports change found by "analyzeSignals", it gets time of processing and own numbering.
+     * Later change of same pin in one pass replaces level, unsupported pins are ignored
+     */
+    protected void change(int id, boolean level) {
+        if (id < 0 || id >= changed.length) {
+            return;
+        }
+        if (!changed[id]) {
+            changed[id] = true;
+            changedIds[changedCount++] = id;
+        }
+        changedLevels[id] = level;
+    }
+
+    /**
+     * Same as "change" with time and sequence number of detection
+     * @param nanos detection time comparable with System.nanoTime
+     */
+    protected void change(int id, boolean level, long nanos, long sequence) {
+        if (id < 0 || id >= changed.length) {
+            return;
+        }
+        change(id, level);
+        stamped[id] = true;
+        stampNanos[id] = nanos;
+        stampSequences[id] = sequence;
     }
 
     /**
      * Activates processor
      */
     public void start() {
-        synchronized (listeners){
-            if(!terminateFlag || listeners.isEmpty()){
+        synchronized (registryLock) {
+            if (!terminateFlag || watchMask(registry) == 0) {
                 return;
             }
-        }
-        if (executorService == null) {
+            if (executorService != null) {
+                //watcher which ended after removal of last listener
+                awaitWatcher(executorService);
+            }
             executorService = Executors.newSingleThreadExecutor();
+            int[] signals = supportedSignals();
+            Executor target = executor != null ? executor : DeviceExecution.INSTANCE.defaultExecutor();
+            if (target != null) {
+                dispatcher = target;
+            } else if (eventsExecutor == null) {
+                int amount = consumers > 0 ? consumers
+                        : Math.min(signals.length, Runtime.getRuntime().availableProcessors());
+                eventsExecutor = Executors.newFixedThreadPool(Math.max(1, amount));
+                dispatcher = eventsExecutor;
+            }
+            createRings(signals);
+            prepareToCheckSignals(signals);
+            watchSignals(watchMask(registry));
+            terminateFlag = false;
+            executorService.submit(this);
         }
-        if (eventsExecutor == null) {
-            ThreadPoolExecutor tmp = new ThreadPoolExecutor(listeners.size() + 3, Integer.MAX_VALUE,
-                    60L, TimeUnit.SECONDS, new SynchronousQueue<>());
-            tmp.prestartAllCoreThreads();
-            eventsExecutor = tmp;
-        }
-        terminateFlag = false;
-        executorService.submit(this);
     }
 
     /**
      * Terminates any processing
      */
     public void stop() {
-        synchronized (listeners) {
-            if (terminateFlag) {
+        ExecutorService watcher;
+        synchronized (registryLock) {
+            watcher = executorService;
+            if (watcher == null) {
                 return;
             }
-            awaitTasks();
-            terminateFlag = true;
-            lock.unlock();
+            executorService = null;
+            if (!terminateFlag) {
+                terminateFlag = true;
+                terminateSignalsWait();
+            }
         }
 
-        executorService.shutdown();
-        eventsExecutor.shutdown();
+        for (PinEventRing ring : rings) {
+            if (ring != null) {
+                ring.close();
+            }
+        }
+        awaitWatcher(watcher);
         try {
-            executorService.awaitTermination(5, TimeUnit.SECONDS);
-            eventsExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            awaitEvents(TimeUnit.SECONDS.toNanos(5));
+            if (eventsExecutor != null) {
+                eventsExecutor.shutdown();
+                eventsExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            }
         } catch (InterruptedException ex) {
-            executorService.shutdownNow();
-            eventsExecutor.shutdownNow();
-            ex.printStackTrace();
+            if (eventsExecutor != null) {
+                eventsExecutor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
         }
-        executorService = null;
         eventsExecutor = null;
-        suspend = false;
+        dispatcher = null;
+    }
+
+    private void createRings(int[] signals) {
+        droppedBefore = droppedEvents();
+        int length = 0;
+        for (int id : signals) {
+            length = Math.max(length, id + 1);
+        }
+        PinEventRing[] tmp = new PinEventRing[length];
+        for (int id : signals) {
+            tmp[id] = new PinEventRing(id, capacity, policy);
+        }
+        changed = new boolean[length];
+        changedLevels = new boolean[length];
+        changedIds = new int[length];
+        changedCount = 0;
+        stamped = new boolean[length];
+        stampNanos = new long[length];
+        stampSequences = new long[length];
+        rings = tmp;
+    }
+
+    private static void awaitWatcher(ExecutorService watcher) {
+        watcher.shutdown();
+        try {
+            watcher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            watcher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void run() {
         while (!terminateFlag) {
-            if (suspend) {
-                lock.lock();
-                condition.signal();
-                lock.unlock();
-                synchronized (listeners) {
+            analyzeSignals();
+            if (changedCount == 0) {
+                continue;
+            }
+            InputPinListener[][] current = registry;
+            PinEventRing[] currentRings = rings;
+            long processed = System.nanoTime();
+            int count = changedCount;
+            changedCount = 0;
+            for (int i = 0; i < count; i++) {
+                int id = changedIds[i];
+                changed[id] = false;
+                if (currentRings[id] == null) {
+                    continue;
                 }
-            } else {
-                analyzeSignals();
-                if (!changed.isEmpty()) {
-                    for (Integer id : changed.keySet()) {
-                        Boolean value = changed.get(id);
-                        List<InputPinListener> pinListeners = listeners.get(id);
-                        for(InputPinListener listener: pinListeners){
-                            eventsExecutor.execute(() -> listener.pinChanged(value));
-                        }
-                    }
+                boolean hasStamp = stamped[id];
+                stamped[id] = false;
+                if (id >= current.length || current[id] == null) {
+                    continue;
+                }
+                long nanos = hasStamp ? stampNanos[id] : processed;
+                long number = hasStamp ? stampSequences[id] : ++sequence;
+                PinEventRing ring = currentRings[id];
+                if (ring.offer(changedLevels[id], nanos, number)) {
+                    dispatch(id, ring);
                 }
             }
         }
     }
 
     /**
-     * Wait for signals changes.
+     * Drains are counted, so stop can wait for delivery of queued events
+     */
+    private void dispatch(int id, PinEventRing ring) {
+        Executor target = dispatcher;
+        if (target == null) {
+            return;
+        }
+        pendingEvents.incrementAndGet();
+        try {
+            target.execute(() -> drain(id, ring));
+        } catch (RuntimeException ex) {
+            eventDone();
+            throw ex;
+        }
+    }
+
+    /**
+     * Delivers events of one pin, after batch of ring size consumer is resubmitted
+     * to let other pins through
+     */
+    private void drain(int id, PinEventRing ring) {
+        PinEvent event = ring.event();
+        try {
+            for (int i = 0; i < capacity; i++) {
+                if (!ring.poll(event)) {
+                    return;
+                }
+                deliver(id, event);
+            }
+            dispatch(id, ring);
+        } finally {
+            eventDone();
+        }
+    }
+
+    private void deliver(int id, PinEvent event) {
+        InputPinListener[][] current = registry;
+        if (id >= current.length || current[id] == null) {
+            return;
+        }
+        DeviceMetrics currentMetrics = metrics;
+        for (InputPinListener listener : current[id]) {
+            if (currentMetrics != null) {
+                currentMetrics.listenerCalled(event.nanos());
+            }
+            try {
+                if (listener instanceof PinEventListener) {
+                    ((PinEventListener) listener).pinChanged(event);
+                } else {
+                    listener.pinChanged(event.value());
+                }
+            } catch (RuntimeException ex) {
+                DeviceExecution.INSTANCE.reportFailure(ex);
+            }
+        }
+    }
+
+    private void eventDone() {
+        if (pendingEvents.decrementAndGet() == 0) {
+            synchronized (pendingEvents) {
+                pendingEvents.notifyAll();
+            }
+        }
+    }
+
+    private void awaitEvents(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        synchronized (pendingEvents) {
+            while (pendingEvents.get() != 0) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pendingEvents, left);
+            }
+        }
+    }
+
+    /**
+     * Wait for signals changes, found ones are reported with "change".
      */
     protected abstract void analyzeSignals();
 
     /**
-     * Prepare some signals to be analyzed
-     * @param signals
+     * Prepare signals to be analyzed, called before watching starts
+     * @param signals all signals which may get listeners
      */
     protected abstract void prepareToCheckSignals(int[] signals);
 
+    /**
+     * @return ids of signals which can be watched
+     */
+    protected abstract int[] supportedSignals();
+
+    /**
+     * Restricts reporting to signals with listeners while detection keeps running,
+     * called concurrently with "analyzeSignals"
+     * @param mask bit per signal id
+     */
+    protected void watchSignals(int mask) {
+    }
+
     protected abstract void terminateSignalsWait();
 }
@@ -16,17 +16,107 @@
 
 package org.molasdin.io;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Created by molasdin on 3/22/15.
  */
 
 /**
  * Timouts tools
+ * Waits park thread for the bulk of interval and spin only for the last slice.
+ * Slice is calibrated from park overshoot at startup, then it is widened when park
+ * wakes up too late and narrowed slowly otherwise, so about one of ten parks is late.
+ * Interrupts do not shorten waits, interrupt flag is cleared while parking
+ * so parks keep waiting, and is restored afterwards.
  */
 public class Sleep {
+
+    private static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+    private static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long PROBE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int PROBES = 16;
+    private static final Long FIXED_SPIN_NANOS = Long.getLong("org.molasdin.io.sleep.spinNanos");
+
+    private static volatile long spinNanos = calibrate();
+
     public static void sleepMillis(long millis){
-        long total = System.nanoTime() + millis * 1000 * 1000;
-        while(total > System.nanoTime()){
+        sleepNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public static void sleepMicros(long micros){
+        sleepNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    public static void sleepNanos(long nanos){
+        if(nanos > 0){
+            sleepUntil(System.nanoTime() + nanos);
+        }
+    }
+
+    /**
+     * Waits until System.nanoTime reaches "deadline"
+     * Periodic activities should advance deadline by period instead of
+     * sleeping for period, so delays of single waits do not accumulate
+     */
+    public static void sleepUntil(long deadline){
+        boolean interrupted = Thread.interrupted();
+        long spin = spinNanos;
+        long left;
+        boolean parked = false;
+        boolean early = false;
+        while((left = deadline - System.nanoTime()) > spin){
+            long wake = deadline - spin;
+            LockSupport.parkNanos(left - spin);
+            parked = true;
+            //unpark or interrupt say nothing about park overshoot
+            early = wake - System.nanoTime() > 0;
+            if(Thread.interrupted()){
+                interrupted = true;
+            }
+        }
+        if(parked && !early && FIXED_SPIN_NANOS == null){
+            adjust(spin, left);
+        }
+        while(deadline - System.nanoTime() > 0){
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return length of final spinning part of waits
+     */
+    public static long spinNanos(){
+        return spinNanos;
+    }
+
+    /**
+     * Only lateness is counted, not its size, so rare preemption does not widen slice for long
+     */
+    private static void adjust(long spin, long left){
+        long next = left < 0 ? spin + spin / 8 + 1 : spin - spin / 72;
+        spinNanos = Math.max(MIN_SPIN_NANOS, Math.min(next, MAX_SPIN_NANOS));
+    }
+
+    /**
+     * Second worst overshoot of short parks, "org.molasdin.io.sleep.spinNanos"
+     * system property sets fixed slice instead
+     */
+    private static long calibrate(){
+        if(FIXED_SPIN_NANOS != null){
+            return Math.max(0L, FIXED_SPIN_NANOS);
+        }
+        long[] overshoots = new long[PROBES];
+        for(int i = 0; i < PROBES; i++){
+            long start = System.nanoTime();
+            LockSupport.parkNanos(PROBE_NANOS);
+            overshoots[i] = System.nanoTime() - start - PROBE_NANOS;
         }
+        Arrays.sort(overshoots);
+        return Math.max(MIN_SPIN_NANOS, Math.min(overshoots[PROBES - 2], MAX_SPIN_NANOS));
     }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.capture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run length encoded samples of input lines taken at fixed rate by device.
+ * Sampling runs on own thread into direct buffer, which may be mapped file.
+ * Results are available when capture is done
+ */
+public final class PinCapture {
+
+    /**
+     * Device side of capture
+     */
+    public interface Sampler {
+        /**
+         * Called on thread which starts capture before sampling thread is started,
+         * so "stop" which follows start is never lost
+         */
+        default void begin(PinCapture capture) {
+        }
+
+        /**
+         * Fills remaining part of "buffer" with records until it is full or "stop" is called
+         * @param stats used bytes, samples, start nanos, end nanos, missed samples,
+         *              mean, deviation and maximum of lateness in nanos
+         */
+        void sample(ByteBuffer buffer, long periodNanos, long[] stats);
+
+        void stop();
+
+        /**
+         * Called on sampling thread when sampling ended, before capture is done
+         */
+        default void end(PinCapture capture) {
+        }
+    }
+
+    public static final int RECORD_SIZE = 8;
+    private static final int STATS_SIZE = 8;
+
+    private final String device;
+    private final Map<String, Integer> lines;
+    private final ByteBuffer records;
+    private final long periodNanos;
+    private final Sampler sampler;
+    private final long[] stats = new long[STATS_SIZE];
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile RuntimeException failure;
+
+    private PinCapture(String device, Map<String, Integer> lines, ByteBuffer buffer, long periodNanos, Sampler sampler) {
+        this.device = device;
+        this.lines = Collections.unmodifiableMap(lines);
+        this.records = buffer.slice().order(ByteOrder.nativeOrder());
+        this.periodNanos = periodNanos;
+        this.sampler = sampler;
+    }
+
+    /**
+     * Starts sampling on new thread
+     * @param lines names of lines with their bits in levels
+     * @param buffer direct buffer, its remaining part receives records
+     */
+    public static PinCapture start(String device, Map<String, Integer> lines, ByteBuffer buffer,
+                                   Long periodNanos, Sampler sampler) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer should be direct");
+        }
+        if (buffer.remaining() < RECORD_SIZE) {
+            throw new IllegalArgumentException("Buffer should fit at least one record");
+        }
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period should be positive");
+        }
+        final PinCapture capture = new PinCapture(device, lines, buffer, periodNanos, sampler);
+        sampler.begin(capture);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                capture.run();
+            }
+        }, "capture-" + device);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        return capture;
+    }
+
+    private void run() {
+        try {
+            sampler.sample(records.duplicate(), periodNanos, stats);
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } finally {
+            try {
+                sampler.end(this);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Ends sampling and waits for results
+     */
+    public void stop() {
+        sampler.stop();
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if capture ended within "millis"
+     */
+    public boolean await(Long millis) throws InterruptedException {
+        return done.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public String device() {
+        return device;
+    }
+
+    /**
+     * @return names of lines with their bits in levels
+     */
+    public Map<String, Integer> lines() {
+        return lines;
+    }
+
+    public long periodNanos() {
+        return periodNanos;
+    }
+
+    public int records() {
+        return (int) (results()[0] / RECORD_SIZE);
+    }
+
+    /**
+     * @return samples of record, each lasts "periodNanos"
+     */
+    public long run(int record) {
+        results();
+        return records.getInt(record * RECORD_SIZE) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return levels of record, bit per line as in "lines"
+     */
+    public int levels(int record) {
+        results();
+        return records.get(record * RECORD_SIZE + 4) & 0xFF;
+    }
+
+    public long samples() {
+        return results()[1];
+    }
+
+    /**
+     * @return time of first sample, comparable with System.nanoTime
+     */
+    public long startNanos() {
+        return results()[2];
+    }
+
+    public long durationNanos() {
+        return results()[3] - results()[2];
+    }
+
+    /**
+     * @return samples which were due while sampler was late, they repeat previous levels
+     */
+    public long missedSamples() {
+        return results()[4];
+    }
+
+    /**
+     * @return samples actually taken per second
+     */
+    public double sampleRate() {
+        long duration = durationNanos();
+        return duration == 0 ? 0 : (samples() - missedSamples()) * 1e9 / duration;
+    }
+
+    public long meanLatenessNanos() {
+        return results()[5];
+    }
+
+    /**
+     * @return standard deviation of sample time against grid
+     */
+    public long jitterNanos() {
+        return results()[6];
+    }
+
+    public long maxLatenessNanos() {
+        return results()[7];
+    }
+
+    private long[] results() {
+        if (!isDone()) {
+            throw new IllegalStateException("Capture is in progress");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        if (!isDone()) {
+            return "PinCapture{" + device + ", in progress}";
+        }
+        return String.format("PinCapture{%s, samples=%d, records=%d, rate=%.1f Hz, missed=%d, jitter=%d ns, max late=%d ns}",
+                device, samples(), records(), sampleRate(), missedSamples(), jitterNanos(), maxLatenessNanos());
+    }
+}
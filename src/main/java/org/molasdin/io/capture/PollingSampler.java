@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.capture;
+
+import org.molasdin.io.Sleep;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sampler of lines readable from Java, follows native one:
+ * samples are placed on grid of period, waits are slept in bounded slices
+ * so stop is noticed in time, and last part of each wait is spun
+ */
+public abstract class PollingSampler implements PinCapture.Sampler {
+
+    private static final long SLICE_NANOS = 1000000L;
+
+    private volatile boolean stopped;
+
+    /**
+     * @return levels, bit per line
+     */
+    protected abstract int levels();
+
+    @Override
+    public void begin(PinCapture capture) {
+        stopped = false;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void sample(ByteBuffer buffer, long periodNanos, long[] stats) {
+        buffer.order(ByteOrder.nativeOrder());
+        int base = buffer.position();
+        int capacity = buffer.remaining();
+        int used = 0;
+        long run = 0;
+        int current = 0;
+        long samples = 0;
+        long missed = 0;
+        long maxLate = 0;
+        double lateSum = 0;
+        double lateSquares = 0;
+        long start = System.nanoTime();
+        long next = start;
+        while (capacity >= PinCapture.RECORD_SIZE && await(next)) {
+            long now = System.nanoTime();
+            int levels = levels() & 0xFF;
+            long skipped = run == 0 ? 0 : (now - next) / periodNanos;
+            if (run != 0 && (levels != current || run > 0xFFFFFFFFL - skipped - 1)) {
+                run += skipped;
+                record(buffer, base + used, run, current);
+                if (used + 2 * PinCapture.RECORD_SIZE > capacity) {
+                    next += skipped * periodNanos;
+                    samples += skipped;
+                    missed += skipped;
+                    break;
+                }
+                used += PinCapture.RECORD_SIZE;
+                run = 0;
+            } else {
+                run += skipped;
+            }
+            next += skipped * periodNanos;
+            long late = now - next;
+            current = levels;
+            run++;
+            record(buffer, base + used, run, current);
+            samples += skipped + 1;
+            missed += skipped;
+            lateSum += late;
+            lateSquares += (double) late * late;
+            maxLate = Math.max(maxLate, late);
+            next += periodNanos;
+        }
+        if (run != 0) {
+            used += PinCapture.RECORD_SIZE;
+        }
+        long taken = samples - missed;
+        double mean = taken == 0 ? 0 : lateSum / taken;
+        double variance = taken == 0 ? 0 : lateSquares / taken - mean * mean;
+        stats[0] = used;
+        stats[1] = samples;
+        stats[2] = start;
+        stats[3] = next;
+        stats[4] = missed;
+        stats[5] = (long) mean;
+        stats[6] = (long) (variance > 0 ? Math.sqrt(variance) : 0);
+        stats[7] = maxLate;
+    }
+
+    /**
+     * @return false if capture was stopped
+     */
+    private boolean await(long deadline) {
+        while (!stopped) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return true;
+            }
+            long spin = Sleep.spinNanos();
+            if (left > spin) {
+                LockSupport.parkNanos(Math.min(left - spin, SLICE_NANOS));
+            }
+        }
+        return false;
+    }
+
+    private static void record(ByteBuffer buffer, int offset, long run, int levels) {
+        buffer.putInt(offset, (int) run);
+        buffer.put(offset + 4, (byte) levels);
+        buffer.put(offset + 5, (byte) 0);
+        buffer.putShort(offset + 6, (short) 0);
+    }
+}
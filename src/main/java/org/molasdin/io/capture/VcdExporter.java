@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.capture;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes capture in value change dump format readable by waveform viewers.
+ * Time is in nanoseconds from first sample
+ */
+public final class VcdExporter {
+
+    private VcdExporter() {
+    }
+
+    public static void export(PinCapture capture, Writer out) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : capture.lines().entrySet()) {
+            names.add(entry.getKey());
+            bits.add(entry.getValue());
+        }
+        out.write("$version molasdin io capture $end\n");
+        out.write("$timescale 1 ns $end\n");
+        out.write("$scope module " + capture.device().replaceAll("[^A-Za-z0-9_]", "_") + " $end\n");
+        for (int i = 0; i < names.size(); i++) {
+            out.write("$var wire 1 " + identifier(i) + " " + names.get(i) + " $end\n");
+        }
+        out.write("$upscope $end\n");
+        out.write("$enddefinitions $end\n");
+
+        long sample = 0;
+        int previous = 0;
+        for (int record = 0; record < capture.records(); record++) {
+            int levels = capture.levels(record);
+            if (record == 0) {
+                out.write("#0\n$dumpvars\n");
+            } else if (levels != previous) {
+                out.write("#" + sample * capture.periodNanos() + "\n");
+            }
+            for (int i = 0; i < names.size(); i++) {
+                int bit = 1 << bits.get(i);
+                if (record == 0 || ((levels ^ previous) & bit) != 0) {
+                    out.write(((levels & bit) != 0 ? '1' : '0') + identifier(i) + "\n");
+                }
+            }
+            if (record == 0) {
+                out.write("$end\n");
+            }
+            previous = levels;
+            sample = sample + capture.run(record);
+        }
+        out.write("#" + sample * capture.periodNanos() + "\n");
+        out.flush();
+    }
+
+    private static String identifier(int index) {
+        return String.valueOf((char) ('!' + index));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base for codecs which keep partially received frame in reusable buffer.
+ * Codec instance serves one stream and is not thread safe.
+ * Empty frames are not reported unless framing allows to express them explicitly
+ */
+public abstract class AbstractFrameCodec implements FrameDecoder, FrameEncoder {
+
+    protected final ByteBuffer frame;
+    private final int maxFrameLength;
+    private boolean discarding = false;
+    private long dropped = 0;
+
+    /**
+     * @param maxFrameLength biggest accepted payload
+     * @param reserve        extra bytes kept in frame buffer by codec
+     */
+    protected AbstractFrameCodec(int maxFrameLength, int reserve) {
+        if (maxFrameLength < 1) {
+            throw new IllegalArgumentException("Max frame length should be positive");
+        }
+        this.maxFrameLength = maxFrameLength;
+        this.frame = ByteBuffer.allocate(maxFrameLength + reserve);
+    }
+
+    public int maxFrameLength() {
+        return maxFrameLength;
+    }
+
+    @Override
+    public long droppedFrames() {
+        return dropped;
+    }
+
+    @Override
+    public void reset() {
+        frame.clear();
+        discarding = false;
+        resetState();
+    }
+
+    protected abstract void resetState();
+
+    /**
+     * Passes accumulated frame to handler and starts new one
+     */
+    protected void emit(FrameHandler handler) {
+        frame.flip();
+        try {
+            handler.frame(frame);
+        } finally {
+            frame.clear();
+        }
+    }
+
+    /**
+     * Passes part of input to handler without copy,
+     * input position is moved to "next" afterwards
+     */
+    protected static void emitView(ByteBuffer data, int start, int end, int next, FrameHandler handler) {
+        int limit = data.limit();
+        data.limit(end).position(start);
+        try {
+            handler.frame(data);
+        } finally {
+            data.limit(limit).position(next);
+        }
+    }
+
+    /**
+     * @return false if frame is too long, frame is dropped in this case
+     */
+    protected boolean append(byte value) {
+        if (frame.position() >= maxFrameLength) {
+            fail();
+            return false;
+        }
+        frame.put(value);
+        return true;
+    }
+
+    /**
+     * Drops current frame, following bytes are skipped until frame end
+     */
+    protected void fail() {
+        if (!discarding) {
+            dropped++;
+            discarding = true;
+        }
+        frame.clear();
+    }
+
+    protected void countDropped() {
+        dropped++;
+    }
+
+    protected boolean isDiscarding() {
+        return discarding;
+    }
+
+    /**
+     * Marks frame boundary
+     */
+    protected void endFrame() {
+        discarding = false;
+        frame.clear();
+    }
+
+    protected void checkSpace(ByteBuffer payload, ByteBuffer target) {
+        if (target.remaining() < maxEncodedLength(payload.remaining())) {
+            throw new BufferOverflowException();
+        }
+    }
+}
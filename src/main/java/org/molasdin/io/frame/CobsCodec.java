@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consistent Overhead Byte Stuffing, frames are terminated with zero byte
+ */
+public class CobsCodec extends AbstractFrameCodec {
+
+    private static final int MAX_CODE = 0xFF;
+
+    private int left = 0;
+    private boolean pendingZero = false;
+
+    public CobsCodec(int maxFrameLength) {
+        super(maxFrameLength, 0);
+    }
+
+    @Override
+    public void decode(ByteBuffer data, FrameHandler handler) {
+        while (data.hasRemaining()) {
+            byte value = data.get();
+            if (value == 0) {
+                if (left != 0) {
+                    fail();
+                } else if (!isDiscarding() && frame.position() > 0) {
+                    emit(handler);
+                }
+                left = 0;
+                pendingZero = false;
+                endFrame();
+                continue;
+            }
+            if (isDiscarding()) {
+                continue;
+            }
+            if (left == 0) {
+                //code byte, zero of previous block is confirmed by it
+                if (pendingZero && !append((byte) 0)) {
+                    continue;
+                }
+                int code = value & 0xFF;
+                left = code - 1;
+                pendingZero = code != MAX_CODE;
+            } else {
+                append(value);
+                left--;
+            }
+        }
+    }
+
+    @Override
+    protected void resetState() {
+        left = 0;
+        pendingZero = false;
+    }
+
+    @Override
+    public int maxEncodedLength(int payloadLength) {
+        return payloadLength + payloadLength / (MAX_CODE - 1) + 2;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer target) {
+        checkSpace(payload, target);
+        int codePosition = target.position();
+        target.put((byte) 0);
+        int code = 1;
+        while (payload.hasRemaining()) {
+            byte value = payload.get();
+            if (value != 0) {
+                target.put(value);
+                code++;
+            }
+            if (value == 0 || code == MAX_CODE) {
+                target.put(codePosition, (byte) code);
+                codePosition = target.position();
+                target.put((byte) 0);
+                code = 1;
+            }
+        }
+        target.put(codePosition, (byte) code);
+        target.put((byte) 0);
+    }
+}
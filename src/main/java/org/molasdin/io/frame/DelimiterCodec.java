@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames terminated by delimiter sequence, for example "\r\n".
+ * Delimiter is not part of frame and payload should not contain it.
+ * Frames which are received completely within one read are passed
+ * as views of input without copy
+ */
+public class DelimiterCodec extends AbstractFrameCodec {
+
+    private final byte[] delimiter;
+    private final int[] fallback;
+    private int matched = 0;
+
+    public DelimiterCodec(byte[] delimiter, int maxFrameLength) {
+        super(maxFrameLength, delimiter.length);
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("Delimiter is empty");
+        }
+        this.delimiter = delimiter.clone();
+        this.fallback = fallbackTable(this.delimiter);
+    }
+
+    @Override
+    public void decode(ByteBuffer data, FrameHandler handler) {
+        while (data.hasRemaining()) {
+            if (matched == 0 && frame.position() == 0 && !isDiscarding()) {
+                int start = data.position();
+                int end = indexOf(data, start);
+                if (end < 0) {
+                    decodeBytes(data, handler);
+                    return;
+                }
+                if (end - start > maxFrameLength()) {
+                    countDropped();
+                    data.position(end + delimiter.length);
+                } else if (end > start) {
+                    emitView(data, start, end, end + delimiter.length, handler);
+                } else {
+                    data.position(end + delimiter.length);
+                }
+                continue;
+            }
+            decodeBytes(data, handler);
+        }
+    }
+
+    /**
+     * Copies bytes into frame until delimiter is matched
+     */
+    private void decodeBytes(ByteBuffer data, FrameHandler handler) {
+        while (data.hasRemaining()) {
+            byte value = data.get();
+            while (matched > 0 && delimiter[matched] != value) {
+                matched = fallback[matched - 1];
+            }
+            if (delimiter[matched] == value) {
+                matched++;
+            }
+            if (!isDiscarding()) {
+                if (frame.hasRemaining()) {
+                    frame.put(value);
+                } else {
+                    fail();
+                }
+            }
+            if (matched == delimiter.length) {
+                matched = 0;
+                if (!isDiscarding()) {
+                    int size = frame.position() - delimiter.length;
+                    if (size > maxFrameLength()) {
+                        countDropped();
+                    } else if (size > 0) {
+                        frame.position(size);
+                        emit(handler);
+                    }
+                }
+                endFrame();
+                return;
+            }
+        }
+    }
+
+    private int indexOf(ByteBuffer data, int from) {
+        int last = data.limit() - delimiter.length;
+        byte first = delimiter[0];
+        for (int i = from; i <= last; i++) {
+            if (data.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < delimiter.length && data.get(i + j) == delimiter[j]) {
+                j++;
+            }
+            if (j == delimiter.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Knuth-Morris-Pratt prefix function, lets partially matched
+     * delimiter continue correctly when data breaks the match
+     */
+    private static int[] fallbackTable(byte[] pattern) {
+        int[] table = new int[pattern.length];
+        int length = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (length > 0 && pattern[i] != pattern[length]) {
+                length = table[length - 1];
+            }
+            if (pattern[i] == pattern[length]) {
+                length++;
+            }
+            table[i] = length;
+        }
+        return table;
+    }
+
+    @Override
+    protected void resetState() {
+        matched = 0;
+    }
+
+    @Override
+    public int maxEncodedLength(int payloadLength) {
+        return payloadLength + delimiter.length;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer target) {
+        checkSpace(payload, target);
+        target.put(payload);
+        target.put(delimiter);
+    }
+}
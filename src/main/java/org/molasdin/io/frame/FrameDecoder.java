@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder, accepts data in arbitrary parts
+ * as they are returned by device reads
+ */
+public interface FrameDecoder {
+    /**
+     * Consumes all remaining bytes of "data" and passes completed frames to handler
+     */
+    void decode(ByteBuffer data, FrameHandler handler);
+
+    /**
+     * Drops partially received frame
+     */
+    void reset();
+
+    /**
+     * @return amount of malformed or too long frames which were dropped
+     */
+    long droppedFrames();
+}
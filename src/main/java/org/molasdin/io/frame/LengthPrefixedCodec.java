@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Frames preceded by unsigned length of 1, 2 or 4 bytes, length does not include header.
+ * Frames which are received completely within one read are passed
+ * as views of input without copy
+ */
+public class LengthPrefixedCodec extends AbstractFrameCodec {
+
+    private final int headerLength;
+    private final boolean bigEndian;
+
+    private int headerRead = 0;
+    private long length = 0;
+    private long bodyLeft = 0;
+
+    public LengthPrefixedCodec(int headerLength, ByteOrder order, int maxFrameLength) {
+        super(maxFrameLength, 0);
+        if (headerLength != 1 && headerLength != 2 && headerLength != 4) {
+            throw new IllegalArgumentException("Header length should be 1, 2 or 4");
+        }
+        this.headerLength = headerLength;
+        this.bigEndian = order == ByteOrder.BIG_ENDIAN;
+    }
+
+    @Override
+    public void decode(ByteBuffer data, FrameHandler handler) {
+        while (data.hasRemaining()) {
+            if (headerRead == 0 && data.remaining() >= headerLength) {
+                int position = data.position();
+                long size = lengthAt(data, position);
+                int start = position + headerLength;
+                if (size <= maxFrameLength() && data.limit() - start >= size) {
+                    emitView(data, start, start + (int) size, start + (int) size, handler);
+                    continue;
+                }
+            }
+            if (headerRead < headerLength) {
+                int value = data.get() & 0xFF;
+                if (bigEndian) {
+                    length = (length << 8) | value;
+                } else {
+                    length = length | ((long) value << (8 * headerRead));
+                }
+                headerRead++;
+                if (headerRead == headerLength) {
+                    startBody(handler);
+                }
+                continue;
+            }
+            int part = (int) Math.min(bodyLeft, data.remaining());
+            if (isDiscarding()) {
+                data.position(data.position() + part);
+            } else {
+                int limit = data.limit();
+                data.limit(data.position() + part);
+                frame.put(data);
+                data.limit(limit);
+            }
+            bodyLeft -= part;
+            if (bodyLeft == 0) {
+                finishFrame(handler);
+            }
+        }
+    }
+
+    private void startBody(FrameHandler handler) {
+        bodyLeft = length;
+        if (length > maxFrameLength()) {
+            fail();
+        }
+        if (bodyLeft == 0) {
+            finishFrame(handler);
+        }
+    }
+
+    private void finishFrame(FrameHandler handler) {
+        if (!isDiscarding()) {
+            emit(handler);
+        }
+        endFrame();
+        resetState();
+    }
+
+    private long lengthAt(ByteBuffer data, int position) {
+        long result = 0;
+        for (int i = 0; i < headerLength; i++) {
+            int value = data.get(position + i) & 0xFF;
+            if (bigEndian) {
+                result = (result << 8) | value;
+            } else {
+                result = result | ((long) value << (8 * i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void resetState() {
+        headerRead = 0;
+        length = 0;
+        bodyLeft = 0;
+    }
+
+    @Override
+    public int maxEncodedLength(int payloadLength) {
+        return payloadLength + headerLength;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer target) {
+        int size = payload.remaining();
+        if (headerLength < 4 && size >= (1 << (8 * headerLength))) {
+            throw new IllegalArgumentException("Payload does not fit header");
+        }
+        checkSpace(payload, target);
+        for (int i = 0; i < headerLength; i++) {
+            int shift = bigEndian ? 8 * (headerLength - 1 - i) : 8 * i;
+            target.put((byte) (size >>> shift));
+        }
+        target.put(payload);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SLIP framing (RFC 1055).
+ * Encoder starts frames with END as well to flush line noise
+ */
+public class SlipCodec extends AbstractFrameCodec {
+
+    public static final byte END = (byte) 0xC0;
+    public static final byte ESC = (byte) 0xDB;
+    public static final byte ESC_END = (byte) 0xDC;
+    public static final byte ESC_ESC = (byte) 0xDD;
+
+    private boolean escaped = false;
+
+    public SlipCodec(int maxFrameLength) {
+        super(maxFrameLength, 0);
+    }
+
+    @Override
+    public void decode(ByteBuffer data, FrameHandler handler) {
+        while (data.hasRemaining()) {
+            byte value = data.get();
+            if (value == END) {
+                if (escaped) {
+                    fail();
+                } else if (!isDiscarding() && frame.position() > 0) {
+                    emit(handler);
+                }
+                escaped = false;
+                endFrame();
+                continue;
+            }
+            if (isDiscarding()) {
+                continue;
+            }
+            if (escaped) {
+                escaped = false;
+                if (value == ESC_END) {
+                    value = END;
+                } else if (value == ESC_ESC) {
+                    value = ESC;
+                } else {
+                    fail();
+                    continue;
+                }
+            } else if (value == ESC) {
+                escaped = true;
+                continue;
+            }
+            append(value);
+        }
+    }
+
+    @Override
+    protected void resetState() {
+        escaped = false;
+    }
+
+    @Override
+    public int maxEncodedLength(int payloadLength) {
+        return payloadLength * 2 + 2;
+    }
+
+    @Override
+    public void encode(ByteBuffer payload, ByteBuffer target) {
+        checkSpace(payload, target);
+        target.put(END);
+        while (payload.hasRemaining()) {
+            byte value = payload.get();
+            if (value == END) {
+                target.put(ESC).put(ESC_END);
+            } else if (value == ESC) {
+                target.put(ESC).put(ESC_ESC);
+            } else {
+                target.put(value);
+            }
+        }
+        target.put(END);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.metrics;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one device shared by its channels and signals processor.
+ * Reads of device are never concurrent and neither are writes, so read and
+ * write counters have single writer and are updated with ordered stores
+ * instead of atomic operations. Rest of counters are adders.
+ * Durations of reads and writes need two clock reads, so they are
+ * measured only when timing is enabled.
+ * Latency of listeners is measured from time of pin event, native ports stamp
+ * it when native watcher detects change, other devices when change is processed.
+ */
+public final class DeviceMetrics {
+
+    private static final AtomicLongFieldUpdater<DeviceMetrics> BYTES_IN =
+            AtomicLongFieldUpdater.newUpdater(DeviceMetrics.class, "bytesIn");
+    private static final AtomicLongFieldUpdater<DeviceMetrics> BYTES_OUT =
+            AtomicLongFieldUpdater.newUpdater(DeviceMetrics.class, "bytesOut");
+    private static final AtomicLongFieldUpdater<DeviceMetrics> READS =
+            AtomicLongFieldUpdater.newUpdater(DeviceMetrics.class, "reads");
+    private static final AtomicLongFieldUpdater<DeviceMetrics> WRITES =
+            AtomicLongFieldUpdater.newUpdater(DeviceMetrics.class, "writes");
+    private static final AtomicLongFieldUpdater<DeviceMetrics> ZERO_READS =
+            AtomicLongFieldUpdater.newUpdater(DeviceMetrics.class, "zeroReads");
+
+    private final String name;
+    private volatile long bytesIn;
+    private volatile long bytesOut;
+    private volatile long reads;
+    private volatile long writes;
+    private volatile long zeroReads;
+    private final LongAdder exactRetries = new LongAdder();
+    private final LongAdder pinEvents = new LongAdder();
+    private final LatencyHistogram readTime = new LatencyHistogram();
+    private final LatencyHistogram writeTime = new LatencyHistogram();
+    private final LatencyHistogram listenerLatency = new LatencyHistogram();
+    private volatile boolean timing = false;
+
+    public DeviceMetrics(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Enables measurement of read and write durations
+     */
+    public void setTiming(Boolean flag) {
+        timing = flag;
+    }
+
+    public Boolean timing() {
+        return timing;
+    }
+
+    /**
+     * @return start mark for "readDone" and "writeDone", 0 when timing is disabled
+     */
+    public long start() {
+        return timing ? System.nanoTime() : 0L;
+    }
+
+    public void readDone(long start, long result) {
+        READS.lazySet(this, reads + 1);
+        if (result > 0) {
+            BYTES_IN.lazySet(this, bytesIn + result);
+        } else if (result == 0) {
+            ZERO_READS.lazySet(this, zeroReads + 1);
+        }
+        if (start != 0) {
+            readTime.record(System.nanoTime() - start);
+        }
+    }
+
+    public void writeDone(long start, long result) {
+        WRITES.lazySet(this, writes + 1);
+        if (result > 0) {
+            BYTES_OUT.lazySet(this, bytesOut + result);
+        }
+        if (start != 0) {
+            writeTime.record(System.nanoTime() - start);
+        }
+    }
+
+    public void exactRetry() {
+        exactRetries.increment();
+    }
+
+    /**
+     * @param detected time in nanos of pin event
+     */
+    public void listenerCalled(long detected) {
+        pinEvents.increment();
+        listenerLatency.record(System.nanoTime() - detected);
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    public long reads() {
+        return reads;
+    }
+
+    public long writes() {
+        return writes;
+    }
+
+    public long zeroReads() {
+        return zeroReads;
+    }
+
+    public long exactRetries() {
+        return exactRetries.sum();
+    }
+
+    public long pinEvents() {
+        return pinEvents.sum();
+    }
+
+    public LatencyHistogram readTime() {
+        return readTime;
+    }
+
+    public LatencyHistogram writeTime() {
+        return writeTime;
+    }
+
+    public LatencyHistogram listenerLatency() {
+        return listenerLatency;
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(name, System.currentTimeMillis(),
+                bytesIn(), bytesOut(), reads(), writes(), zeroReads(), exactRetries(), pinEvents(),
+                readTime.percentile(0.5), readTime.percentile(0.99),
+                writeTime.percentile(0.5), writeTime.percentile(0.99),
+                listenerLatency.percentile(0.5), listenerLatency.percentile(0.99), listenerLatency.max());
+    }
+
+    /**
+     * Counters updated during reset may keep part of their values
+     */
+    public void reset() {
+        bytesIn = 0;
+        bytesOut = 0;
+        reads = 0;
+        writes = 0;
+        zeroReads = 0;
+        exactRetries.reset();
+        pinEvents.reset();
+        readTime.reset();
+        writeTime.reset();
+        listenerLatency.reset();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.metrics;
+
+/**
+ * Management view of device metrics, durations are in micros
+ */
+public interface DeviceMetricsMBean {
+    String getName();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getReads();
+
+    long getWrites();
+
+    long getZeroReads();
+
+    long getExactRetries();
+
+    long getPinEvents();
+
+    boolean isTiming();
+
+    void setTiming(boolean flag);
+
+    double getReadTimeP50();
+
+    double getReadTimeP99();
+
+    double getWriteTimeP50();
+
+    double getWriteTimeP99();
+
+    double getListenerLatencyP50();
+
+    double getListenerLatencyP99();
+
+    double getListenerLatencyMax();
+
+    void reset();
+}
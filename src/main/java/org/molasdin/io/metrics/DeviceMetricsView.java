@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.metrics;
+
+/**
+ * Standard MBean over device metrics, values are read on every request
+ */
+public class DeviceMetricsView implements DeviceMetricsMBean {
+
+    private final DeviceMetrics metrics;
+
+    public DeviceMetricsView(DeviceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return metrics.name();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return metrics.bytesIn();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return metrics.bytesOut();
+    }
+
+    @Override
+    public long getReads() {
+        return metrics.reads();
+    }
+
+    @Override
+    public long getWrites() {
+        return metrics.writes();
+    }
+
+    @Override
+    public long getZeroReads() {
+        return metrics.zeroReads();
+    }
+
+    @Override
+    public long getExactRetries() {
+        return metrics.exactRetries();
+    }
+
+    @Override
+    public long getPinEvents() {
+        return metrics.pinEvents();
+    }
+
+    @Override
+    public boolean isTiming() {
+        return metrics.timing();
+    }
+
+    @Override
+    public void setTiming(boolean flag) {
+        metrics.setTiming(flag);
+    }
+
+    @Override
+    public double getReadTimeP50() {
+        return micros(metrics.readTime().percentile(0.5));
+    }
+
+    @Override
+    public double getReadTimeP99() {
+        return micros(metrics.readTime().percentile(0.99));
+    }
+
+    @Override
+    public double getWriteTimeP50() {
+        return micros(metrics.writeTime().percentile(0.5));
+    }
+
+    @Override
+    public double getWriteTimeP99() {
+        return micros(metrics.writeTime().percentile(0.99));
+    }
+
+    @Override
+    public double getListenerLatencyP50() {
+        return micros(metrics.listenerLatency().percentile(0.5));
+    }
+
+    @Override
+    public double getListenerLatencyP99() {
+        return micros(metrics.listenerLatency().percentile(0.99));
+    }
+
+    @Override
+    public double getListenerLatencyMax() {
+        return micros(metrics.listenerLatency().max());
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.metrics;
+
+/**
+ * Values of device metrics at some moment, durations are in nanos.
+ * Rates can be computed from two snapshots and their timestamps
+ */
+public final class MetricsSnapshot {
+
+    private final String name;
+    private final long timestamp;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long reads;
+    private final long writes;
+    private final long zeroReads;
+    private final long exactRetries;
+    private final long pinEvents;
+    private final long readTimeP50;
+    private final long readTimeP99;
+    private final long writeTimeP50;
+    private final long writeTimeP99;
+    private final long listenerLatencyP50;
+    private final long listenerLatencyP99;
+    private final long listenerLatencyMax;
+
+    MetricsSnapshot(String name, long timestamp, long bytesIn, long bytesOut, long reads, long writes,
+                    long zeroReads, long exactRetries, long pinEvents,
+                    long readTimeP50, long readTimeP99, long writeTimeP50, long writeTimeP99,
+                    long listenerLatencyP50, long listenerLatencyP99, long listenerLatencyMax) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.reads = reads;
+        this.writes = writes;
+        this.zeroReads = zeroReads;
+        this.exactRetries = exactRetries;
+        this.pinEvents = pinEvents;
+        this.readTimeP50 = readTimeP50;
+        this.readTimeP99 = readTimeP99;
+        this.writeTimeP50 = writeTimeP50;
+        this.writeTimeP99 = writeTimeP99;
+        this.listenerLatencyP50 = listenerLatencyP50;
+        this.listenerLatencyP99 = listenerLatencyP99;
+        this.listenerLatencyMax = listenerLatencyMax;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return wall clock millis when snapshot was taken
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public long bytesIn() {
+        return bytesIn;
+    }
+
+    public long bytesOut() {
+        return bytesOut;
+    }
+
+    public long reads() {
+        return reads;
+    }
+
+    public long writes() {
+        return writes;
+    }
+
+    public long zeroReads() {
+        return zeroReads;
+    }
+
+    public long exactRetries() {
+        return exactRetries;
+    }
+
+    public long pinEvents() {
+        return pinEvents;
+    }
+
+    public long readTimeP50() {
+        return readTimeP50;
+    }
+
+    public long readTimeP99() {
+        return readTimeP99;
+    }
+
+    public long writeTimeP50() {
+        return writeTimeP50;
+    }
+
+    public long writeTimeP99() {
+        return writeTimeP99;
+    }
+
+    public long listenerLatencyP50() {
+        return listenerLatencyP50;
+    }
+
+    public long listenerLatencyP99() {
+        return listenerLatencyP99;
+    }
+
+    public long listenerLatencyMax() {
+        return listenerLatencyMax;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": in=" + bytesIn + "B out=" + bytesOut + "B reads=" + reads + " writes=" + writes
+                + " zeroReads=" + zeroReads + " exactRetries=" + exactRetries + " pinEvents=" + pinEvents
+                + " listenerLatencyP99=" + listenerLatencyP99 + "ns";
+    }
+}
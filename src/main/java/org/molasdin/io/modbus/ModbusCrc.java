@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table driven CRC-16/MODBUS (polynomial 0xA001 reflected, initial value 0xFFFF)
+ */
+public enum ModbusCrc {
+    INSTANCE;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * Does not change buffer position
+     */
+    public int crc(ByteBuffer buffer, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ buffer.get(i)) & 0xFF];
+        }
+        return crc;
+    }
+
+    /**
+     * Appends CRC of bytes before position, low byte goes first
+     */
+    public void append(ByteBuffer buffer) {
+        int crc = crc(buffer, 0, buffer.position());
+        buffer.put((byte) crc);
+        buffer.put((byte) (crc >>> 8));
+    }
+
+    /**
+     * Checks frame between 0 and limit which ends with CRC
+     */
+    public boolean check(ByteBuffer frame) {
+        int length = frame.limit();
+        if (length < 3) {
+            return false;
+        }
+        int crc = crc(frame, 0, length - 2);
+        return (frame.get(length - 2) & 0xFF) == (crc & 0xFF)
+                && (frame.get(length - 1) & 0xFF) == (crc >>> 8);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+/**
+ * Failed transaction. Exception code is set when slave replied with exception response
+ */
+public class ModbusException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_EXCEPTION_CODE = 0;
+
+    private final int exceptionCode;
+
+    public ModbusException(String message) {
+        this(message, NO_EXCEPTION_CODE);
+    }
+
+    public ModbusException(String message, Throwable cause) {
+        super(message, cause);
+        this.exceptionCode = NO_EXCEPTION_CODE;
+    }
+
+    public ModbusException(String message, int exceptionCode) {
+        super(message);
+        this.exceptionCode = exceptionCode;
+    }
+
+    public int exceptionCode() {
+        return exceptionCode;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+/**
+ * Supported function codes
+ */
+public enum ModbusFunction {
+    READ_COILS(1),
+    READ_DISCRETE_INPUTS(2),
+    READ_HOLDING_REGISTERS(3),
+    READ_INPUT_REGISTERS(4),
+    WRITE_SINGLE_COIL(5),
+    WRITE_SINGLE_REGISTER(6),
+    WRITE_MULTIPLE_COILS(15),
+    WRITE_MULTIPLE_REGISTERS(16);
+
+    private Integer value;
+
+    private ModbusFunction(Integer value) {
+        this.value = value;
+    }
+
+    public Integer value() {
+        return value;
+    }
+
+    public boolean isRead() {
+        return value <= 4;
+    }
+
+    /**
+     * @return true for functions which read single bits
+     */
+    public boolean isBitAccess() {
+        return value == 1 || value == 2;
+    }
+
+    public static ModbusFunction fromValue(Integer value) {
+        for (ModbusFunction entry : values()) {
+            if (entry.value().equals(value)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import org.molasdin.io.DeviceInputChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects one RTU frame from input.
+ * Frame ends when line stays idle for T3.5 or, for known functions,
+ * as soon as expected amount of bytes is received, so no silence is wasted
+ */
+final class RtuFrameReader {
+
+    private final DeviceInputChannel input;
+    private final boolean responses;
+
+    /**
+     * @param responses true if frames are responses of slaves, false for requests
+     */
+    RtuFrameReader(DeviceInputChannel input, boolean responses) {
+        this.input = input;
+        this.responses = responses;
+    }
+
+    /**
+     * Frame is placed between 0 and limit of "frame"
+     * @return false if nothing arrived in "firstByteNanos"
+     */
+    boolean read(ByteBuffer frame, long firstByteNanos, long idleNanos) throws IOException {
+        frame.clear();
+        if (!input.awaitData(TimeUnit.NANOSECONDS.toMicros(firstByteNanos))) {
+            return false;
+        }
+        long idleMicros = Math.max(1L, TimeUnit.NANOSECONDS.toMicros(idleNanos));
+        while (true) {
+            if (input.read(frame) < 0) {
+                throw new ModbusException("Device read failed");
+            }
+            int expected = responses ? expectedResponse(frame) : expectedRequest(frame);
+            if (expected > 0 && frame.position() >= expected) {
+                break;
+            }
+            if (!frame.hasRemaining() || !input.awaitData(idleMicros)) {
+                break;
+            }
+        }
+        frame.flip();
+        return true;
+    }
+
+    /**
+     * Drops everything which is already received
+     */
+    void discard(ByteBuffer scratch) throws IOException {
+        while (input.awaitData(0L)) {
+            scratch.clear();
+            if (input.read(scratch) <= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return full length of response frame or -1 if it is not known yet
+     */
+    static int expectedResponse(ByteBuffer frame) {
+        if (frame.position() < 2) {
+            return -1;
+        }
+        int function = frame.get(1) & 0xFF;
+        if ((function & 0x80) != 0) {
+            return 5;
+        }
+        switch (function) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                return frame.position() < 3 ? -1 : 5 + (frame.get(2) & 0xFF);
+            case 5:
+            case 6:
+            case 15:
+            case 16:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+
+    static int expectedRequest(ByteBuffer frame) {
+        if (frame.position() < 2) {
+            return -1;
+        }
+        switch (frame.get(1) & 0xFF) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+            case 6:
+                return 8;
+            case 15:
+            case 16:
+                return frame.position() < 7 ? -1 : 9 + (frame.get(6) & 0xFF);
+            default:
+                return -1;
+        }
+    }
+}
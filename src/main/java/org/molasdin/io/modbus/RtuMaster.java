@@ -0,0 +1,294 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import org.molasdin.io.DeviceInputChannel;
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.Sleep;
+import org.molasdin.io.serial.Serial;
+import org.molasdin.io.util.DirectBufferPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Modbus RTU master of one bus.
+ * Silence of T3.5 is kept between frames on the bus counting from
+ * the moment last byte left or arrived, response end is detected by
+ * expected length or by idle line.
+ * Transactions are serialized, buffers are reused so steady polling does not allocate.
+ * Pooled buffers are returned on close, port itself is left open.
+ */
+public class RtuMaster implements Closeable {
+
+    public static final int MAX_FRAME = 256;
+    public static final int MAX_REGISTERS = 125;
+    public static final int MAX_BITS = 2000;
+    //request of multiple write carries byte count, so it fits less values than response of read
+    public static final int MAX_WRITE_REGISTERS = 123;
+    public static final int MAX_WRITE_BITS = 1968;
+
+    private final Serial serial;
+    private final DeviceInputChannel input;
+    private final DeviceOutputChannel output;
+    private final RtuFrameReader reader;
+    private final ByteBuffer request;
+    private final ByteBuffer response;
+    private volatile RtuTiming timing;
+    private long responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(1000);
+    private long busFreeAt;
+    private boolean closed = false;
+
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public RtuMaster(Serial serial) {
+        this.serial = serial;
+        this.input = serial.input();
+        this.output = serial.output();
+        this.reader = new RtuFrameReader(input, true);
+        this.request = DirectBufferPool.shared().acquire(MAX_FRAME);
+        this.response = DirectBufferPool.shared().acquire(MAX_FRAME);
+        this.timing = RtuTiming.of(serial);
+        this.busFreeAt = System.nanoTime();
+    }
+
+    public Serial serial() {
+        return serial;
+    }
+
+    /**
+     * Recalculates silence intervals, should be called after port configuration is changed
+     */
+    public void refreshTiming() {
+        timing = RtuTiming.of(serial);
+    }
+
+    public RtuTiming timing() {
+        return timing;
+    }
+
+    public void setResponseTimeout(Long millis) {
+        responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @return amount of successful transactions
+     */
+    public long transactions() {
+        return transactions.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return amount of corrupted, unexpected and exception responses
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    public int readHoldingRegisters(int unit, int address, int count, int[] target, int offset) {
+        return read(ModbusFunction.READ_HOLDING_REGISTERS, unit, address, count, target, offset);
+    }
+
+    public int readInputRegisters(int unit, int address, int count, int[] target, int offset) {
+        return read(ModbusFunction.READ_INPUT_REGISTERS, unit, address, count, target, offset);
+    }
+
+    /**
+     * Bits are stored as 0 or 1
+     */
+    public int readCoils(int unit, int address, int count, int[] target, int offset) {
+        return read(ModbusFunction.READ_COILS, unit, address, count, target, offset);
+    }
+
+    public int readDiscreteInputs(int unit, int address, int count, int[] target, int offset) {
+        return read(ModbusFunction.READ_DISCRETE_INPUTS, unit, address, count, target, offset);
+    }
+
+    /**
+     * Generic read of registers or bits
+     * @return amount of values stored into "target"
+     */
+    public synchronized int read(ModbusFunction function, int unit, int address, int count, int[] target, int offset) {
+        if (!function.isRead()) {
+            throw new IllegalArgumentException("Function does not read data");
+        }
+        int max = function.isBitAccess() ? MAX_BITS : MAX_REGISTERS;
+        if (count < 1 || count > max || offset < 0 || offset + count > target.length) {
+            throw new IllegalArgumentException("Invalid amount of values");
+        }
+        startRequest(unit, function);
+        request.putShort((short) address);
+        request.putShort((short) count);
+        transact(unit);
+        int bytes = function.isBitAccess() ? (count + 7) / 8 : count * 2;
+        if ((response.get(2) & 0xFF) != bytes || response.limit() != bytes + 5) {
+            errors.increment();
+            throw new ModbusException("Unexpected amount of data");
+        }
+        for (int i = 0; i < count; i++) {
+            if (function.isBitAccess()) {
+                target[offset + i] = (response.get(3 + i / 8) >>> (i % 8)) & 1;
+            } else {
+                target[offset + i] = response.getShort(3 + i * 2) & 0xFFFF;
+            }
+        }
+        return count;
+    }
+
+    public synchronized void writeSingleRegister(int unit, int address, int value) {
+        startRequest(unit, ModbusFunction.WRITE_SINGLE_REGISTER);
+        request.putShort((short) address);
+        request.putShort((short) value);
+        transact(unit);
+    }
+
+    public synchronized void writeSingleCoil(int unit, int address, boolean value) {
+        startRequest(unit, ModbusFunction.WRITE_SINGLE_COIL);
+        request.putShort((short) address);
+        request.putShort((short) (value ? 0xFF00 : 0));
+        transact(unit);
+    }
+
+    public synchronized void writeMultipleRegisters(int unit, int address, int[] values, int offset, int count) {
+        if (count < 1 || count > MAX_WRITE_REGISTERS || offset < 0 || offset + count > values.length) {
+            throw new IllegalArgumentException("Invalid amount of values");
+        }
+        startRequest(unit, ModbusFunction.WRITE_MULTIPLE_REGISTERS);
+        request.putShort((short) address);
+        request.putShort((short) count);
+        request.put((byte) (count * 2));
+        for (int i = 0; i < count; i++) {
+            request.putShort((short) values[offset + i]);
+        }
+        transact(unit);
+    }
+
+    /**
+     * Bits are taken as 0 or not 0
+     */
+    public synchronized void writeMultipleCoils(int unit, int address, int[] values, int offset, int count) {
+        if (count < 1 || count > MAX_WRITE_BITS || offset < 0 || offset + count > values.length) {
+            throw new IllegalArgumentException("Invalid amount of values");
+        }
+        startRequest(unit, ModbusFunction.WRITE_MULTIPLE_COILS);
+        request.putShort((short) address);
+        request.putShort((short) count);
+        int bytes = (count + 7) / 8;
+        request.put((byte) bytes);
+        for (int i = 0; i < bytes; i++) {
+            int packed = 0;
+            for (int bit = 0; bit < 8 && i * 8 + bit < count; bit++) {
+                packed |= (values[offset + i * 8 + bit] != 0 ? 1 : 0) << bit;
+            }
+            request.put((byte) packed);
+        }
+        transact(unit);
+    }
+
+    /**
+     * Returns buffers to pool, following transactions fail
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        DirectBufferPool.shared().release(request);
+        DirectBufferPool.shared().release(response);
+    }
+
+    private void startRequest(int unit, ModbusFunction function) {
+        if (closed) {
+            throw new IllegalStateException("Master is closed");
+        }
+        if (unit < 0 || unit > 247) {
+            throw new IllegalArgumentException("Invalid unit address");
+        }
+        request.clear();
+        request.put((byte) unit);
+        request.put(function.value().byteValue());
+    }
+
+    /**
+     * Sends request and receives response, broadcasts (unit 0) have no response
+     */
+    private void transact(int unit) {
+        RtuTiming current = timing;
+        ModbusCrc.INSTANCE.append(request);
+        request.flip();
+        int function = request.get(1) & 0xFF;
+        int length = request.remaining();
+        try {
+            reader.discard(response);
+            Sleep.sleepUntil(busFreeAt);
+            while (request.hasRemaining()) {
+                if (output.write(request) < 0) {
+                    throw new ModbusException("Device write failed");
+                }
+            }
+            long sent = System.nanoTime() + current.transmitNanos(length);
+            if (unit == 0) {
+                busFreeAt = sent + current.t35Nanos();
+                transactions.increment();
+                return;
+            }
+            boolean received = reader.read(response, sent - System.nanoTime() + responseTimeoutNanos,
+                    current.t35Nanos());
+            busFreeAt = System.nanoTime() + current.t35Nanos();
+            if (!received) {
+                timeouts.increment();
+                throw new ModbusException("Response timeout");
+            }
+        } catch (IOException ex) {
+            errors.increment();
+            throw new ModbusException(ex.getMessage(), ex);
+        }
+        checkResponse(unit, function);
+        transactions.increment();
+    }
+
+    private void checkResponse(int unit, int function) {
+        if (!ModbusCrc.INSTANCE.check(response)) {
+            errors.increment();
+            throw new ModbusException("CRC mismatch");
+        }
+        if ((response.get(0) & 0xFF) != unit) {
+            errors.increment();
+            throw new ModbusException("Response of unexpected unit");
+        }
+        int responseFunction = response.get(1) & 0xFF;
+        if (responseFunction == (function | 0x80)) {
+            errors.increment();
+            int code = response.get(2) & 0xFF;
+            throw new ModbusException("Exception response " + code, code);
+        }
+        if (responseFunction != function) {
+            errors.increment();
+            throw new ModbusException("Response of unexpected function");
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import org.molasdin.io.DeviceExecution;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Polls many ports in parallel, every bus is served by its own thread
+ * because transactions on one bus are strictly sequential.
+ * Due polls of one bus are executed back to back, so bus stays busy
+ * only with T3.5 gaps between frames.
+ */
+public class RtuPoller implements Closeable {
+
+    /**
+     * Receives values of polls, called on bus thread.
+     * "values" array belongs to poll and is reused.
+     * Exceptions thrown by listener are passed to "DeviceExecution.reportFailure"
+     */
+    public interface PollListener {
+        void polled(Poll poll, int[] values, int count);
+
+        void failed(Poll poll, ModbusException ex);
+    }
+
+    /**
+     * Periodic read of one block
+     */
+    public static final class Poll {
+        private final ModbusFunction function;
+        private final int unit;
+        private final int address;
+        private final int count;
+        private final long periodNanos;
+        private final PollListener listener;
+        private final int[] values;
+        private long due;
+        private volatile boolean cancelled = false;
+
+        private Poll(ModbusFunction function, int unit, int address, int count,
+                     long periodNanos, PollListener listener) {
+            this.function = function;
+            this.unit = unit;
+            this.address = address;
+            this.count = count;
+            this.periodNanos = periodNanos;
+            this.listener = listener;
+            this.values = new int[count];
+            this.due = System.nanoTime();
+        }
+
+        public ModbusFunction function() {
+            return function;
+        }
+
+        public int unit() {
+            return unit;
+        }
+
+        public int address() {
+            return address;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final Map<RtuMaster, Bus> buses = new IdentityHashMap<>();
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private boolean closed = false;
+
+    /**
+     * Adds periodic poll, bus thread is started for first poll of master.
+     * Poll is cancelled when master can not be used anymore, for example after its close
+     * @param periodMillis 0 polls continuously
+     */
+    public synchronized Poll schedule(RtuMaster master, ModbusFunction function, int unit, int address,
+                                      int count, long periodMillis, PollListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Poller is closed");
+        }
+        if (!function.isRead()) {
+            throw new IllegalArgumentException("Only read functions can be polled");
+        }
+        int max = function.isBitAccess() ? RtuMaster.MAX_BITS : RtuMaster.MAX_REGISTERS;
+        if (count < 1 || count > max) {
+            throw new IllegalArgumentException("Invalid amount of values");
+        }
+        Poll poll = new Poll(function, unit, address, count, TimeUnit.MILLISECONDS.toNanos(periodMillis), listener);
+        Bus bus = buses.get(master);
+        if (bus == null) {
+            bus = new Bus(master, buses.size());
+            buses.put(master, bus);
+            bus.thread.start();
+        }
+        bus.add(poll);
+        return poll;
+    }
+
+    /**
+     * @return amount of successful transactions on all buses
+     */
+    public long transactions() {
+        return transactions.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        List<Bus> current;
+        synchronized (this) {
+            closed = true;
+            current = new ArrayList<>(buses.values());
+            buses.clear();
+        }
+        for (Bus bus : current) {
+            bus.stop();
+        }
+    }
+
+    private final class Bus implements Runnable {
+        private final RtuMaster master;
+        private final Thread thread;
+        private volatile Poll[] polls = new Poll[0];
+        private volatile boolean terminateFlag = false;
+
+        Bus(RtuMaster master, int id) {
+            this.master = master;
+            this.thread = new Thread(this, "modbus-poller-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        synchronized void add(Poll poll) {
+            Poll[] tmp = new Poll[polls.length + 1];
+            System.arraycopy(polls, 0, tmp, 0, polls.length);
+            tmp[polls.length] = poll;
+            polls = tmp;
+            LockSupport.unpark(thread);
+        }
+
+        synchronized void removeCancelled() {
+            int alive = 0;
+            for (Poll poll : polls) {
+                if (!poll.cancelled) {
+                    alive++;
+                }
+            }
+            Poll[] tmp = new Poll[alive];
+            int index = 0;
+            for (Poll poll : polls) {
+                if (!poll.cancelled) {
+                    tmp[index++] = poll;
+                }
+            }
+            polls = tmp;
+        }
+
+        void stop() {
+            terminateFlag = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!terminateFlag) {
+                Poll[] current = polls;
+                long now = System.nanoTime();
+                long next = Long.MAX_VALUE;
+                boolean cancelled = false;
+                for (Poll poll : current) {
+                    if (terminateFlag) {
+                        return;
+                    }
+                    if (poll.cancelled) {
+                        cancelled = true;
+                        continue;
+                    }
+                    if (poll.due - now <= 0) {
+                        execute(poll);
+                        poll.due = poll.periodNanos == 0 ? System.nanoTime() : poll.due + poll.periodNanos;
+                        now = System.nanoTime();
+                        if (poll.due - now < 0 && poll.periodNanos != 0) {
+                            //bus is overloaded, do not try to catch up
+                            poll.due = now;
+                        }
+                    }
+                    next = Math.min(next, poll.due - now);
+                }
+                if (cancelled) {
+                    removeCancelled();
+                }
+                if (next > 0) {
+                    LockSupport.parkNanos(this, next == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1) : next);
+                }
+            }
+        }
+
+        private void execute(Poll poll) {
+            int total;
+            try {
+                total = master.read(poll.function, poll.unit, poll.address, poll.count, poll.values, 0);
+            } catch (ModbusException ex) {
+                failures.increment();
+                try {
+                    poll.listener.failed(poll, ex);
+                } catch (RuntimeException failure) {
+                    DeviceExecution.INSTANCE.reportFailure(failure);
+                }
+                return;
+            } catch (RuntimeException ex) {
+                failures.increment();
+                poll.cancel();
+                DeviceExecution.INSTANCE.reportFailure(ex);
+                return;
+            }
+            transactions.increment();
+            try {
+                poll.listener.polled(poll, poll.values, total);
+            } catch (RuntimeException ex) {
+                DeviceExecution.INSTANCE.reportFailure(ex);
+            }
+        }
+    }
+}
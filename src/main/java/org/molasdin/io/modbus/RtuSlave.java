@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.serial.Serial;
+import org.molasdin.io.util.DirectBufferPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple slave serving register and coil tables from dedicated thread.
+ * Intended as stand in device for tests and benchmarks,
+ * for example on another end of pseudo terminal
+ */
+public class RtuSlave implements Runnable, Closeable {
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int unit;
+    private final RtuFrameReader reader;
+    private final DeviceOutputChannel output;
+    private final RtuTiming timing;
+    private final int[] holdingRegisters;
+    private final int[] inputRegisters;
+    private final int[] coils;
+    private final int[] discreteInputs;
+    private final ByteBuffer request;
+    private final ByteBuffer response;
+    private final Thread thread;
+    private volatile boolean terminateFlag = false;
+    private boolean released = false;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param size amount of entries in every table
+     */
+    public RtuSlave(Serial serial, int unit, int size) {
+        this.unit = unit;
+        this.reader = new RtuFrameReader(serial.input(), false);
+        this.output = serial.output();
+        this.timing = RtuTiming.of(serial);
+        holdingRegisters = new int[size];
+        inputRegisters = new int[size];
+        coils = new int[size];
+        discreteInputs = new int[size];
+        request = DirectBufferPool.shared().acquire(RtuMaster.MAX_FRAME);
+        response = DirectBufferPool.shared().acquire(RtuMaster.MAX_FRAME);
+        thread = new Thread(this, "modbus-slave-" + unit);
+        thread.setDaemon(true);
+    }
+
+    public RtuSlave start() {
+        thread.start();
+        return this;
+    }
+
+    public int[] holdingRegisters() {
+        return holdingRegisters;
+    }
+
+    public int[] inputRegisters() {
+        return inputRegisters;
+    }
+
+    public int[] coils() {
+        return coils;
+    }
+
+    public int[] discreteInputs() {
+        return discreteInputs;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    @Override
+    public void run() {
+        while (!terminateFlag) {
+            try {
+                if (!reader.read(request, POLL_NANOS, timing.t35Nanos())) {
+                    continue;
+                }
+                if (!ModbusCrc.INSTANCE.check(request)) {
+                    errors.increment();
+                    continue;
+                }
+                if ((request.get(0) & 0xFF) != unit) {
+                    //addressed to another device on bus
+                    continue;
+                }
+                requests.increment();
+                process();
+                response.flip();
+                while (response.hasRemaining()) {
+                    if (output.write(response) < 0) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                if (!terminateFlag) {
+                    errors.increment();
+                }
+            }
+        }
+    }
+
+    private void process() {
+        int function = request.get(1) & 0xFF;
+        int address = request.getShort(2) & 0xFFFF;
+        int value = request.getShort(4) & 0xFFFF;
+        response.clear();
+        response.put((byte) unit);
+        response.put((byte) function);
+        switch (function) {
+            case 1:
+                readBits(coils, address, value);
+                break;
+            case 2:
+                readBits(discreteInputs, address, value);
+                break;
+            case 3:
+                readRegisters(holdingRegisters, address, value);
+                break;
+            case 4:
+                readRegisters(inputRegisters, address, value);
+                break;
+            case 5:
+                if (address >= coils.length) {
+                    exception(2);
+                    break;
+                }
+                coils[address] = value == 0xFF00 ? 1 : 0;
+                echo();
+                break;
+            case 6:
+                if (address >= holdingRegisters.length) {
+                    exception(2);
+                    break;
+                }
+                holdingRegisters[address] = value;
+                echo();
+                break;
+            case 15:
+                if (value < 1 || value > RtuMaster.MAX_WRITE_BITS || address + value > coils.length) {
+                    exception(2);
+                    break;
+                }
+                for (int i = 0; i < value; i++) {
+                    coils[address + i] = (request.get(7 + i / 8) >>> (i % 8)) & 1;
+                }
+                echo();
+                break;
+            case 16:
+                if (value < 1 || value > RtuMaster.MAX_WRITE_REGISTERS || address + value > holdingRegisters.length) {
+                    exception(2);
+                    break;
+                }
+                for (int i = 0; i < value; i++) {
+                    holdingRegisters[address + i] = request.getShort(7 + i * 2) & 0xFFFF;
+                }
+                echo();
+                break;
+            default:
+                exception(1);
+        }
+        ModbusCrc.INSTANCE.append(response);
+    }
+
+    private void readRegisters(int[] table, int address, int count) {
+        if (count < 1 || count > RtuMaster.MAX_REGISTERS || address + count > table.length) {
+            exception(2);
+            return;
+        }
+        response.put((byte) (count * 2));
+        for (int i = 0; i < count; i++) {
+            response.putShort((short) table[address + i]);
+        }
+    }
+
+    private void readBits(int[] table, int address, int count) {
+        if (count < 1 || count > RtuMaster.MAX_BITS || address + count > table.length) {
+            exception(2);
+            return;
+        }
+        int bytes = (count + 7) / 8;
+        response.put((byte) bytes);
+        for (int i = 0; i < bytes; i++) {
+            int packed = 0;
+            for (int bit = 0; bit < 8 && i * 8 + bit < count; bit++) {
+                packed |= (table[address + i * 8 + bit] & 1) << bit;
+            }
+            response.put((byte) packed);
+        }
+    }
+
+    /**
+     * Writes are confirmed by address and value of request
+     */
+    private void echo() {
+        response.putShort(request.getShort(2));
+        response.putShort(request.getShort(4));
+    }
+
+    private void exception(int code) {
+        response.position(1);
+        response.put((byte) (request.get(1) | 0x80));
+        response.put((byte) code);
+    }
+
+    /**
+     * Stops serving thread and returns buffers to pool once it has ended
+     */
+    @Override
+    public void close() {
+        terminateFlag = true;
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(POLL_NANOS) * 5);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive() && !released) {
+            released = true;
+            DirectBufferPool.shared().release(request);
+            DirectBufferPool.shared().release(response);
+        }
+    }
+}
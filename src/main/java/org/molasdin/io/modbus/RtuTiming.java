@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.modbus;
+
+import org.molasdin.io.serial.DataBits;
+import org.molasdin.io.serial.Parity;
+import org.molasdin.io.serial.Serial;
+import org.molasdin.io.serial.StopBits;
+
+/**
+ * Character and silence intervals of Modbus RTU line.
+ * Above 19200 baud specification fixes T1.5 at 750us and T3.5 at 1750us
+ */
+public final class RtuTiming {
+
+    private static final int FIXED_TIMING_BAUD = 19200;
+    private static final long FIXED_T15_NANOS = 750000L;
+    private static final long FIXED_T35_NANOS = 1750000L;
+
+    private final int baudRate;
+    private final long charNanos;
+    private final long t15Nanos;
+    private final long t35Nanos;
+
+    public RtuTiming(int baudRate, DataBits dataBits, StopBits stopBits, Parity parity) {
+        if (baudRate <= 0) {
+            throw new IllegalArgumentException("Baud rate should be positive");
+        }
+        int bits = 1 + dataBits.value() + stopBits.value() + (parity == Parity.DISABLED ? 0 : 1);
+        this.baudRate = baudRate;
+        this.charNanos = bits * 1000000000L / baudRate;
+        if (baudRate > FIXED_TIMING_BAUD) {
+            t15Nanos = FIXED_T15_NANOS;
+            t35Nanos = FIXED_T35_NANOS;
+        } else {
+            t15Nanos = charNanos * 3 / 2;
+            t35Nanos = charNanos * 7 / 2;
+        }
+    }
+
+    /**
+     * Timing of current port configuration
+     */
+    public static RtuTiming of(Serial serial) {
+        return new RtuTiming(serial.baudRateValue(), serial.dataBits(), serial.stopBits(), serial.parity());
+    }
+
+    public int baudRate() {
+        return baudRate;
+    }
+
+    /**
+     * @return time of one character on wire
+     */
+    public long charNanos() {
+        return charNanos;
+    }
+
+    /**
+     * @return max silence inside frame
+     */
+    public long t15Nanos() {
+        return t15Nanos;
+    }
+
+    /**
+     * @return min silence between frames
+     */
+    public long t35Nanos() {
+        return t35Nanos;
+    }
+
+    /**
+     * @return time needed to transmit "bytes" characters
+     */
+    public long transmitNanos(int bytes) {
+        return charNanos * bytes;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.serial;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion based reads and writes of port registered in reactor.
+ * Operations are queued and served in order when port becomes ready,
+ * pending operations do not hold any thread.
+ * Futures are completed on event loop thread, so dependent stages should not block,
+ * they may start next operations of this or other ports.
+ */
+public class AsyncSerial implements Closeable {
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private final SerialReactor.Key key;
+    private final Deque<Operation> reads = new ArrayDeque<>();
+    private final Deque<Operation> writes = new ArrayDeque<>();
+    private long timeout = 0L;
+    private boolean open = true;
+
+    /**
+     * Registers "serial" in "reactor", port should not be registered already
+     */
+    public AsyncSerial(SerialReactor reactor, Serial serial) {
+        this.key = reactor.register(serial, 0, (current, readyOps) -> ready(readyOps));
+    }
+
+    /**
+     * Time limit of each operation, 0 means no limit
+     * Operation out of time fails with InterruptedByTimeoutException
+     * @param millis
+     */
+    public void setTimeout(Long millis) {
+        this.timeout = millis;
+    }
+
+    public Long timeout() {
+        return timeout;
+    }
+
+    public Serial serial() {
+        return key.serial();
+    }
+
+    /**
+     * Completes with amount of bytes read when at least one byte is available
+     */
+    public CompletableFuture<Integer> read(ByteBuffer dst) {
+        return submit(new Operation(dst, false), reads);
+    }
+
+    /**
+     * Completes when "dst" is full, on timeout buffer keeps bytes which were read
+     */
+    public CompletableFuture<Integer> readFully(ByteBuffer dst) {
+        return submit(new Operation(dst, true), reads);
+    }
+
+    /**
+     * Completes when all remaining bytes of "src" are written
+     */
+    public CompletableFuture<Integer> write(ByteBuffer src) {
+        return submit(new Operation(src, true), writes);
+    }
+
+    public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        notify(read(dst), attachment, handler);
+    }
+
+    public <A> void readFully(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        notify(readFully(dst), attachment, handler);
+    }
+
+    public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        notify(write(src), attachment, handler);
+    }
+
+    public synchronized int pendingReads() {
+        return reads.size();
+    }
+
+    public synchronized int pendingWrites() {
+        return writes.size();
+    }
+
+    /**
+     * Cancels registration, pending operations fail with AsynchronousCloseException
+     * Port itself stays open
+     */
+    @Override
+    public void close() {
+        List<Operation> failed = new ArrayList<>();
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            failed.addAll(reads);
+            failed.addAll(writes);
+            reads.clear();
+            writes.clear();
+            key.cancel();
+        }
+        for (Operation operation : failed) {
+            operation.fail(new AsynchronousCloseException());
+        }
+    }
+
+    private CompletableFuture<Integer> submit(Operation operation, Deque<Operation> queue) {
+        List<Operation> done = new ArrayList<>(1);
+        synchronized (this) {
+            if (!open) {
+                operation.fail(new AsynchronousCloseException());
+                return operation.future;
+            }
+            queue.add(operation);
+            //port may be ready already, so first operation is tried at once
+            if (queue.size() == 1) {
+                serve(queue, queue == writes, done);
+            }
+            if (!operation.future.isDone() && timeout > 0) {
+                operation.timer = TIMER.schedule(() -> expire(operation, queue), timeout, TimeUnit.MILLISECONDS);
+            }
+            updateInterest();
+        }
+        complete(done);
+        return operation.future;
+    }
+
+    private void ready(int readyOps) {
+        List<Operation> done = new ArrayList<>(2);
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            if ((readyOps & SerialReactor.OP_READ) != 0) {
+                serve(reads, false, done);
+            }
+            if ((readyOps & SerialReactor.OP_WRITE) != 0) {
+                serve(writes, true, done);
+            }
+            updateInterest();
+        }
+        complete(done);
+    }
+
+    /**
+     * Transfers data for queued operations until port would block
+     */
+    private void serve(Deque<Operation> queue, boolean write, List<Operation> done) {
+        Operation operation;
+        while ((operation = queue.peek()) != null) {
+            if (operation.future.isDone()) {
+                queue.poll();
+                continue;
+            }
+            int result = write ? key.write(operation.buffer) : key.read(operation.buffer);
+            if (result < 0) {
+                queue.poll();
+                operation.error = new IOException(write ? "Device write failed" : "Device read failed");
+                done.add(operation);
+                continue;
+            }
+            operation.total += result;
+            if (operation.buffer.hasRemaining() && (operation.fully || operation.total == 0)) {
+                return;
+            }
+            queue.poll();
+            done.add(operation);
+        }
+    }
+
+    private void expire(Operation operation, Deque<Operation> queue) {
+        synchronized (this) {
+            if (!queue.remove(operation)) {
+                return;
+            }
+            updateInterest();
+        }
+        operation.fail(new InterruptedByTimeoutException());
+    }
+
+    private void updateInterest() {
+        if (!open) {
+            return;
+        }
+        int ops = (reads.isEmpty() ? 0 : SerialReactor.OP_READ) | (writes.isEmpty() ? 0 : SerialReactor.OP_WRITE);
+        if (ops != key.interestOps()) {
+            key.interestOps(ops);
+        }
+    }
+
+    private static void complete(List<Operation> done) {
+        for (Operation operation : done) {
+            if (operation.error != null) {
+                operation.fail(operation.error);
+            } else {
+                operation.finish();
+            }
+        }
+    }
+
+    /**
+     * Timeouts of completed operations are cancelled,
+     * they are removed at once so queue does not grow with traffic
+     */
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "async-serial-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static <A> void notify(CompletableFuture<Integer> future, A attachment,
+                                   CompletionHandler<Integer, ? super A> handler) {
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                handler.completed(result, attachment);
+            } else {
+                handler.failed(error, attachment);
+            }
+        });
+    }
+
+    private static final class Operation {
+        final ByteBuffer buffer;
+        final boolean fully;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        int total = 0;
+        Throwable error;
+        ScheduledFuture<?> timer;
+
+        Operation(ByteBuffer buffer, boolean fully) {
+            this.buffer = buffer;
+            this.fully = fully;
+        }
+
+        void finish() {
+            cancelTimer();
+            future.complete(total);
+        }
+
+        void fail(Throwable ex) {
+            cancelTimer();
+            future.completeExceptionally(ex);
+        }
+
+        private void cancelTimer() {
+            ScheduledFuture<?> current = timer;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+    }
+}
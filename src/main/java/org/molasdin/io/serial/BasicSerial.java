@@ -17,16 +17,25 @@
 package org.molasdin.io.serial;
 
 import org.molasdin.io.*;
+import org.molasdin.io.capture.PinCapture;
+import org.molasdin.io.metrics.DeviceMetrics;
+import org.molasdin.io.spi.SpiBitBang;
+import org.molasdin.io.spi.SpiLines;
+import org.molasdin.io.util.DirectBufferPool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by molasdin on 2/20/15.
  */
-public class BasicSerial implements Serial {
+public class BasicSerial implements Serial, SpiBitBang {
 
     private String name;
     private long portHnd;
@@ -38,33 +47,66 @@ public class BasicSerial implements Serial {
     private DeviceOutputChannel output;
 
     private ByteBuffer changedBuffer;
+    private long changedAddress;
+
+    private SerialReactor.Key reactorKey;
+
+    //layout of changed signals written by native detection
+    private static final int CHANGED_HEADER = 8;
+    private static final int CHANGED_RECORD = 24;
+
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private volatile ReadAhead readAhead;
+    private long readTimeout = 12000L;
+    private Executor executor;
+
+    private final DeviceMetrics metrics;
+    private final AtomicReference<PinCapture> activeCapture = new AtomicReference<>();
+    private final long[] debounceMicros = new long[8];
+    private final int[] debounceSamples = new int[8];
 
     private SignalsProcessor signalsProcessor = new SignalsProcessor() {
         protected void analyzeSignals() {
-            BasicSerial.this.changedSignals(changedBuffer);
-            changed().clear();
-            if (changedBuffer.get(0) != 0) {
-                int itemsCount = changedBuffer.get(0);
-                for (int i = 1; i < itemsCount * 2; i = i + 2) {
-                    int id = changedBuffer.get(i);
-                    boolean value = changedBuffer.get(i + 1) != 0;
-                    changed().put(id, value);
-                }
+            changedSignals(portHnd, changedAddress);
+            int itemsCount = changedBuffer.get(0);
+            for (int i = 0; i < itemsCount; i++) {
+                int record = CHANGED_HEADER + i * CHANGED_RECORD;
+                change(changedBuffer.get(record + 16), changedBuffer.get(record + 17) != 0,
+                        changedBuffer.getLong(record), changedBuffer.getLong(record + 8));
             }
         }
 
         @Override
         protected void terminateSignalsWait() {
-            BasicSerial.this.terminateWaitForSignals();
+            terminateWaitForSignals(portHnd);
         }
 
         @Override
         protected void prepareToCheckSignals(int[] signals) {
-            BasicSerial.this.prepareToCheckSignals(signals);
-            changedBuffer = ByteBuffer.allocateDirect(signals.length * 2 + 1);
-            changedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            BasicSerial.prepareToCheckSignals(portHnd, signals);
+            int size = CHANGED_HEADER + signals.length * CHANGED_RECORD;
+            if (changedBuffer == null || changedBuffer.capacity() < size) {
+                DirectBufferPool pool = DirectBufferPool.shared();
+                pool.release(changedBuffer);
+                changedBuffer = pool.acquire(size);
+                changedAddress = bufferAddress(changedBuffer);
+            }
+            changedBuffer.clear();
+            changedBuffer.order(ByteOrder.nativeOrder());
             changedBuffer.put(0, (byte)0);
         }
+
+        @Override
+        protected int[] supportedSignals() {
+            return inputSignalIds();
+        }
+
+        @Override
+        protected void watchSignals(int mask) {
+            setWatchMask(portHnd, mask);
+        }
     };
 
     static {
@@ -75,10 +117,33 @@ public class BasicSerial implements Serial {
 
     public BasicSerial(String name) {
         this.name = name;
+        this.metrics = new DeviceMetrics(name);
+        signalsProcessor.setMetrics(metrics);
+    }
+
+    /**
+     * Wraps port which is already opened natively
+     */
+    BasicSerial(String name, long portHnd) {
+        this(name);
+        this.portHnd = portHnd;
+        recreatePins();
+    }
+
+    /**
+     * Opens master end of new pseudo terminal
+     * Name of linked end is available through "peerName"
+     * @return native handle of master end
+     */
+    static long openPseudoTerminal() {
+        return openPtyMaster();
     }
 
     @Override
     public void open() {
+        if (isOpen()) {
+            return;
+        }
         if(name() == null || name().isEmpty()){
             throw new RuntimeException("Port name is empty");
         }
@@ -100,12 +165,90 @@ public class BasicSerial implements Serial {
 
     @Override
     public void activatePinListeners() {
-        signalsProcessor.start();
+        signalsProcessor().start();
     }
 
     @Override
     public void stopPinListeners() {
-        signalsProcessor.stop();
+        signalsProcessor().stop();
+    }
+
+    /**
+     * @return processor which detects changes of input pins, subclasses
+     * with own pins return their processor so port settings reach it
+     */
+    protected SignalsProcessor signalsProcessor() {
+        return signalsProcessor;
+    }
+
+    /**
+     * Lines are sampled natively with one call per sample and no JNI crossing,
+     * waits are slept and last part of each is spun. Capture is stopped on close
+     */
+    @Override
+    public PinCapture capture(ByteBuffer buffer, Long periodNanos) {
+        checkOpen();
+        final long hnd = portHnd;
+        return startCapture(buffer, periodNanos, new PinCapture.Sampler() {
+            @Override
+            public void begin(PinCapture capture) {
+                beginCapture(hnd);
+            }
+
+            @Override
+            public void sample(ByteBuffer target, long period, long[] stats) {
+                BasicSerial.capture(hnd, target, target.position(), target.remaining(), period, stats);
+            }
+
+            @Override
+            public void stop() {
+                stopCapture(hnd);
+            }
+        });
+    }
+
+    /**
+     * Starts capture of all input lines with "sampler", only one capture of port
+     * may run at a time and it is forgotten when sampling ends
+     */
+    PinCapture startCapture(ByteBuffer buffer, Long periodNanos, final PinCapture.Sampler sampler) {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (InputSignal signal : InputSignal.values()) {
+            lines.put(signal.name(), signal.value());
+        }
+        return PinCapture.start(name(), lines, buffer, periodNanos, new PinCapture.Sampler() {
+            @Override
+            public void begin(PinCapture capture) {
+                if (!activeCapture.compareAndSet(null, capture)) {
+                    throw new IllegalStateException("Capture is in progress");
+                }
+                try {
+                    sampler.begin(capture);
+                } catch (RuntimeException ex) {
+                    activeCapture.compareAndSet(capture, null);
+                    throw ex;
+                }
+            }
+
+            @Override
+            public void sample(ByteBuffer target, long period, long[] stats) {
+                sampler.sample(target, period, stats);
+            }
+
+            @Override
+            public void stop() {
+                sampler.stop();
+            }
+
+            @Override
+            public void end(PinCapture capture) {
+                try {
+                    sampler.end(capture);
+                } finally {
+                    activeCapture.compareAndSet(capture, null);
+                }
+            }
+        });
     }
 
     @Override
@@ -116,92 +259,122 @@ public class BasicSerial implements Serial {
 
     @Override
     public void setReadTimeout(Long millis) {
-        setPortReadTimeout(millis);
+        setPortReadTimeout(portHnd, millis);
+        readTimeout = millis;
     }
 
     @Override
     public void setBaudRate(BaudRate baudRate) {
         checkOpen();
-        setPortBaud(baudRate.value());
+        setPortBaud(portHnd, baudRate.value());
     }
 
     @Override
     public BaudRate baudRate() {
         checkOpen();
-        return BaudRate.fromValue(portBaud());
+        BaudRate result = BaudRate.fromValue(portBaud(portHnd));
+        if (result == null) {
+            result = BaudRate.fromValue(portBaudValue(portHnd));
+        }
+        return result;
+    }
+
+    @Override
+    public void setBaudRateValue(Integer baudRate) {
+        checkOpen();
+        if (baudRate == null || baudRate <= 0) {
+            throw new IllegalArgumentException("Baud rate should be positive");
+        }
+        setPortBaudValue(portHnd, baudRate);
+    }
+
+    @Override
+    public Integer baudRateValue() {
+        checkOpen();
+        return portBaudValue(portHnd);
     }
 
     @Override
     public void setDataBits(DataBits dataBits) {
         checkOpen();
-        setPortBits(dataBits.value());
+        setPortBits(portHnd, dataBits.value());
     }
 
     @Override
     public DataBits dataBits() {
         checkOpen();
-        return DataBits.fromValue(portBits());
+        return DataBits.fromValue(portBits(portHnd));
     }
 
     @Override
     public void setStopBits(StopBits stopBits) {
         checkOpen();
-        setPortStopBits(stopBits.value());
+        setPortStopBits(portHnd, stopBits.value());
     }
 
     @Override
     public StopBits stopBits() {
         checkOpen();
-        return StopBits.fromValue(portStopBits());
+        return StopBits.fromValue(portStopBits(portHnd));
     }
 
     @Override
     public void setParity(Parity parity) {
         checkOpen();
-        setPortParity(parity.value());
+        setPortParity(portHnd, parity.value());
     }
 
     @Override
     public Parity parity() {
         checkOpen();
-        return Parity.fromValue(portParity());
+        return Parity.fromValue(portParity(portHnd));
     }
 
     @Override
     public void setFlowControl(FlowControl flowControl) {
         checkOpen();
-        setPortFlowCtl(flowControl.value());
+        setPortFlowCtl(portHnd, flowControl.value());
     }
 
     @Override
     public FlowControl flowControl() {
         checkOpen();
-        return FlowControl.fromValue(portFlowCtl());
+        return FlowControl.fromValue(portFlowCtl(portHnd));
     }
 
     @Override
     public void setControlCharacter(ControlCharacter controlCharacter, Character value) {
         checkOpen();
-        setPortChar(controlCharacter.value(), (byte) value.charValue());
+        setPortChar(portHnd, controlCharacter.value(), (byte) value.charValue());
     }
 
     @Override
     public Character controlCharacter(ControlCharacter controlCharacter) {
         checkOpen();
-        return (char) portChar(controlCharacter.value());
+        return (char) portChar(portHnd, controlCharacter.value());
     }
 
     @Override
     public void close() throws IOException {
         checkOpen();
+        if (reactorKey != null) {
+            reactorKey.cancel();
+        }
         signalsProcessor.stop();
+        DirectBufferPool.shared().release(changedBuffer);
+        changedBuffer = null;
+        PinCapture capture = activeCapture.get();
+        if (capture != null) {
+            capture.stop();
+        }
+        disableReadAhead();
         if (input != null) {
             input.close();
         }
         if (output != null) {
             output.close();
         }
-        closePort();
+        closePort(portHnd);
         portHnd = 0;
     }
 
@@ -209,14 +382,52 @@ public class BasicSerial implements Serial {
     public DeviceInputChannel input() {
         checkOpen();
         if (input == null) {
-            input = new AbstractDeviceInputChannel() {
+            AbstractDeviceInputChannel channel = new AbstractDeviceInputChannel() {
                 @Override
                 protected Integer readImpl(ByteBuffer buffer) {
-                    int total = BasicSerial.this.read(buffer, buffer.remaining());
-                    if(total != 0){
-                        buffer.position(total);
+                    ReadAhead current = readAhead;
+                    if (current != null) {
+                        return current.read(buffer, readTimeout);
                     }
-                    return total;
+                    return readBuffer(buffer);
+                }
+
+                @Override
+                protected boolean awaitImpl(long micros) {
+                    ReadAhead current = readAhead;
+                    if (current != null) {
+                        return current.await(micros);
+                    }
+                    if (DeviceExecution.onVirtualThread()) {
+                        return parkUntilReadable(TimeUnit.MICROSECONDS.toNanos(micros));
+                    }
+                    return awaitReadable(portHnd, micros);
+                }
+
+                @Override
+                protected boolean awaitsData() {
+                    return true;
+                }
+
+                @Override
+                protected Integer readImpl(ByteBuffer buffer, int minBytes, long deadline) {
+                    if (readAhead != null || !buffer.isDirect() || DeviceExecution.onVirtualThread()) {
+                        return super.readImpl(buffer, minBytes, deadline);
+                    }
+                    long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, deadline - System.nanoTime()));
+                    int position = buffer.position();
+                    return advance(buffer, position, readAtLeast(portHnd, buffer, position, buffer.remaining(), minBytes, micros));
+                }
+
+                @Override
+                protected Long readImpl(ByteBuffer[] buffers, int offset, int length) {
+                    if (readAhead != null || !allDirect(buffers, offset, length)) {
+                        return super.readImpl(buffers, offset, length);
+                    }
+                    if (DeviceExecution.onVirtualThread() && !parkUntilReadable(TimeUnit.MILLISECONDS.toNanos(readTimeout))) {
+                        return 0L;
+                    }
+                    return transferVector(buffers, offset, length, false);
                 }
 
                 @Override
@@ -229,6 +440,9 @@ public class BasicSerial implements Serial {
                     input = null;
                 }
             };
+            channel.setMetrics(metrics);
+            channel.setExecutor(executor);
+            input = channel;
         }
         return input;
     }
@@ -237,7 +451,7 @@ public class BasicSerial implements Serial {
     public DeviceOutputChannel output() {
         checkOpen();
         if (output == null) {
-            output = new AbstractDeviceOutputChannel() {
+            AbstractDeviceOutputChannel channel = new AbstractDeviceOutputChannel() {
                 @Override
                 protected void closeImpl() {
                     output = null;
@@ -245,11 +459,15 @@ public class BasicSerial implements Serial {
 
                 @Override
                 protected Integer writeImpl(ByteBuffer buffer) {
-                    int total =  BasicSerial.this.write(buffer, buffer.remaining());
-                    if(total != 0){
-                        buffer.position(total);
+                    return writeBuffer(buffer);
+                }
+
+                @Override
+                protected Long writeImpl(ByteBuffer[] buffers, int offset, int length) {
+                    if (!allDirect(buffers, offset, length)) {
+                        return super.writeImpl(buffers, offset, length);
                     }
-                    return total;
+                    return transferVector(buffers, offset, length, true);
                 }
 
                 @Override
@@ -257,6 +475,9 @@ public class BasicSerial implements Serial {
                     return output != null;
                 }
             };
+            channel.setMetrics(metrics);
+            channel.setExecutor(executor);
+            output = channel;
         }
         return output;
     }
@@ -266,6 +487,31 @@ public class BasicSerial implements Serial {
         return name;
     }
 
+    /**
+     * Executor for non blocking reads and writes and for pin listeners of this port,
+     * applied to channels created later and to next activation of listeners.
+     * Port without executor uses "DeviceExecution" default
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        signalsProcessor().setExecutor(executor);
+    }
+
+    /**
+     * Queueing of pin events per pin when listeners are slower than line,
+     * applied on next activation of listeners
+     */
+    public void setPinEventPolicy(PinEventPolicy policy, Integer capacity) {
+        signalsProcessor().setEventPolicy(policy, capacity);
+    }
+
+    /**
+     * @return counters of port, kept across reopening
+     */
+    public DeviceMetrics metrics() {
+        return metrics;
+    }
+
     @Override
     public Boolean hasPin(String name) {
         checkOpen();
@@ -285,6 +531,64 @@ public class BasicSerial implements Serial {
     }
 
 
+    /**
+     * Pins of port are known to native SPI transfer
+     */
+    private abstract class PortOutPin implements OutPin, DevicePin {
+        private final Integer signal;
+
+        PortOutPin(Integer signal) {
+            this.signal = signal;
+        }
+
+        @Override
+        public Device device() {
+            return BasicSerial.this;
+        }
+
+        @Override
+        public Integer signal() {
+            return signal;
+        }
+    }
+
+    private abstract class PortInPin implements InPin, DevicePin {
+        private final Integer signal;
+
+        PortInPin(Integer signal) {
+            this.signal = signal;
+        }
+
+        @Override
+        public Device device() {
+            return BasicSerial.this;
+        }
+
+        @Override
+        public Integer signal() {
+            return signal;
+        }
+    }
+
+    /**
+     * Clock and data lines are set with one ioctl per edge where port allows,
+     * inputs are read with one ioctl per bit
+     */
+    @Override
+    public void spiTransfer(ByteBuffer data, SpiLines lines, Boolean cpol, Boolean cpha, Long halfPeriodNanos) {
+        checkOpen();
+        if (!data.isDirect()) {
+            throw new IllegalArgumentException("Buffer should be direct");
+        }
+        int wiring = lines.sck() | lines.mosi() << 4 | lines.miso() << 8
+                | (lines.sckInverted() ? 1 << 12 : 0)
+                | (lines.mosiInverted() ? 1 << 13 : 0)
+                | (lines.misoInverted() ? 1 << 14 : 0)
+                | (cpol ? 1 << 15 : 0)
+                | (cpha ? 1 << 16 : 0);
+        spiTransfer(portHnd, data, data.position(), data.remaining(), wiring, halfPeriodNanos);
+    }
+
     private void checkOpen() {
         if (!isOpen()) {
             throw new IllegalStateException("Port is closed");
@@ -294,10 +598,10 @@ public class BasicSerial implements Serial {
     private void recreatePins() {
         signalsProcessor.stop();
         for (final OutputSignal signal : OutputSignal.values()) {
-            OutPin pin = new OutPin() {
+            OutPin pin = new PortOutPin(signal.value()) {
                 @Override
                 public void setValue(Boolean value) {
-                    setPinSignal(signal.value(), value);
+                    setPinSignal(portHnd, signal.value(), value);
                 }
 
                 @Override
@@ -309,10 +613,10 @@ public class BasicSerial implements Serial {
         }
 
         for (final InputSignal signal : InputSignal.values()) {
-            InPin pin = new InPin() {
+            InPin pin = new PortInPin(signal.value()) {
                 @Override
                 public Boolean value() {
-                    return pinSignal(signal.value());
+                    return pinSignal(portHnd, signal.value());
                 }
 
                 @Override
@@ -325,6 +629,11 @@ public class BasicSerial implements Serial {
                     removePinListener(this, listener);
                 }
 
+                @Override
+                public void setDebounce(Long stableMicros, Integer samples) {
+                    BasicSerial.this.setDebounce(signal, stableMicros, samples);
+                }
+
                 @Override
                 public String name() {
                     return signal.name();
@@ -332,6 +641,22 @@ public class BasicSerial implements Serial {
             };
 
             inputPins.put(signal.name(), pin);
+            if (debounceMicros[signal.value()] != 0 || debounceSamples[signal.value()] != 0) {
+                setDebounce(portHnd, signal.value(), debounceMicros[signal.value()], debounceSamples[signal.value()]);
+            }
+        }
+    }
+
+    /**
+     * Filter runs in native detection, so bounces do not reach listeners.
+     * Kept across reopening of port
+     */
+    private void setDebounce(InputSignal signal, Long stableMicros, Integer samples) {
+        LineDebounce.check(stableMicros, samples);
+        debounceMicros[signal.value()] = stableMicros;
+        debounceSamples[signal.value()] = samples;
+        if (isOpen()) {
+            setDebounce(portHnd, signal.value(), stableMicros, samples);
         }
     }
 
@@ -347,48 +672,339 @@ public class BasicSerial implements Serial {
         return portHnd;
     }
 
-    private native long openPort(String name);
+    String peerName() {
+        checkOpen();
+        return pseudoTerminalPeer(portHnd);
+    }
+
+    int descriptor() {
+        checkOpen();
+        return portDescriptor(portHnd);
+    }
+
+    void setNonBlocking(boolean flag) {
+        checkOpen();
+        setPortNonBlocking(portHnd, flag);
+    }
+
+    /**
+     * Starts dedicated reader which drains port into off heap ring,
+     * reads of "input()" are served from the ring afterwards.
+     * Can not be combined with reactor registration
+     * @param capacity ring size in bytes, rounded up to power of two
+     */
+    public synchronized void enableReadAhead(int capacity) {
+        checkOpen();
+        if (reactorKey != null) {
+            throw new IllegalStateException("Port is served by reactor");
+        }
+        if (readAhead != null) {
+            throw new IllegalStateException("Read ahead is already enabled");
+        }
+        final long hnd = portHnd;
+        ReadAhead current = new ReadAhead(capacity, "serial-read-ahead-" + name()) {
+            private long address;
+
+            @Override
+            protected boolean waitForData(long micros) {
+                return awaitReadable(hnd, micros);
+            }
+
+            @Override
+            protected int fill(ByteBuffer buffer, int offset, int size) {
+                //ring storage never changes, so it is resolved once
+                if (address == 0) {
+                    address = bufferAddress(buffer);
+                }
+                return readReadyAt(hnd, address + offset, size);
+            }
+        };
+        current.start();
+        readAhead = current;
+    }
+
+    /**
+     * Stops reader, bytes which were not read yet are dropped
+     */
+    public synchronized void disableReadAhead() {
+        ReadAhead current = readAhead;
+        if (current != null) {
+            readAhead = null;
+            current.stop();
+        }
+    }
+
+    /**
+     * @return active read ahead with ring statistics or null
+     */
+    public ReadAhead readAhead() {
+        return readAhead;
+    }
+
+    void setReactorKey(SerialReactor.Key key) {
+        this.reactorKey = key;
+    }
+
+    /**
+     * Reads without waiting, used when port is known to be ready
+     */
+    int readReady(ByteBuffer buffer) {
+        long start = metrics.start();
+        int position = buffer.position();
+        int total;
+        if (buffer.isDirect()) {
+            total = readReady(portHnd, buffer, position, buffer.remaining());
+        } else {
+            total = readReadyArray(portHnd, buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+        }
+        metrics.readDone(start, total);
+        return advance(buffer, position, total);
+    }
+
+    int writeReady(ByteBuffer buffer) {
+        long start = metrics.start();
+        int position = buffer.position();
+        int total;
+        if (buffer.isDirect()) {
+            total = writeReady(portHnd, buffer, position, buffer.remaining());
+        } else if (buffer.hasArray()) {
+            total = writeReadyArray(portHnd, buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+        } else {
+            total = writeReadyArray(portHnd, copyWindow(buffer), 0, buffer.remaining());
+        }
+        metrics.writeDone(start, total);
+        return advance(buffer, position, total);
+    }
+
+    static int[] inputSignalIds() {
+        InputSignal[] signals = InputSignal.values();
+        int[] ids = new int[signals.length];
+        for (int i = 0; i < signals.length; i++) {
+            ids[i] = signals[i].value();
+        }
+        return ids;
+    }
+
+    /**
+     * Blocking native wait pins virtual thread to its carrier,
+     * so virtual threads park until shared readiness waiter signals port
+     */
+    private boolean parkUntilReadable(long nanos) {
+        if (awaitReadable(portHnd, 0)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + nanos;
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            ReadinessWaiter waiter = ReadinessWaiter.shared();
+            if (waiter == null) {
+                return pollUntilReadable(left);
+            }
+            if (waiter.await(descriptor(), left) && awaitReadable(portHnd, 0)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Used without native reactor, readiness is noticed up to 1 millisecond late
+     */
+    private boolean pollUntilReadable(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long pause = MIN_PARK_NANOS;
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(pause, left));
+            if (awaitReadable(portHnd, 0)) {
+                return true;
+            }
+            pause = Math.min(pause * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    private int readBuffer(ByteBuffer buffer) {
+        if (DeviceExecution.onVirtualThread() && !parkUntilReadable(TimeUnit.MILLISECONDS.toNanos(readTimeout))) {
+            return 0;
+        }
+        int position = buffer.position();
+        int total;
+        if (buffer.isDirect()) {
+            total = read(portHnd, buffer, position, buffer.remaining());
+        } else {
+            total = readArray(portHnd, buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+        }
+        return advance(buffer, position, total);
+    }
+
+    private int writeBuffer(ByteBuffer buffer) {
+        int position = buffer.position();
+        int total;
+        if (buffer.isDirect()) {
+            total = write(portHnd, buffer, position, buffer.remaining());
+        } else if (buffer.hasArray()) {
+            total = writeArray(portHnd, buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+        } else {
+            total = writeArray(portHnd, copyWindow(buffer), 0, buffer.remaining());
+        }
+        return advance(buffer, position, total);
+    }
+
+    /**
+     * Read only heap buffers do not expose array, so only
+     * remaining part of them is copied
+     */
+    private static byte[] copyWindow(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    private static int advance(ByteBuffer buffer, int position, int total) {
+        if (total > 0) {
+            buffer.position(position + total);
+        }
+        return total;
+    }
+
+    /**
+     * Single native readv/writev for buffers with remaining data
+     */
+    private long transferVector(ByteBuffer[] buffers, int offset, int length, boolean write) {
+        ByteBuffer[] selected = new ByteBuffer[length];
+        int[] spans = new int[length * 2];
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer buffer = buffers[i];
+            if (buffer.hasRemaining()) {
+                selected[count] = buffer;
+                spans[count * 2] = buffer.position();
+                spans[count * 2 + 1] = buffer.remaining();
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long total = write ? writeVector(portHnd, selected, spans, count) : readVector(portHnd, selected, spans, count);
+        long left = total;
+        for (int i = 0; i < count && left > 0; i++) {
+            int part = (int) Math.min(left, spans[i * 2 + 1]);
+            selected[i].position(spans[i * 2] + part);
+            left = left - part;
+        }
+        return total;
+    }
+
+    private static boolean allDirect(ByteBuffer[] buffers, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!buffers[i].isDirect()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Natives receive port handle directly so no upcalls are required.
+     * Direct buffers are passed with position, heap buffers as arrays with offset
+     */
+
+    private static native long openPtyMaster();
+
+    private static native String pseudoTerminalPeer(long hnd);
+
+    private static native int portDescriptor(long hnd);
+
+    private static native void setPortNonBlocking(long hnd, boolean flag);
+
+    private static native boolean awaitReadable(long hnd, long micros);
+
+    private static native void setWatchMask(long hnd, int mask);
+
+    private static native void setDebounce(long hnd, int signal, long micros, int samples);
+
+    private static native void capture(long hnd, ByteBuffer buffer, int offset, int size, long periodNanos, long[] stats);
+
+    private static native void beginCapture(long hnd);
+
+    private static native void stopCapture(long hnd);
+
+    private static native void spiTransfer(long hnd, ByteBuffer data, int offset, int size, int wiring, long halfNanos);
+
+    private static native int readAtLeast(long hnd, ByteBuffer buffer, int offset, int size, int min, long micros);
+
+    private static native int readReady(long hnd, ByteBuffer buffer, int offset, int size);
+
+    private static native int readReadyAt(long hnd, long address, int size);
+
+    private static native int writeReady(long hnd, ByteBuffer buffer, int offset, int size);
+
+    private static native int readReadyArray(long hnd, byte[] array, int offset, int size);
+
+    private static native int writeReadyArray(long hnd, byte[] array, int offset, int size);
+
+    private static native long openPort(String name);
+
+    private static native void closePort(long hnd);
+
+    private static native void setPortBaud(long hnd, int baud);
+
+    private static native int portBaud(long hnd);
+
+    private static native void setPortBaudValue(long hnd, int baud);
+
+    private static native int portBaudValue(long hnd);
+
+    private static native void setPortBits(long hnd, int bits);
+
+    private static native int portBits(long hnd);
 
-    private native void closePort();
+    private static native void setPortStopBits(long hnd, int bits);
 
-    private native void setPortBaud(int baud);
+    private static native int portStopBits(long hnd);
 
-    private native int portBaud();
+    private static native void setPortParity(long hnd, int parity);
 
-    private native void setPortBits(int bits);
+    private static native int portParity(long hnd);
 
-    private native int portBits();
+    private static native void setPortFlowCtl(long hnd, int ctl);
 
-    private native void setPortStopBits(int bits);
+    private static native int portFlowCtl(long hnd);
 
-    private native int portStopBits();
+    private static native void setPortChar(long hnd, int id, byte value);
 
-    private native void setPortParity(int parity);
+    private static native byte portChar(long hnd, int id);
 
-    private native int portParity();
+    private static native void setPortReadTimeout(long hnd, long timeout);
 
-    private native void setPortFlowCtl(int ctl);
+    private static native int read(long hnd, ByteBuffer buffer, int offset, int size);
 
-    private native int portFlowCtl();
+    private static native int write(long hnd, ByteBuffer buffer, int offset, int size);
 
-    private native void setPortChar(int id, byte value);
+    private static native int readArray(long hnd, byte[] array, int offset, int size);
 
-    private native byte portChar(int id);
+    private static native int writeArray(long hnd, byte[] array, int offset, int size);
 
-    private native void setPortReadTimeout(long timeout);
+    private static native long readVector(long hnd, ByteBuffer[] buffers, int[] spans, int count);
 
-    private native int read(ByteBuffer buffer, int size);
+    private static native long writeVector(long hnd, ByteBuffer[] buffers, int[] spans, int count);
 
-    private native int write(ByteBuffer buffer, int size);
+    private static native void setPinSignal(long hnd, int sig, boolean value);
 
-    private native void setPinSignal(int sig, boolean value);
+    private static native boolean pinSignal(long hnd, int sig);
 
-    private native boolean pinSignal(int sig);
+    private static native void prepareToCheckSignals(long hnd, int[] signals);
 
-    private native void prepareToCheckSignals(int[] signals);
+    private static native long bufferAddress(ByteBuffer buffer);
 
-    private native void changedSignals(ByteBuffer changed);
+    private static native void changedSignals(long hnd, long address);
 
-    private native void terminateWaitForSignals();
+    private static native void terminateWaitForSignals(long hnd);
 
 }
@@ -20,7 +20,7 @@ package org.molasdin.io.serial;
  * Created by molasdin on 2/17/15.
  */
 public enum InputSignal {
-    CTS(4), DSR(5), DCD(6);
+    CTS(4), DSR(5), DCD(6), RI(7);
 
     private Integer value;
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debounce filter of line read from Java, follows native one so emulated
+ * lines are filtered same way as lines of real ports.
+ * Settings may be changed from any thread, filtering is done by watcher only
+ */
+final class LineDebounce {
+    static final int MAX_SAMPLES = 31;
+    //readings per stable time of line without majority filter
+    private static final int SETTLE_STEPS = 16;
+
+    private volatile long stableNanos;
+    private volatile int samples;
+    private int appliedSamples;
+    private int history;
+    private long nextSample;
+    private boolean pending;
+    private boolean candidate;
+    private long since;
+    private boolean reported;
+
+    static void check(Long stableMicros, Integer samples) {
+        if (stableMicros < 0) {
+            throw new IllegalArgumentException("Stable time should not be negative");
+        }
+        if (samples < 0 || samples > MAX_SAMPLES) {
+            throw new IllegalArgumentException("Samples should be within 0.." + MAX_SAMPLES);
+        }
+    }
+
+    void configure(long stableMicros, int samples) {
+        this.stableNanos = TimeUnit.MICROSECONDS.toNanos(stableMicros);
+        this.samples = samples;
+    }
+
+    boolean active() {
+        return stableNanos > 0 || samples > 1;
+    }
+
+    void reset(boolean reported) {
+        this.reported = reported;
+        appliedSamples = 0;
+        pending = false;
+    }
+
+    /**
+     * @param now time of reading
+     * @param bounced line changed since previous reading even if level is same
+     * @return true if reported level changed, its time is "since"
+     */
+    boolean filter(boolean raw, long now, boolean bounced) {
+        long stable = stableNanos;
+        int samples = this.samples;
+        if (stable <= 0 && samples <= 1) {
+            pending = false;
+            if (raw == reported) {
+                return false;
+            }
+            reported = raw;
+            since = now;
+            return true;
+        }
+        boolean level = raw;
+        if (samples > 1) {
+            int mask = (1 << samples) - 1;
+            if (appliedSamples != samples) {
+                appliedSamples = samples;
+                history = reported ? mask : 0;
+                nextSample = now;
+            }
+            if (now - nextSample < 0) {
+                return false;
+            }
+            nextSample = now + stable / samples;
+            history = ((history << 1) | (raw ? 1 : 0)) & mask;
+            int ones = Integer.bitCount(history);
+            //tie keeps reported level
+            level = ones * 2 == samples ? reported : ones * 2 > samples;
+        }
+        if (level == reported) {
+            pending = false;
+            return false;
+        }
+        if (!pending || candidate != level || (bounced && samples <= 1)) {
+            pending = true;
+            candidate = level;
+            since = now;
+        }
+        if (now - since < stable) {
+            return false;
+        }
+        pending = false;
+        reported = level;
+        return true;
+    }
+
+    boolean level() {
+        return reported;
+    }
+
+    long since() {
+        return since;
+    }
+
+    /**
+     * @return nanos until next reading is due, -1 if filter is settled
+     */
+    long settleNanos(long now) {
+        long stable = stableNanos;
+        int samples = this.samples;
+        long due;
+        if (samples > 1 && appliedSamples == samples) {
+            int mask = (1 << samples) - 1;
+            if (!pending && (history == 0 || history == mask)) {
+                return -1L;
+            }
+            due = nextSample;
+        } else if (stable > 0 && pending) {
+            due = Math.min(since + stable, now + stable / SETTLE_STEPS);
+        } else {
+            return -1L;
+        }
+        return Math.max(due - now, 0L);
+    }
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.serial;
+
+import org.molasdin.io.AbstractDeviceOutputChannel;
+import org.molasdin.io.DeviceOutputChannel;
+import org.molasdin.io.InPin;
+import org.molasdin.io.InputPinListener;
+import org.molasdin.io.OutPin;
+import org.molasdin.io.SignalsProcessor;
+import org.molasdin.io.capture.PinCapture;
+import org.molasdin.io.capture.PollingSampler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Linked pair of pseudo terminal ends.
+ * Data written to one end can be read from another one,
+ * so pair can be used instead of physical adapter.
+ *
+ * Pseudo terminals have no modem lines, they are emulated as null modem cable:
+ * DTR of one end drives DSR and DCD of another one, RTS drives CTS.
+ * Lines are raised when end is opened and dropped when it is closed.
+ * Kernel keeps only baud rate, stop bits, flow control and control characters
+ * of pseudo terminal, data bits and parity are kept by pair.
+ * With wire timing enabled writes are paced as if bytes were sent with configured
+ * baud rate and character format, otherwise data is passed at memory speed
+ */
+public class PseudoTerminal implements Closeable {
+
+    private static final int MASTER = 0;
+    private static final int SLAVE = 1;
+    private static final long CHUNK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SIGNALS_SLICE_MILLIS = 100L;
+
+    private final ModemLines lines = new ModemLines();
+    private final End master;
+    private final End slave;
+
+    private volatile DataBits dataBits = DataBits.CS8;
+    private volatile Parity parity = Parity.DISABLED;
+    private volatile boolean wireTiming = false;
+    private volatile long charNanos;
+
+    private PseudoTerminal() {
+        master = new End(this, MASTER, "/dev/ptmx", BasicSerial.openPseudoTerminal());
+        slave = new End(this, SLAVE, master.peerName());
+        try {
+            slave.open();
+        } catch (RuntimeException ex) {
+            try {
+                master.close();
+            } catch (IOException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+        refreshTiming(master);
+    }
+
+    public static PseudoTerminal open() {
+        return new PseudoTerminal();
+    }
+
+    public Serial master() {
+        return master;
+    }
+
+    public Serial slave() {
+        return slave;
+    }
+
+    /**
+     * Enables pacing of writes according to baud rate and character format
+     * of pair, configuration of either end applies to both of them
+     */
+    public void setWireTiming(Boolean flag) {
+        wireTiming = flag;
+    }
+
+    public Boolean wireTiming() {
+        return wireTiming;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (slave.isOpen()) {
+                slave.close();
+            }
+        } finally {
+            if (master.isOpen()) {
+                master.close();
+            }
+        }
+    }
+
+    /**
+     * Start, data, parity and stop bits of one character
+     */
+    private void refreshTiming(End end) {
+        int bits = 1 + dataBits.value() + (parity != Parity.DISABLED ? 1 : 0) + end.stopBits().value();
+        charNanos = TimeUnit.SECONDS.toNanos(bits) / end.baudRateValue();
+    }
+
+    /**
+     * Output lines of both ends, inputs of one end are read from outputs of another one
+     */
+    private static final class ModemLines {
+        private final boolean[] dtr = {true, true};
+        private final boolean[] rts = {true, true};
+        private final long[] dtrEdges = new long[2];
+        private final long[] rtsEdges = new long[2];
+        private final boolean[] woken = new boolean[2];
+        private long version = 0;
+
+        /**
+         * TXD carries data and break is not emulated, so only DTR and RTS are kept
+         */
+        synchronized void set(int end, OutputSignal signal, boolean value) {
+            if (signal == OutputSignal.DTR) {
+                if (dtr[end] != value) {
+                    dtrEdges[end]++;
+                }
+                dtr[end] = value;
+            } else if (signal == OutputSignal.RTS) {
+                if (rts[end] != value) {
+                    rtsEdges[end]++;
+                }
+                rts[end] = value;
+            } else {
+                return;
+            }
+            version++;
+            notifyAll();
+        }
+
+        synchronized boolean input(int end, InputSignal signal) {
+            int peer = 1 - end;
+            //ring indicator is not wired by null modem
+            if (signal == InputSignal.RI) {
+                return false;
+            }
+            return signal == InputSignal.CTS ? rts[peer] : dtr[peer];
+        }
+
+        /**
+         * Counts changes of input line like interrupt counters of real ports
+         */
+        synchronized long edges(int end, InputSignal signal) {
+            int peer = 1 - end;
+            if (signal == InputSignal.RI) {
+                return 0L;
+            }
+            return signal == InputSignal.CTS ? rtsEdges[peer] : dtrEdges[peer];
+        }
+
+        /**
+         * @return input levels of end, bit per signal id
+         */
+        synchronized int levels(int end) {
+            int levels = 0;
+            for (InputSignal signal : InputSignal.values()) {
+                if (input(end, signal)) {
+                    levels |= 1 << signal.value();
+                }
+            }
+            return levels;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        /**
+         * Waits for change of any line after "seen" version, wake up or timeout
+         * @return current version
+         */
+        synchronized long await(int end, long seen, long millis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + millis;
+            long left = millis;
+            while (version == seen && !woken[end] && left > 0) {
+                wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+            woken[end] = false;
+            return version;
+        }
+
+        synchronized void wake(int end) {
+            woken[end] = true;
+            notifyAll();
+        }
+    }
+
+    private static final class End extends BasicSerial {
+        private final PseudoTerminal pair;
+        private final int index;
+        private final Map<String, InPin> inputPins = new HashMap<>();
+        private final Map<String, OutPin> outputPins = new HashMap<>();
+        private DeviceOutputChannel pacedOutput;
+        private long busyUntil = System.nanoTime();
+
+        private final LineDebounce[] debounces = new LineDebounce[8];
+
+        /**
+         * Edges are replayed one per pass from counters, so pulses shorter than
+         * wake up of watcher are not lost. Debounced lines are read by time
+         * while they settle instead
+         */
+        private final SignalsProcessor signalsProcessor = new SignalsProcessor() {
+            private InputSignal[] watched = new InputSignal[0];
+            private boolean[] last = new boolean[0];
+            private long[] edges = new long[0];
+            private long[] owed = new long[0];
+            private long seen;
+            private long sequence;
+
+            @Override
+            protected void prepareToCheckSignals(int[] signals) {
+                watched = new InputSignal[signals.length];
+                last = new boolean[signals.length];
+                edges = new long[signals.length];
+                owed = new long[signals.length];
+                synchronized (pair.lines) {
+                    seen = pair.lines.version();
+                    for (int i = 0; i < signals.length; i++) {
+                        watched[i] = signalFor(signals[i]);
+                        if (watched[i] != null) {
+                            last[i] = pair.lines.input(index, watched[i]);
+                            edges[i] = pair.lines.edges(index, watched[i]);
+                            debounces[watched[i].value()].reset(last[i]);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            protected void analyzeSignals() {
+                if (!hasOwed()) {
+                    long settle = settleNanos(System.nanoTime());
+                    long millis = settle < 0 ? SIGNALS_SLICE_MILLIS
+                            : (settle + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+                    if (millis > 0) {
+                        try {
+                            seen = pair.lines.await(index, seen, millis);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+                long now = System.nanoTime();
+                for (int i = 0; i < watched.length; i++) {
+                    if (watched[i] == null) {
+                        continue;
+                    }
+                    LineDebounce debounce = debounces[watched[i].value()];
+                    long count = pair.lines.edges(index, watched[i]);
+                    long delta = count - edges[i];
+                    edges[i] = count;
+                    if (debounce.active()) {
+                        owed[i] = 0;
+                        if (debounce.filter(pair.lines.input(index, watched[i]), now, delta > 0)) {
+                            last[i] = debounce.level();
+                            report(watched[i], last[i], debounce.since());
+                        }
+                        continue;
+                    }
+                    owed[i] += delta;
+                    if (owed[i] > 0) {
+                        owed[i]--;
+                        last[i] = !last[i];
+                        report(watched[i], last[i], now);
+                    }
+                    debounce.reset(last[i]);
+                }
+            }
+
+            private void report(InputSignal signal, boolean level, long nanos) {
+                change(signal.value(), level, nanos, ++sequence);
+            }
+
+            private long settleNanos(long now) {
+                long result = -1L;
+                for (InputSignal signal : watched) {
+                    if (signal == null) {
+                        continue;
+                    }
+                    long left = debounces[signal.value()].settleNanos(now);
+                    if (left >= 0 && (result < 0 || left < result)) {
+                        result = left;
+                    }
+                }
+                return result;
+            }
+
+            private boolean hasOwed() {
+                for (long entry : owed) {
+                    if (entry > 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            protected void terminateSignalsWait() {
+                pair.lines.wake(index);
+            }
+
+            @Override
+            protected int[] supportedSignals() {
+                return inputSignalIds();
+            }
+        };
+
+        End(PseudoTerminal pair, int index, String name, long portHnd) {
+            super(name, portHnd);
+            this.pair = pair;
+            this.index = index;
+            createPins();
+        }
+
+        End(PseudoTerminal pair, int index, String name) {
+            super(name);
+            this.pair = pair;
+            this.index = index;
+            createPins();
+        }
+
+        @Override
+        public void open() {
+            if (isOpen()) {
+                return;
+            }
+            super.open();
+            raiseLines(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            checkOpen();
+            signalsProcessor.stop();
+            raiseLines(false);
+            try {
+                if (pacedOutput != null) {
+                    pacedOutput.close();
+                }
+            } finally {
+                super.close();
+            }
+        }
+
+        @Override
+        public void setBaudRate(BaudRate baudRate) {
+            super.setBaudRate(baudRate);
+            pair.refreshTiming(this);
+        }
+
+        @Override
+        public void setBaudRateValue(Integer baudRate) {
+            super.setBaudRateValue(baudRate);
+            pair.refreshTiming(this);
+        }
+
+        @Override
+        public void setDataBits(DataBits dataBits) {
+            checkOpen();
+            pair.dataBits = dataBits;
+            pair.refreshTiming(this);
+        }
+
+        @Override
+        public DataBits dataBits() {
+            checkOpen();
+            return pair.dataBits;
+        }
+
+        @Override
+        public void setStopBits(StopBits stopBits) {
+            super.setStopBits(stopBits);
+            pair.refreshTiming(this);
+        }
+
+        @Override
+        public void setParity(Parity parity) {
+            checkOpen();
+            pair.parity = parity;
+            pair.refreshTiming(this);
+        }
+
+        @Override
+        public Parity parity() {
+            checkOpen();
+            return pair.parity;
+        }
+
+        @Override
+        public InPin inputPinFor(InputSignal signal) {
+            checkOpen();
+            return inputPins.get(signal.name());
+        }
+
+        @Override
+        public OutPin outputPinFor(OutputSignal signal) {
+            checkOpen();
+            return outputPins.get(signal.name());
+        }
+
+        @Override
+        public Map<String, InPin> inputPins() {
+            checkOpen();
+            return inputPins;
+        }
+
+        @Override
+        public Map<String, OutPin> outputPins() {
+            checkOpen();
+            return outputPins;
+        }
+
+        /**
+         * Lines of pair are emulated, so they are sampled from Java
+         */
+        @Override
+        public PinCapture capture(ByteBuffer buffer, Long periodNanos) {
+            checkOpen();
+            return startCapture(buffer, periodNanos, new PollingSampler() {
+                @Override
+                protected int levels() {
+                    return pair.lines.levels(index);
+                }
+            });
+        }
+
+        @Override
+        public Boolean hasPin(String name) {
+            checkOpen();
+            return inputPins.containsKey(name) || outputPins.containsKey(name);
+        }
+
+        @Override
+        protected SignalsProcessor signalsProcessor() {
+            return signalsProcessor;
+        }
+
+        @Override
+        public DeviceOutputChannel output() {
+            checkOpen();
+            if (pacedOutput == null) {
+                final DeviceOutputChannel raw = super.output();
+                pacedOutput = new AbstractDeviceOutputChannel() {
+                    @Override
+                    protected Integer writeImpl(ByteBuffer buffer) {
+                        try {
+                            return pair.wireTiming ? paced(raw, buffer) : raw.write(buffer);
+                        } catch (IOException ex) {
+                            return -1;
+                        }
+                    }
+
+                    @Override
+                    protected Long writeImpl(ByteBuffer[] buffers, int offset, int length) {
+                        if (pair.wireTiming) {
+                            return super.writeImpl(buffers, offset, length);
+                        }
+                        try {
+                            return raw.write(buffers, offset, length);
+                        } catch (IOException ex) {
+                            return -1L;
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            //failure of raw channel is thrown to caller
+                            raw.close();
+                        }
+                    }
+
+                    @Override
+                    protected void closeImpl() {
+                        pacedOutput = null;
+                    }
+
+                    @Override
+                    public boolean isOpen() {
+                        return pacedOutput != null;
+                    }
+                };
+            }
+            return pacedOutput;
+        }
+
+        /**
+         * Writes in chunks of about one millisecond of line time, each chunk
+         * is released when previous one would have left the wire
+         */
+        private int paced(DeviceOutputChannel raw, ByteBuffer buffer) throws IOException {
+            int limit = buffer.limit();
+            int total = 0;
+            try {
+                while (buffer.hasRemaining()) {
+                    long perChar = pair.charNanos;
+                    int chunk = (int) Math.max(1L, Math.min(buffer.remaining(), CHUNK_NANOS / perChar));
+                    waitUntil(busyUntil);
+                    buffer.limit(buffer.position() + chunk);
+                    int result = raw.write(buffer);
+                    buffer.limit(limit);
+                    if (result <= 0) {
+                        return total == 0 ? result : total;
+                    }
+                    busyUntil = Math.max(System.nanoTime(), busyUntil) + result * perChar;
+                    total += result;
+                }
+            } finally {
+                buffer.limit(limit);
+            }
+            return total;
+        }
+
+        private static void waitUntil(long deadline) {
+            long left;
+            while ((left = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+        }
+
+        private void createPins() {
+            signalsProcessor.setMetrics(metrics());
+            for (final OutputSignal signal : OutputSignal.values()) {
+                outputPins.put(signal.name(), new OutPin() {
+                    @Override
+                    public void setValue(Boolean value) {
+                        pair.lines.set(index, signal, value);
+                    }
+
+                    @Override
+                    public String name() {
+                        return signal.name();
+                    }
+                });
+            }
+            for (final InputSignal signal : InputSignal.values()) {
+                debounces[signal.value()] = new LineDebounce();
+                inputPins.put(signal.name(), new InPin() {
+                    @Override
+                    public Boolean value() {
+                        return pair.lines.input(index, signal);
+                    }
+
+                    @Override
+                    public void addListener(InputPinListener listener) {
+                        signalsProcessor.addPinListener(listener, signal.value());
+                    }
+
+                    @Override
+                    public void removeListener(InputPinListener listener) {
+                        signalsProcessor.removePinListener(signal.value(), listener);
+                    }
+
+                    @Override
+                    public void setDebounce(Long stableMicros, Integer samples) {
+                        LineDebounce.check(stableMicros, samples);
+                        debounces[signal.value()].configure(stableMicros, samples);
+                        pair.lines.wake(index);
+                    }
+
+                    @Override
+                    public String name() {
+                        return signal.name();
+                    }
+                });
+            }
+        }
+
+        private void raiseLines(boolean value) {
+            pair.lines.set(index, OutputSignal.DTR, value);
+            pair.lines.set(index, OutputSignal.RTS, value);
+        }
+
+        private void checkOpen() {
+            if (!isOpen()) {
+                throw new IllegalStateException("Port is closed");
+            }
+        }
+
+        private static InputSignal signalFor(int id) {
+            for (InputSignal signal : InputSignal.values()) {
+                if (signal.value() == id) {
+                    return signal;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import org.molasdin.io.DeviceExecution;
+import org.molasdin.io.util.DirectBufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks virtual threads until their ports become readable.
+ * One platform thread waits on native reactor for all parked threads
+ * and unparks owner of every ready descriptor, so virtual threads
+ * neither pin carriers nor poll ports.
+ */
+final class ReadinessWaiter implements Runnable {
+
+    private static final int READY_CAPACITY = 64;
+
+    private static final Object INIT_LOCK = new Object();
+    private static volatile ReadinessWaiter shared;
+    private static volatile boolean unavailable = false;
+
+    private final long hnd;
+    private final ByteBuffer ready;
+    private final Deque<Integer> freeTokens = new ArrayDeque<>();
+    private int tokens = 0;
+    private Thread[] waiting = new Thread[16];
+    private int[] descriptors = new int[16];
+    private volatile boolean broken = false;
+
+    private ReadinessWaiter(long hnd) {
+        this.hnd = hnd;
+        this.ready = DirectBufferPool.shared().acquire(READY_CAPACITY * 8);
+        this.ready.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return started waiter or null when native reactor is not available
+     */
+    static ReadinessWaiter shared() {
+        ReadinessWaiter current = shared;
+        if (current != null) {
+            return current.broken ? null : current;
+        }
+        if (unavailable) {
+            return null;
+        }
+        synchronized (INIT_LOCK) {
+            if (shared == null && !unavailable) {
+                try {
+                    ReadinessWaiter waiter = new ReadinessWaiter(SerialReactor.createReactor());
+                    Thread thread = new Thread(waiter, "serial-readiness");
+                    thread.setDaemon(true);
+                    thread.start();
+                    shared = waiter;
+                } catch (Exception ex) {
+                    unavailable = true;
+                }
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Parks current thread until descriptor is readable, timeout expires or thread is interrupted
+     * @return true if readiness was signalled, it may be spurious
+     */
+    boolean await(int descriptor, long nanos) {
+        int token = enlist(descriptor);
+        try {
+            long deadline = System.nanoTime() + nanos;
+            while (isWaiting(token)) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || broken || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, left);
+            }
+            return true;
+        } finally {
+            delist(token);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                int total = SerialReactor.waitReady(hnd, ready, READY_CAPACITY, -1L);
+                for (int i = 0; i < total; i++) {
+                    signal(ready.getInt(i * 8));
+                }
+            }
+        } catch (Exception ex) {
+            broken = true;
+            DeviceExecution.INSTANCE.reportFailure(ex);
+            wakeAll();
+        }
+    }
+
+    private synchronized int enlist(int descriptor) {
+        int token;
+        if (freeTokens.isEmpty()) {
+            token = tokens++;
+        } else {
+            token = freeTokens.poll();
+        }
+        if (token >= waiting.length) {
+            waiting = Arrays.copyOf(waiting, waiting.length * 2);
+            descriptors = Arrays.copyOf(descriptors, descriptors.length * 2);
+        }
+        waiting[token] = Thread.currentThread();
+        descriptors[token] = descriptor;
+        SerialReactor.modifyPort(hnd, descriptor, token, SerialReactor.OP_READ);
+        return token;
+    }
+
+    private synchronized boolean isWaiting(int token) {
+        return waiting[token] != null;
+    }
+
+    private synchronized void delist(int token) {
+        if (waiting[token] != null) {
+            waiting[token] = null;
+            SerialReactor.removePort(hnd, descriptors[token]);
+        }
+        freeTokens.add(token);
+    }
+
+    /**
+     * Descriptor leaves readiness set on first event,
+     * level triggered wait would report it again otherwise
+     */
+    private synchronized void signal(int token) {
+        Thread thread = token < waiting.length ? waiting[token] : null;
+        if (thread != null) {
+            waiting[token] = null;
+            SerialReactor.removePort(hnd, descriptors[token]);
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private synchronized void wakeAll() {
+        for (Thread thread : waiting) {
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
@@ -34,6 +34,28 @@ public interface Serial extends InputDevice, OutputDevice,
     void setBaudRate(BaudRate baudRate);
     BaudRate baudRate();
 
+    /**
+     * Sets exact rate in bits per second, including non standard
+     * and high rates (460800, 921600, 3000000, ...).
+     * Default implementation accepts only rates of "BaudRate"
+     * @param baudRate rate in bits per second
+     */
+    default void setBaudRateValue(Integer baudRate) {
+        BaudRate rate = BaudRate.fromValue(baudRate);
+        if (rate == null) {
+            throw new IllegalArgumentException("Baud rate " + baudRate + " is not supported");
+        }
+        setBaudRate(rate);
+    }
+
+    /**
+     * @return rate actually applied by driver, which may differ from requested one
+     */
+    default Integer baudRateValue() {
+        BaudRate rate = baudRate();
+        return rate == null ? null : rate.value();
+    }
+
     void setDataBits(DataBits dataBits);
     DataBits dataBits();
 
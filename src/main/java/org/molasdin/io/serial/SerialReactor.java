@@ -0,0 +1,377 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.serial;
+
+import org.molasdin.io.DeviceExecution;
+import org.molasdin.io.LibraryLoader;
+import org.molasdin.io.util.DirectBufferPool;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Serves many open ports from a fixed number of event loop threads.
+ * Port descriptors are registered in native readiness sets (epoll)
+ * and readiness is dispatched to handlers on loop threads.
+ * Registered ports are switched to non blocking mode, handlers
+ * should use "Key.read" and "Key.write" which never wait.
+ */
+public class SerialReactor implements Closeable {
+
+    public static final int OP_READ = 1;
+    public static final int OP_WRITE = 2;
+
+    private static final int READY_CAPACITY = 256;
+
+    private final EventLoop[] loops;
+    private int next = 0;
+
+    static {
+        LibraryLoader loader = new LibraryLoader("serial");
+        loader.load();
+    }
+
+    public SerialReactor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SerialReactor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+        loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    /**
+     * Registers open port with interest in some readiness operations
+     * @param serial  native port
+     * @param ops     combination of OP_READ and OP_WRITE
+     * @param handler invoked on event loop thread
+     * @return registration key
+     */
+    public Key register(Serial serial, int ops, ReadyHandler handler) {
+        if (!(serial instanceof BasicSerial)) {
+            throw new IllegalArgumentException("Only native ports can be registered");
+        }
+        BasicSerial port = (BasicSerial) serial;
+        if (port.readAhead() != null) {
+            throw new IllegalStateException("Port uses read ahead");
+        }
+        EventLoop loop;
+        synchronized (loops) {
+            loop = loops[next];
+            next = (next + 1) % loops.length;
+        }
+        return loop.register(port, ops, handler);
+    }
+
+    /**
+     * @return amount of event loop threads
+     */
+    public int threads() {
+        return loops.length;
+    }
+
+    @Override
+    public void close() {
+        for (EventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    /**
+     * Receives readiness notifications
+     */
+    public interface ReadyHandler {
+        void ready(Key key, int readyOps);
+
+        /**
+         * Called on event loop thread when "ready" throws, loop keeps serving other keys.
+         * By default failure is passed to "DeviceExecution.reportFailure"
+         */
+        default void failed(Key key, RuntimeException ex) {
+            DeviceExecution.INSTANCE.reportFailure(ex);
+        }
+    }
+
+    /**
+     * Registration of port in reactor
+     */
+    public static final class Key {
+        private final EventLoop loop;
+        private final BasicSerial serial;
+        private final ReadyHandler handler;
+        private final int token;
+        private final int descriptor;
+        private volatile int interestOps;
+        private volatile boolean valid = true;
+        private volatile Object attachment;
+
+        private Key(EventLoop loop, BasicSerial serial, ReadyHandler handler, int token, int ops) {
+            this.loop = loop;
+            this.serial = serial;
+            this.handler = handler;
+            this.token = token;
+            this.descriptor = serial.descriptor();
+            this.interestOps = ops;
+        }
+
+        public Serial serial() {
+            return serial;
+        }
+
+        public int interestOps() {
+            return interestOps;
+        }
+
+        public void interestOps(int ops) {
+            checkValid();
+            interestOps = ops;
+            modifyPort(loop.hnd, descriptor, token, ops);
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public void attach(Object attachment) {
+            this.attachment = attachment;
+        }
+
+        public Object attachment() {
+            return attachment;
+        }
+
+        /**
+         * Reads available data without waiting
+         * @return amount of bytes read, 0 if nothing is available, -1 on error
+         */
+        public int read(ByteBuffer buffer) {
+            checkValid();
+            return serial.readReady(buffer);
+        }
+
+        /**
+         * Writes as much as port accepts without waiting
+         * @return amount of bytes written, -1 on error
+         */
+        public int write(ByteBuffer buffer) {
+            checkValid();
+            return serial.writeReady(buffer);
+        }
+
+        public void cancel() {
+            loop.deregister(this);
+        }
+
+        private void checkValid() {
+            if (!valid) {
+                throw new IllegalStateException("Key is cancelled");
+            }
+        }
+    }
+
+    private static final class EventLoop implements Runnable {
+        private final long hnd;
+        private final Thread thread;
+        private final ByteBuffer ready;
+        private final Deque<Integer> freeTokens = new ArrayDeque<>();
+        private int tokens = 0;
+        private volatile Key[] keys = new Key[16];
+        private volatile boolean terminateFlag = false;
+        private boolean closed = false;
+        private boolean broken = false;
+        private boolean exited = false;
+        private boolean abandoned = false;
+
+        EventLoop(int id) {
+            hnd = createReactor();
+            ready = DirectBufferPool.shared().acquire(READY_CAPACITY * 8);
+            ready.order(ByteOrder.nativeOrder());
+            thread = new Thread(this, "serial-reactor-" + id);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        synchronized Key register(BasicSerial serial, int ops, ReadyHandler handler) {
+            if (closed || broken) {
+                throw new IllegalStateException(closed ? "Reactor is closed" : "Event loop has failed");
+            }
+            int token;
+            if (freeTokens.isEmpty()) {
+                token = tokens++;
+            } else {
+                token = freeTokens.poll();
+            }
+            Key key = new Key(this, serial, handler, token, ops);
+            Key[] tmp = keys;
+            if (token >= tmp.length) {
+                tmp = Arrays.copyOf(tmp, tmp.length * 2);
+            } else {
+                tmp = tmp.clone();
+            }
+            tmp[token] = key;
+            keys = tmp;
+            serial.setNonBlocking(true);
+            serial.setReactorKey(key);
+            addPort(hnd, key.descriptor, token, ops);
+            return key;
+        }
+
+        synchronized void deregister(Key key) {
+            if (!key.valid) {
+                return;
+            }
+            key.valid = false;
+            removePort(hnd, key.descriptor);
+            key.serial.setNonBlocking(false);
+            key.serial.setReactorKey(null);
+            Key[] tmp = keys.clone();
+            tmp[key.token] = null;
+            keys = tmp;
+            freeTokens.add(key.token);
+        }
+
+        @Override
+        public void run() {
+            try {
+                loop();
+            } finally {
+                exited();
+            }
+        }
+
+        private void loop() {
+            while (!terminateFlag) {
+                int total;
+                try {
+                    total = waitReady(hnd, ready, READY_CAPACITY, -1L);
+                } catch (Exception ex) {
+                    broken(ex);
+                    return;
+                }
+                Key[] current = keys;
+                for (int i = 0; i < total; i++) {
+                    int token = ready.getInt(i * 8);
+                    int ops = ready.getInt(i * 8 + 4);
+                    Key key = token < current.length ? current[token] : null;
+                    if (key == null || !key.valid) {
+                        continue;
+                    }
+                    int readyOps = ops & key.interestOps;
+                    if (readyOps == 0) {
+                        continue;
+                    }
+                    try {
+                        key.handler.ready(key, readyOps);
+                    } catch (RuntimeException ex) {
+                        fail(key, ex);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Ports of failed loop are not served anymore,
+         * their keys are cancelled so owners see them invalid
+         */
+        private void broken(Exception ex) {
+            synchronized (this) {
+                broken = true;
+            }
+            DeviceExecution.INSTANCE.reportFailure(ex);
+            cancelKeys();
+        }
+
+        private void cancelKeys() {
+            for (Key key : keys) {
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+
+        private void fail(Key key, RuntimeException ex) {
+            try {
+                key.handler.failed(key, ex);
+            } catch (RuntimeException failure) {
+                //failing report must not stop the loop
+            }
+        }
+
+        /**
+         * Native reactor is freed by loop thread itself
+         * when it outlives "close", so it never waits on freed handle
+         */
+        private synchronized void exited() {
+            exited = true;
+            if (abandoned) {
+                release();
+            }
+        }
+
+        private void release() {
+            closeReactor(hnd);
+            DirectBufferPool.shared().release(ready);
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                terminateFlag = true;
+            }
+            wakeup(hnd);
+            try {
+                thread.join(5000L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            cancelKeys();
+            synchronized (this) {
+                if (exited) {
+                    release();
+                } else {
+                    abandoned = true;
+                }
+            }
+        }
+    }
+
+    static native long createReactor();
+
+    private static native void closeReactor(long hnd);
+
+    private static native void addPort(long hnd, int fd, int token, int ops);
+
+    static native void modifyPort(long hnd, int fd, int token, int ops);
+
+    static native void removePort(long hnd, int fd);
+
+    static native int waitReady(long hnd, ByteBuffer ready, int capacity, long timeout);
+
+    private static native void wakeup(long hnd);
+}
@@ -16,9 +16,18 @@
 
 package org.molasdin.io.serial.manager;
 
+import org.molasdin.io.metrics.DeviceMetricsMBean;
+import org.molasdin.io.metrics.DeviceMetricsView;
+import org.molasdin.io.metrics.MetricsSnapshot;
 import org.molasdin.io.serial.BasicSerial;
 import org.molasdin.io.serial.Serial;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,10 +41,15 @@ import java.util.Map;
  * Provides access to serial devices.
  * Devices are cached.
  * If some of devices are left open they will be closed on JVM exit
+ * Metrics of every device are registered as MBean
+ * "org.molasdin.io:type=Serial,name=&lt;device name&gt;" when device is created,
+ * whether port is open or not, and are unregistered by "close"
  */
 public enum SerialManager {
     INSTANCE;
 
+    private static final String METRICS_DOMAIN = "org.molasdin.io";
+
     private Map<String, Serial> devices = new HashMap<>();
     private Boolean hasHook = false;
 
@@ -44,7 +58,7 @@ public enum SerialManager {
             return devices.get(name);
         }
 
-        Serial serial = new BasicSerial(name);
+        BasicSerial serial = new BasicSerial(name);
         try {
             serial.open();
             serial.close();
@@ -53,6 +67,7 @@ public enum SerialManager {
         }
 
         devices.put(name, serial);
+        registerMetrics(serial);
         if(!hasHook){
             hasHook = true;
             Runtime.getRuntime().addShutdownHook(new Thread(){
@@ -65,9 +80,27 @@ public enum SerialManager {
         return serial;
     }
 
+    /**
+     * @return current metrics of all created devices
+     */
+    public List<MetricsSnapshot> snapshots(){
+        List<MetricsSnapshot> result = new ArrayList<>(devices.size());
+        for(Serial serial: devices.values()){
+            if(serial instanceof BasicSerial){
+                result.add(((BasicSerial) serial).metrics().snapshot());
+            }
+        }
+        return result;
+    }
+
     public void close(){
         List<Exception> exceptions = new LinkedList<>();
         for(String name: devices.keySet()){
+            try {
+                unregisterMetrics(name);
+            } catch (JMException ex) {
+                exceptions.add(ex);
+            }
             Serial serial = devices.get(name);
             if(serial.isOpen()){
                 try {
@@ -85,6 +118,31 @@ public enum SerialManager {
         }
     }
 
+    private void registerMetrics(BasicSerial serial){
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = metricsName(serial.name());
+            if(!server.isRegistered(objectName)){
+                server.registerMBean(new StandardMBean(new DeviceMetricsView(serial.metrics()),
+                        DeviceMetricsMBean.class), objectName);
+            }
+        } catch (JMException ex) {
+            throw new RuntimeException("Metrics can not be registered", ex);
+        }
+    }
+
+    private void unregisterMetrics(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = metricsName(name);
+        if(server.isRegistered(objectName)){
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    private static ObjectName metricsName(String name) throws JMException {
+        return new ObjectName(METRICS_DOMAIN + ":type=Serial,name=" + ObjectName.quote(name));
+    }
+
 
 
 }
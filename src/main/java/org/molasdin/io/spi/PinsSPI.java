@@ -17,11 +17,13 @@
 package org.molasdin.io.spi;
 
 import org.molasdin.io.*;
+import org.molasdin.io.util.DirectBufferPool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by molasdin on 3/25/15.
@@ -29,18 +31,27 @@ import java.util.Map;
 
 /**
  * Very simple implementation
- * Supports only Master mode without "Slave Select"
+ * Supports only Master mode with optional active low "Slave Select",
+ * InvertedOutputPin makes it active high
+ * When all clocked pins, possibly inverted, are lines of one device which supports
+ * "SpiBitBang", whole transfer is clocked natively
  */
 public class PinsSPI implements SPI {
 
     private OutPin sck;
     private OutPin mosi;
     private InPin miso;
+    private OutPin cs;
+    private boolean selected;
     private Boolean master = true;
     private Boolean cpol = false;
     private Boolean cpha = false;
-    private long sckPeriod = 1L;
-    private ByteBuffer buffer;
+    private long halfNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    private ByteBuffer received = ByteBuffer.allocate(0);
+    private boolean pending;
+    private SpiBitBang engine;
+    private SpiLines lines;
+    private Boolean nativeTransfer = true;
 
     private Map<String, Pin> pins = new HashMap<>(3);
 
@@ -48,23 +59,91 @@ public class PinsSPI implements SPI {
     private DeviceOutputChannel output;
 
     public PinsSPI(OutPin sck, OutPin mosi, InPin miso) {
+        this(sck, mosi, miso, null);
+    }
+
+    /**
+     * @param cs active low slave select, may be null
+     */
+    public PinsSPI(OutPin sck, OutPin mosi, InPin miso, OutPin cs) {
         this.sck = sck;
         this.mosi = mosi;
         this.miso = miso;
+        this.cs = cs;
         pins.put(sck.name(), sck);
         pins.put(mosi.name(), mosi);
         pins.put(miso.name(), miso);
+        if (cs != null) {
+            pins.put(cs.name(), cs);
+        }
+        resolveEngine();
         init();
     }
 
+    /**
+     * Finds device lines behind pins and inverted wrappers
+     */
+    private void resolveEngine() {
+        boolean[] inverted = new boolean[3];
+        Pin[] lines = {sck, mosi, miso};
+        Device device = null;
+        for (int i = 0; i < lines.length; i++) {
+            Pin pin = lines[i];
+            while (pin instanceof InvertedOutputPin || pin instanceof InvertedInputPin) {
+                pin = pin instanceof InvertedOutputPin ? ((InvertedOutputPin) pin).original()
+                        : ((InvertedInputPin) pin).original();
+                inverted[i] = !inverted[i];
+            }
+            if (!(pin instanceof DevicePin)) {
+                return;
+            }
+            Device current = ((DevicePin) pin).device();
+            if (!(current instanceof SpiBitBang) || (device != null && device != current)) {
+                return;
+            }
+            device = current;
+            lines[i] = pin;
+        }
+        this.engine = (SpiBitBang) device;
+        this.lines = new SpiLines(((DevicePin) lines[0]).signal(), inverted[0],
+                ((DevicePin) lines[1]).signal(), inverted[1], ((DevicePin) lines[2]).signal(), inverted[2]);
+    }
+
     private void init(){
         sck.setValue(cpol);
         mosi.setValue(false);
+        if (cs != null) {
+            cs.setValue(!selected);
+        }
     }
 
+    /**
+     * @param period time between clock edges in millis
+     */
     @Override
     public void setSCKPeriod(Long period) {
-        this.sckPeriod = period;
+        this.halfNanos = TimeUnit.MILLISECONDS.toNanos(period);
+    }
+
+    /**
+     * Same as "setSCKPeriod" with sub millisecond resolution
+     */
+    public void setSCKPeriodNanos(Long nanos) {
+        this.halfNanos = nanos;
+    }
+
+    /**
+     * Enables native transfer when pins allow it, enabled by default
+     */
+    public void setNativeTransfer(Boolean flag) {
+        this.nativeTransfer = flag;
+    }
+
+    /**
+     * @return true if transfers are clocked natively
+     */
+    public Boolean isNativeTransfer() {
+        return nativeTransfer && engine != null;
     }
 
     @Override
@@ -86,6 +165,7 @@ public class PinsSPI implements SPI {
 
     @Override
     public void close() throws IOException {
+        select(false);
         if(input != null){
             input.close();
         }
@@ -102,13 +182,11 @@ public class PinsSPI implements SPI {
             input = new AbstractDeviceInputChannel() {
                 @Override
                 protected Integer readImpl(ByteBuffer data) {
-                    if(master){
-                        if(buffer != null){
-                            int total = data.remaining();
-                            data.put(buffer);
-                            buffer = null;
-                            return total;
-                        }
+                    if(master && pending){
+                        int total = received.remaining();
+                        data.put(received);
+                        pending = false;
+                        return total;
                     }
                     return 0;
                 }
@@ -160,7 +238,14 @@ public class PinsSPI implements SPI {
                 protected Integer writeImpl(ByteBuffer data) {
                     if(master){
                         int total = data.remaining();
-                        PinsSPI.this.write(data);
+                        if (received.capacity() < total) {
+                            received = ByteBuffer.allocate(total);
+                        }
+                        received.clear();
+                        received.limit(total);
+                        transfer(data, received);
+                        received.flip();
+                        pending = true;
                         return total;
                     }
                     return 0;
@@ -175,28 +260,127 @@ public class PinsSPI implements SPI {
         return output;
     }
 
-    private void write(ByteBuffer data){
-        buffer = ByteBuffer.allocate(data.remaining());
-        while (data.remaining() > 0){
-            byte item = data.get();
-            int cnt = 0;
-            while(cnt < 8){
-                mosi.setValue((item & 0x80) != 0);
-                item = (byte)((item & 0xFF) << 1);
-                sck.setValue(true);
-                Sleep.sleepMillis(sckPeriod);
-
-                if(miso.value()){
-                    item = (byte)(item | 0x01);
-                } else {
-                    item = (byte)(item & 0xFE);
+    @Override
+    public void transfer(ByteBuffer tx, ByteBuffer rx) {
+        transfer(tx, rx, false);
+    }
+
+    @Override
+    public void transfer(ByteBuffer tx, ByteBuffer rx, Boolean keepSelected) {
+        if (!master) {
+            throw new IllegalStateException("Only master mode is supported");
+        }
+        int size = tx.remaining();
+        if (rx != null && rx.remaining() < size) {
+            throw new IllegalArgumentException("Receive buffer is smaller than transmitted data");
+        }
+        select(true);
+        try {
+            if (isNativeTransfer()) {
+                transferNative(tx, rx, size);
+            } else {
+                transferPins(tx, rx, size);
+            }
+        } finally {
+            if (!keepSelected) {
+                select(false);
+            }
+        }
+    }
+
+    private void select(boolean flag) {
+        if (cs != null && selected != flag) {
+            cs.setValue(!flag);
+        }
+        selected = flag;
+    }
+
+    /**
+     * Mirrors native engine: with CPHA MOSI changes on leading edge,
+     * otherwise it is set half period before first leading edge and then on trailing edges.
+     * MISO is sampled at the end of active half in both cases
+     */
+    private void transferPins(ByteBuffer tx, ByteBuffer rx, int size) {
+        if (size == 0) {
+            return;
+        }
+        int txStart = tx.position();
+        int rxStart = rx != null ? rx.position() : 0;
+        boolean idle = cpol;
+        long half = halfNanos;
+        //edges follow fixed grid, so time of pin calls does not stretch clock
+        long edge = System.nanoTime();
+        if (!cpha) {
+            mosi.setValue((tx.get(txStart) & 0x80) != 0);
+            edge = wait(edge, half);
+        }
+        for (int i = 0; i < size; i++) {
+            int out = tx.get(txStart + i) & 0xFF;
+            int in = 0;
+            for (int shift = 7; shift >= 0; shift--) {
+                if (cpha) {
+                    mosi.setValue(((out >> shift) & 1) != 0);
                 }
-                sck.setValue(false);
-                Sleep.sleepMillis(sckPeriod);
-                cnt ++;
+                sck.setValue(!idle);
+                edge = wait(edge, half);
+                in = (in << 1) | (miso.value() ? 1 : 0);
+                sck.setValue(idle);
+                if (!cpha) {
+                    //data for next bit is set on trailing edge
+                    if (shift > 0) {
+                        mosi.setValue(((out >> (shift - 1)) & 1) != 0);
+                    } else if (i + 1 < size) {
+                        mosi.setValue((tx.get(txStart + i + 1) & 0x80) != 0);
+                    }
+                }
+                edge = wait(edge, half);
+            }
+            if (rx != null) {
+                rx.put(rxStart + i, (byte) in);
             }
-            buffer.put(item);
         }
-        buffer.flip();
+        tx.position(txStart + size);
+        if (rx != null) {
+            rx.position(rxStart + size);
+        }
+    }
+
+    private static long wait(long edge, long half) {
+        if (half != 0) {
+            edge += half;
+            Sleep.sleepUntil(edge);
+        }
+        return edge;
+    }
+
+    /**
+     * Clocks data through pooled direct buffer, large transfers are split in pooled chunks
+     */
+    private void transferNative(ByteBuffer tx, ByteBuffer rx, int size) {
+        int txStart = tx.position();
+        int rxStart = rx != null ? rx.position() : 0;
+        DirectBufferPool pool = DirectBufferPool.shared();
+        for (int done = 0; done < size; ) {
+            int chunk = Math.min(size - done, DirectBufferPool.DEFAULT_MAX_SIZE);
+            ByteBuffer direct = pool.acquire(chunk);
+            try {
+                for (int i = 0; i < chunk; i++) {
+                    direct.put(i, tx.get(txStart + done + i));
+                }
+                engine.spiTransfer(direct, lines, cpol, cpha, halfNanos);
+                if (rx != null) {
+                    for (int i = 0; i < chunk; i++) {
+                        rx.put(rxStart + done + i, direct.get(i));
+                    }
+                }
+            } finally {
+                pool.release(direct);
+            }
+            done += chunk;
+        }
+        tx.position(txStart + size);
+        if (rx != null) {
+            rx.position(rxStart + size);
+        }
     }
 }
@@ -19,6 +19,9 @@ package org.molasdin.io.spi;
 import org.molasdin.io.*;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 
 /**
  * Created by molasdin on 3/25/15.
@@ -30,4 +33,52 @@ public interface SPI extends InputDevice, OutputDevice, Openable, Closeable {
 
         void setSCKPeriod(Long period);
 
+        /**
+         * Full duplex transfer of "tx" remaining bytes, received bytes are put into "rx"
+         * which may be same buffer or null to discard them. Slave is selected for transfer only
+         */
+        default void transfer(ByteBuffer tx, ByteBuffer rx) {
+                transfer(tx, rx, false);
+        }
+
+        /**
+         * Same as "transfer" but with "keepSelected" slave select is held after transfer,
+         * so following transfers continue same transaction. Transfer of empty buffer without
+         * "keepSelected" ends transaction.
+         * Default implementation writes "tx" to output and then reads same amount from input,
+         * slave select is left to device
+         */
+        default void transfer(ByteBuffer tx, ByteBuffer rx, Boolean keepSelected) {
+                int start = tx.position();
+                int size = tx.remaining();
+                if (rx != null && rx != tx && rx.remaining() < size) {
+                        throw new IllegalArgumentException("Receive buffer is smaller than transmitted data");
+                }
+                try {
+                        while (tx.hasRemaining()) {
+                                output().write(tx);
+                        }
+                        ByteBuffer target;
+                        if (rx == null) {
+                                target = ByteBuffer.allocate(size);
+                        } else if (rx == tx) {
+                                target = rx.duplicate();
+                                target.position(start);
+                        } else {
+                                target = rx.duplicate();
+                                target.limit(target.position() + size);
+                        }
+                        while (target.hasRemaining()) {
+                                if (input().read(target) <= 0) {
+                                        throw new IOException("Device read failed");
+                                }
+                        }
+                        if (rx != null && rx != tx) {
+                                rx.position(target.position());
+                        }
+                } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                }
+        }
+
 }
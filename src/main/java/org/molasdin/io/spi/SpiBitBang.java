@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Device which clocks whole SPI transfer on its own lines in one native call
+ */
+public interface SpiBitBang {
+
+    /**
+     * Exchanges remaining bytes of "data" in place, most significant bit first.
+     * MISO is sampled at end of active half of clock period
+     * @param data direct buffer, its position is not changed
+     * @param halfPeriodNanos time between clock edges, zero gives fastest clock
+     */
+    void spiTransfer(ByteBuffer data, SpiLines lines, Boolean cpol, Boolean cpha, Long halfPeriodNanos);
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.spi;
+
+/**
+ * Lines of device used by native SPI transfer and their polarity on wire
+ */
+public final class SpiLines {
+
+    private final int sck;
+    private final int mosi;
+    private final int miso;
+    private final boolean sckInverted;
+    private final boolean mosiInverted;
+    private final boolean misoInverted;
+
+    public SpiLines(int sck, boolean sckInverted, int mosi, boolean mosiInverted, int miso, boolean misoInverted) {
+        this.sck = sck;
+        this.mosi = mosi;
+        this.miso = miso;
+        this.sckInverted = sckInverted;
+        this.mosiInverted = mosiInverted;
+        this.misoInverted = misoInverted;
+    }
+
+    public int sck() {
+        return sck;
+    }
+
+    public int mosi() {
+        return mosi;
+    }
+
+    public int miso() {
+        return miso;
+    }
+
+    public boolean sckInverted() {
+        return sckInverted;
+    }
+
+    public boolean mosiInverted() {
+        return mosiInverted;
+    }
+
+    public boolean misoInverted() {
+        return misoInverted;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free byte ring for exactly one producer and one consumer thread.
+ * Storage is direct memory so producer may fill it natively:
+ * "writeOffset" and "writableRegion" describe contiguous free part of "storage",
+ * "commit" publishes filled bytes.
+ */
+public final class ByteRing {
+
+    private final ByteBuffer storage;
+    private final ByteBuffer writeView;
+    private final ByteBuffer readView;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param storage direct buffer with power of two capacity
+     */
+    public ByteRing(ByteBuffer storage) {
+        int capacity = storage.capacity();
+        if (!storage.isDirect() || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Storage should be direct with power of two capacity");
+        }
+        this.storage = storage;
+        this.writeView = storage.duplicate();
+        this.readView = storage.duplicate();
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return nearest power of two not less than "size"
+     */
+    public static int capacityFor(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        if (size > (1 << 30)) {
+            throw new IllegalArgumentException("Ring is too big");
+        }
+        return 1 << (32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    public ByteBuffer storage() {
+        return storage;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return amount of bytes available to consumer
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Producer side. Offset in storage where next byte is written
+     */
+    public int writeOffset() {
+        return (int) (tail.get() & mask);
+    }
+
+    /**
+     * Producer side. Amount of free bytes which follow "writeOffset" without wrap
+     */
+    public int writableRegion() {
+        long currentTail = tail.get();
+        int free = capacity() - (int) (currentTail - head.get());
+        int offset = (int) (currentTail & mask);
+        return Math.min(free, capacity() - offset);
+    }
+
+    /**
+     * Producer side. Publishes bytes written into storage
+     */
+    public void commit(int count) {
+        tail.set(tail.get() + count);
+    }
+
+    /**
+     * Producer side. Copies as much of "source" as fits
+     * @return amount of bytes copied
+     */
+    public int offer(ByteBuffer source) {
+        int total = 0;
+        while (source.hasRemaining()) {
+            int region = Math.min(writableRegion(), source.remaining());
+            if (region == 0) {
+                break;
+            }
+            int offset = writeOffset();
+            int limit = source.limit();
+            source.limit(source.position() + region);
+            writeView.limit(offset + region).position(offset);
+            writeView.put(source);
+            source.limit(limit);
+            commit(region);
+            total += region;
+        }
+        return total;
+    }
+
+    /**
+     * Consumer side. Copies available bytes into "target"
+     * @return amount of bytes copied
+     */
+    public int poll(ByteBuffer target) {
+        long currentHead = head.get();
+        int available = (int) (tail.get() - currentHead);
+        int total = Math.min(available, target.remaining());
+        int left = total;
+        while (left > 0) {
+            int offset = (int) (currentHead & mask);
+            int part = Math.min(left, capacity() - offset);
+            readView.limit(offset + part).position(offset);
+            target.put(readView);
+            currentHead += part;
+            left -= part;
+        }
+        if (total > 0) {
+            head.set(currentHead);
+        }
+        return total;
+    }
+
+    /**
+     * Consumer side. Drops all available bytes
+     */
+    public void clear() {
+        head.set(tail.get());
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.util;
+
+import org.molasdin.io.DeviceExecution;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of direct buffers grouped by power of two size classes.
+ * Acquired buffer is cleared, has limit equal to requested size and
+ * big endian order, its content is not zeroed.
+ * Requests larger than biggest class are allocated directly and
+ * are not pooled.
+ *
+ * Every acquired buffer should be released exactly once.
+ * With leak detection enabled pool hands out views of pooled memory,
+ * reports views which were garbage collected without release to "LeakReporter"
+ * and returns their memory back to pool. Detection is enabled for shared
+ * pool with "org.molasdin.io.pool.leakDetection" system property.
+ * Without detection second release of buffer which is still pooled is rejected,
+ * but release of buffer which was already handed out again can not be noticed
+ * and makes two users share memory.
+ */
+public final class DirectBufferPool {
+
+    public static final int DEFAULT_MIN_SIZE = 64;
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_CLASS = 32;
+
+    private static final int THREAD_CACHE_DEPTH = 4;
+    private static final int THREAD_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * Receives buffers which were collected without release
+     */
+    public interface LeakReporter {
+        /**
+         * @param site stack trace of acquisition
+         */
+        void leaked(int capacity, Throwable site);
+    }
+
+    private static final LeakReporter LOG_REPORTER = new LeakReporter() {
+        @Override
+        public void leaked(int capacity, Throwable site) {
+            Logger.getLogger(DirectBufferPool.class.getName()).log(Level.WARNING,
+                    "Direct buffer of " + capacity + " bytes was not released", site);
+        }
+    };
+
+    private final int minShift;
+    private final int maxShift;
+    private final int buffersPerClass;
+    private final Queue<ByteBuffer>[] classes;
+    private final AtomicInteger[] pooled;
+    private final ThreadLocal<ThreadCache> threadCache;
+    private final LeakDetector detector;
+    private volatile LeakReporter leakReporter = LOG_REPORTER;
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    private static final class Shared {
+        static final DirectBufferPool INSTANCE = new DirectBufferPool(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE,
+                DEFAULT_BUFFERS_PER_CLASS, true, Boolean.getBoolean("org.molasdin.io.pool.leakDetection"));
+    }
+
+    /**
+     * @return pool used by library internally
+     */
+    public static DirectBufferPool shared() {
+        return Shared.INSTANCE;
+    }
+
+    public DirectBufferPool() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_BUFFERS_PER_CLASS, true, false);
+    }
+
+    /**
+     * @param minSize         smallest size class, rounded up to power of two
+     * @param maxSize         biggest pooled size class, rounded up to power of two
+     * @param buffersPerClass amount of free buffers kept per size class
+     * @param threadCache     keep few free buffers per thread to avoid shared queues
+     * @param leakDetection   track acquired buffers and report unreleased ones
+     */
+    public DirectBufferPool(int minSize, int maxSize, int buffersPerClass,
+                            boolean threadCache, boolean leakDetection) {
+        if (minSize < 1 || maxSize < minSize || buffersPerClass < 0) {
+            throw new IllegalArgumentException("Invalid pool configuration");
+        }
+        this.minShift = shiftFor(minSize);
+        this.maxShift = shiftFor(maxSize);
+        this.buffersPerClass = buffersPerClass;
+        int total = maxShift - minShift + 1;
+        @SuppressWarnings("unchecked")
+        Queue<ByteBuffer>[] queues = (Queue<ByteBuffer>[]) new Queue<?>[total];
+        classes = queues;
+        pooled = new AtomicInteger[total];
+        for (int i = 0; i < total; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+            pooled[i] = new AtomicInteger();
+        }
+        this.threadCache = threadCache ? new ThreadLocal<ThreadCache>() {
+            @Override
+            protected ThreadCache initialValue() {
+                return new ThreadCache(classes.length);
+            }
+        } : null;
+        this.detector = leakDetection ? new LeakDetector() : null;
+    }
+
+    /**
+     * @param size required amount of bytes
+     * @return direct buffer with at least "size" capacity
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size should not be negative");
+        }
+        int index = classFor(size);
+        ByteBuffer block;
+        if (index < 0) {
+            block = ByteBuffer.allocateDirect(size);
+            allocated.increment();
+        } else {
+            if (detector != null) {
+                detector.recover();
+            }
+            block = take(index);
+            if (block == null) {
+                block = ByteBuffer.allocateDirect(1 << (index + minShift));
+                allocated.increment();
+            } else {
+                reused.increment();
+            }
+        }
+        block.clear();
+        block.limit(size);
+        block.order(ByteOrder.BIG_ENDIAN);
+        if (detector != null && index >= 0) {
+            return detector.track(block);
+        }
+        return block;
+    }
+
+    /**
+     * Reports leaks to "reporter" instead of logging them as warnings
+     */
+    public void setLeakReporter(LeakReporter reporter) {
+        this.leakReporter = reporter != null ? reporter : LOG_REPORTER;
+    }
+
+    /**
+     * Returns buffer to pool. Buffers which do not belong to any size class are dropped
+     * @throws IllegalStateException if buffer is already pooled
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros(capacity) - minShift;
+        if (index < 0 || index >= classes.length) {
+            return;
+        }
+        put(index, detector != null ? detector.untrack(buffer) : buffer);
+    }
+
+    /**
+     * @return amount of buffers allocated by pool
+     */
+    public long allocated() {
+        return allocated.sum();
+    }
+
+    /**
+     * @return amount of acquisitions served from pooled buffers
+     */
+    public long reused() {
+        return reused.sum();
+    }
+
+    /**
+     * @return amount of buffers collected without release, 0 without leak detection
+     */
+    public long leaked() {
+        return detector != null ? detector.leaked.get() : 0L;
+    }
+
+    /**
+     * @return amount of acquired and not yet released buffers, -1 without leak detection
+     */
+    public int outstanding() {
+        return detector != null ? detector.outstanding() : -1;
+    }
+
+    private ByteBuffer take(int index) {
+        ThreadCache cache = threadCache();
+        if (cache != null) {
+            ByteBuffer[] slots = cache.slots[index];
+            for (int i = slots.length - 1; i >= 0; i--) {
+                ByteBuffer entry = slots[i];
+                if (entry != null) {
+                    slots[i] = null;
+                    cache.bytes -= entry.capacity();
+                    return entry;
+                }
+            }
+        }
+        ByteBuffer block = classes[index].poll();
+        if (block != null) {
+            pooled[index].decrementAndGet();
+        }
+        return block;
+    }
+
+    private void put(int index, ByteBuffer block) {
+        if (detector == null && isPooled(index, block)) {
+            throw new IllegalStateException("Buffer is released twice");
+        }
+        ThreadCache cache = threadCache();
+        if (cache != null) {
+            ByteBuffer[] slots = cache.slots[index];
+            if (cache.bytes + block.capacity() <= THREAD_CACHE_BYTES) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (slots[i] == null) {
+                        slots[i] = block;
+                        cache.bytes += block.capacity();
+                        return;
+                    }
+                }
+            }
+        }
+        if (pooled[index].incrementAndGet() > buffersPerClass) {
+            pooled[index].decrementAndGet();
+            return;
+        }
+        classes[index].offer(block);
+    }
+
+    /**
+     * Looks for buffer among free ones of calling thread and of shared queue
+     */
+    private boolean isPooled(int index, ByteBuffer block) {
+        ThreadCache cache = threadCache();
+        if (cache != null) {
+            for (ByteBuffer entry : cache.slots[index]) {
+                if (entry == block) {
+                    return true;
+                }
+            }
+        }
+        for (ByteBuffer entry : classes[index]) {
+            if (entry == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Virtual and other short lived threads would take their cached buffers
+     * away from pool on exit, they use shared queues only
+     */
+    private ThreadCache threadCache() {
+        if (threadCache == null || DeviceExecution.onVirtualThread()) {
+            return null;
+        }
+        return threadCache.get();
+    }
+
+    private int classFor(int size) {
+        int shift = shiftFor(size);
+        if (shift > maxShift) {
+            return -1;
+        }
+        return Math.max(shift, minShift) - minShift;
+    }
+
+    private static int shiftFor(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Keeps weak references to handed out views, pooled memory
+     * is referenced strongly by record so it survives view collection
+     */
+    private final class LeakDetector {
+        private final ReferenceQueue<ByteBuffer> queue = new ReferenceQueue<>();
+        private final Map<Integer, List<Lease>> leases = new HashMap<>();
+        private final AtomicLong leaked = new AtomicLong();
+        private int count = 0;
+
+        ByteBuffer track(ByteBuffer block) {
+            ByteBuffer view = block.duplicate();
+            Lease lease = new Lease(view, block, queue);
+            int id = System.identityHashCode(view);
+            synchronized (leases) {
+                List<Lease> entries = leases.get(id);
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                    leases.put(id, entries);
+                }
+                entries.add(lease);
+                count++;
+            }
+            return view;
+        }
+
+        ByteBuffer untrack(ByteBuffer view) {
+            int id = System.identityHashCode(view);
+            synchronized (leases) {
+                List<Lease> entries = leases.get(id);
+                if (entries != null) {
+                    for (int i = 0; i < entries.size(); i++) {
+                        Lease lease = entries.get(i);
+                        if (lease.get() == view) {
+                            removeLease(id, entries, i);
+                            lease.clear();
+                            return lease.block;
+                        }
+                    }
+                }
+            }
+            throw new IllegalStateException("Buffer is released twice or does not belong to pool");
+        }
+
+        /**
+         * Reports collected views and returns their memory to pool
+         */
+        void recover() {
+            Lease lease;
+            while ((lease = (Lease) queue.poll()) != null) {
+                synchronized (leases) {
+                    List<Lease> entries = leases.get(lease.id);
+                    int index = entries != null ? entries.indexOf(lease) : -1;
+                    if (index < 0) {
+                        continue;
+                    }
+                    removeLease(lease.id, entries, index);
+                }
+                leaked.incrementAndGet();
+                int capacity = lease.block.capacity();
+                leakReporter.leaked(capacity, lease.site);
+                put(Integer.numberOfTrailingZeros(capacity) - minShift, lease.block);
+            }
+        }
+
+        int outstanding() {
+            synchronized (leases) {
+                return count;
+            }
+        }
+
+        private void removeLease(int id, List<Lease> entries, int index) {
+            entries.remove(index);
+            if (entries.isEmpty()) {
+                leases.remove(id);
+            }
+            count--;
+        }
+    }
+
+    /**
+     * Free buffers of one thread, bounded by depth per class and by total size
+     */
+    private static final class ThreadCache {
+        private final ByteBuffer[][] slots;
+        private int bytes;
+
+        ThreadCache(int classes) {
+            slots = new ByteBuffer[classes][THREAD_CACHE_DEPTH];
+        }
+    }
+
+    private static final class Lease extends WeakReference<ByteBuffer> {
+        private final ByteBuffer block;
+        private final int id;
+        private final Throwable site;
+
+        Lease(ByteBuffer view, ByteBuffer block, ReferenceQueue<ByteBuffer> queue) {
+            super(view, queue);
+            this.block = block;
+            this.id = System.identityHashCode(view);
+            this.site = new Throwable("Acquired here");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+public class AbstractDeviceInputChannelTest {
+
+    /**
+     * Device which can not wait for data, it becomes readable at "readyAt"
+     */
+    private static class PolledChannel extends AbstractDeviceInputChannel {
+        final long readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+        int reads;
+
+        @Override
+        protected Integer readImpl(ByteBuffer buffer) {
+            reads++;
+            if (System.nanoTime() < readyAt) {
+                return 0;
+            }
+            int count = buffer.remaining();
+            buffer.position(buffer.limit());
+            return count;
+        }
+
+        @Override
+        protected void closeImpl() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+
+    @Test
+    public void testExactModePausesWithoutWait() throws Exception {
+        PolledChannel channel = new PolledChannel();
+        channel.setExactMode(true);
+        channel.setExactDelay(1000L);
+        Assert.assertEquals(4, channel.read(ByteBuffer.allocate(4)));
+        //about one read per millisecond, spinning would take thousands
+        Assert.assertTrue("Reads " + channel.reads, channel.reads < 100);
+    }
+
+    @Test
+    public void testMinBytesPollsWithoutWait() throws Exception {
+        PolledChannel channel = new PolledChannel();
+        channel.setExactDelay(1000L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        Assert.assertEquals(4, channel.read(ByteBuffer.allocate(4), 4, deadline));
+        Assert.assertTrue("Reads " + channel.reads, channel.reads < 100);
+    }
+
+    @Test
+    public void testReadinessWithoutDataEndsRead() throws Exception {
+        PolledChannel channel = new PolledChannel() {
+            @Override
+            protected boolean awaitsData() {
+                return true;
+            }
+        };
+        long start = System.nanoTime();
+        Assert.assertEquals(0, channel.read(ByteBuffer.allocate(4), 4, start + TimeUnit.SECONDS.toNanos(1)));
+        Assert.assertEquals(1, channel.reads);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
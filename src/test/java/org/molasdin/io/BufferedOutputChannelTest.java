@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.molasdin.io.serial.PseudoTerminal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BufferedOutputChannelTest {
+
+    /**
+     * Accepts at most "accept" bytes per write, negative value fails writes
+     */
+    private static class LimitedChannel extends AbstractDeviceOutputChannel {
+        final ByteBuffer received = ByteBuffer.allocate(256);
+        volatile int accept = Integer.MAX_VALUE;
+
+        @Override
+        protected Integer writeImpl(ByteBuffer buffer) {
+            int limit = accept;
+            if (limit < 0) {
+                return -1;
+            }
+            int count = Math.min(limit, buffer.remaining());
+            synchronized (received) {
+                for (int i = 0; i < count; i++) {
+                    received.put(buffer.get());
+                }
+            }
+            return count;
+        }
+
+        int received() {
+            synchronized (received) {
+                return received.position();
+            }
+        }
+
+        @Override
+        protected void closeImpl() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+
+    @Test
+    public void testMaxDelay() throws Exception {
+        try (PseudoTerminal terminal = PseudoTerminal.open()) {
+            BufferedOutputChannel channel = new BufferedOutputChannel(terminal.master().output(), 64);
+            channel.setMaxDelay(TimeUnit.MILLISECONDS.toMicros(20));
+            long start = System.nanoTime();
+            Assert.assertEquals(3, channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+            Assert.assertEquals(3, channel.staged());
+            DeviceInputChannel input = terminal.slave().input();
+            input.setExactMode(true);
+            ByteBuffer in = ByteBuffer.allocateDirect(3);
+            input.read(in);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertFalse(in.hasRemaining());
+            Assert.assertTrue("Data arrived after " + elapsed + " millis", elapsed >= 15);
+            Assert.assertEquals(0, channel.staged());
+            Assert.assertEquals(1, channel.writes());
+        }
+    }
+
+    @Test
+    public void testPartialFlushIsRescheduled() throws Exception {
+        LimitedChannel target = new LimitedChannel();
+        target.accept = 0;
+        BufferedOutputChannel channel = new BufferedOutputChannel(target, 64);
+        channel.setMaxDelay(TimeUnit.MILLISECONDS.toMicros(5));
+        channel.write(ByteBuffer.wrap(new byte[5]));
+        //first timed flush writes nothing
+        Thread.sleep(20);
+        Assert.assertEquals(5, channel.staged());
+        target.accept = Integer.MAX_VALUE;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (channel.staged() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(0, channel.staged());
+        Assert.assertEquals(5, target.received());
+        channel.close();
+    }
+
+    @Test
+    public void testTimedFailureIsThrown() throws Exception {
+        LimitedChannel target = new LimitedChannel();
+        target.accept = -1;
+        BufferedOutputChannel channel = new BufferedOutputChannel(target, 64);
+        channel.setMaxDelay(TimeUnit.MILLISECONDS.toMicros(5));
+        channel.write(ByteBuffer.wrap(new byte[3]));
+        Thread.sleep(30);
+        try {
+            channel.write(ByteBuffer.wrap(new byte[1]));
+            Assert.fail("Failure of timed flush should be thrown");
+        } catch (IOException ex) {
+            //expected
+        }
+        Assert.assertEquals(1, channel.writes());
+        //failed writes are not counted
+        Assert.assertEquals(-1, channel.write(ByteBuffer.wrap(new byte[64])));
+        Assert.assertEquals(1, channel.writes());
+        target.accept = Integer.MAX_VALUE;
+        Assert.assertEquals(3, channel.flush());
+        channel.close();
+    }
+
+    @Test
+    public void testStalledPortDoesNotDelayOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stalled = new CountDownLatch(1);
+        AbstractDeviceOutputChannel blocking = new LimitedChannel() {
+            @Override
+            protected Integer writeImpl(ByteBuffer buffer) {
+                stalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.writeImpl(buffer);
+            }
+        };
+        LimitedChannel target = new LimitedChannel();
+        BufferedOutputChannel first = new BufferedOutputChannel(blocking, 64);
+        BufferedOutputChannel second = new BufferedOutputChannel(target, 64);
+        first.setMaxDelay(TimeUnit.MILLISECONDS.toMicros(1));
+        second.setMaxDelay(TimeUnit.MILLISECONDS.toMicros(5));
+        try {
+            first.write(ByteBuffer.wrap(new byte[3]));
+            Assert.assertTrue(stalled.await(1, TimeUnit.SECONDS));
+            second.write(ByteBuffer.wrap(new byte[3]));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (target.received() != 3 && System.nanoTime() < deadline) {
+                Thread.sleep(2);
+            }
+            Assert.assertEquals(3, target.received());
+        } finally {
+            release.countDown();
+        }
+        first.close();
+        second.close();
+    }
+}
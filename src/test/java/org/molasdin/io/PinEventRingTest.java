@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PinEventRingTest {
+
+    @Test
+    public void testDropOldest() {
+        PinEventRing ring = new PinEventRing(4, 4, PinEventPolicy.DROP_OLDEST);
+        Assert.assertTrue(ring.offer(true, 0L, 0L));
+        for (int i = 1; i < 6; i++) {
+            Assert.assertFalse(ring.offer(i % 2 == 0, i, i));
+        }
+        Assert.assertEquals(2, ring.dropped());
+        Assert.assertEquals(Arrays.asList(2L, 3L, 4L, 5L), sequences(ring));
+        //drained ring is scheduled again by next event
+        Assert.assertTrue(ring.offer(true, 6L, 6L));
+    }
+
+    @Test
+    public void testCoalesce() {
+        PinEventRing ring = new PinEventRing(4, 4, PinEventPolicy.COALESCE);
+        for (int i = 0; i < 4; i++) {
+            ring.offer(i % 2 == 0, i, i);
+        }
+        //edge which does not fit removes itself with previous one
+        ring.offer(true, 4L, 4L);
+        Assert.assertEquals(2, ring.dropped());
+        //repeated level only refreshes last event
+        ring.offer(false, 5L, 5L);
+        ring.offer(false, 6L, 6L);
+        Assert.assertEquals(3, ring.dropped());
+        List<Boolean> values = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        PinEvent event = ring.event();
+        while (ring.poll(event)) {
+            values.add(event.value());
+            sequences.add(event.sequence());
+        }
+        Assert.assertEquals(Arrays.asList(true, false, true, false), values);
+        Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 6L), sequences);
+    }
+
+    @Test
+    public void testBlockIsReleasedByClose() throws Exception {
+        final PinEventRing ring = new PinEventRing(4, 2, PinEventPolicy.BLOCK);
+        ring.offer(true, 0L, 0L);
+        ring.offer(false, 1L, 1L);
+        Thread producer = new Thread(() -> ring.offer(true, 2L, 2L));
+        producer.start();
+        producer.join(50L);
+        Assert.assertTrue("Producer should wait for free slot", producer.isAlive());
+        ring.close();
+        producer.join(1000L);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertEquals(1, ring.dropped());
+        Assert.assertEquals(Arrays.asList(1L, 2L), sequences(ring));
+    }
+
+    private static List<Long> sequences(PinEventRing ring) {
+        List<Long> result = new ArrayList<>();
+        PinEvent event = ring.event();
+        while (ring.poll(event)) {
+            result.add(event.sequence());
+        }
+        return result;
+    }
+}
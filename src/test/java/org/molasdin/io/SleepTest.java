@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+public class SleepTest {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void testSpinSlice() {
+        long spin = Sleep.spinNanos();
+        Assert.assertTrue(spin >= TimeUnit.MICROSECONDS.toNanos(5));
+        Assert.assertTrue(spin <= TimeUnit.MICROSECONDS.toNanos(500));
+    }
+
+    @Test
+    public void testParksBulkOfWait() {
+        long cpu = THREADS.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        Sleep.sleepMillis(50);
+        long elapsed = System.nanoTime() - start;
+        cpu = THREADS.getCurrentThreadCpuTime() - cpu;
+        Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(50));
+        //only last slice is spun
+        Assert.assertTrue("cpu " + cpu, cpu < TimeUnit.MILLISECONDS.toNanos(15));
+    }
+
+    @Test
+    public void testDeadlinesDoNotDrift() {
+        long period = TimeUnit.MILLISECONDS.toNanos(1);
+        long start = System.nanoTime();
+        long deadline = start;
+        for (int i = 0; i < 50; i++) {
+            deadline += period;
+            Sleep.sleepUntil(deadline);
+            Assert.assertTrue(System.nanoTime() - deadline >= 0);
+        }
+        long elapsed = System.nanoTime() - start;
+        Assert.assertTrue(elapsed >= 50 * period);
+        Assert.assertTrue("elapsed " + elapsed, elapsed < 50 * period + TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testInterrupted() {
+        Thread.currentThread().interrupt();
+        try {
+            long cpu = THREADS.getCurrentThreadCpuTime();
+            long start = System.nanoTime();
+            Sleep.sleepMillis(50);
+            long elapsed = System.nanoTime() - start;
+            cpu = THREADS.getCurrentThreadCpuTime() - cpu;
+            Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(50));
+            Assert.assertTrue("cpu " + cpu, cpu < TimeUnit.MILLISECONDS.toNanos(15));
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
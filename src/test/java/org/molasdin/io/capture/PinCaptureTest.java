@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.molasdin.io.DeviceWithInputPins;
+import org.molasdin.io.InPin;
+import org.molasdin.io.InputPinListener;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PinCaptureTest {
+
+    @Test
+    public void testPolling() throws Exception {
+        final AtomicInteger levels = new AtomicInteger();
+        PinCapture capture = PinCapture.start("test", Collections.singletonMap("CTS", 4),
+                ByteBuffer.allocateDirect(1024), TimeUnit.MICROSECONDS.toNanos(100), new PollingSampler() {
+                    @Override
+                    protected int levels() {
+                        return levels.get();
+                    }
+                });
+        Thread.sleep(20);
+        levels.set(1 << 4);
+        Thread.sleep(20);
+        levels.set(0);
+        Thread.sleep(20);
+        capture.stop();
+        Assert.assertTrue(capture.isDone());
+        Assert.assertEquals(3, capture.records());
+        Assert.assertEquals(0, capture.levels(0));
+        Assert.assertEquals(1 << 4, capture.levels(1));
+        Assert.assertEquals(0, capture.levels(2));
+        long runs = 0;
+        for (int i = 0; i < capture.records(); i++) {
+            runs += capture.run(i);
+        }
+        Assert.assertEquals(capture.samples(), runs);
+    }
+
+    @Test
+    public void testDefaultCapture() throws Exception {
+        final AtomicBoolean high = new AtomicBoolean();
+        final Map<String, InPin> pins = new LinkedHashMap<>();
+        pins.put("LOW", pin("LOW", new AtomicBoolean()));
+        pins.put("HIGH", pin("HIGH", high));
+        DeviceWithInputPins device = new DeviceWithInputPins() {
+            @Override
+            public Map<String, InPin> inputPins() {
+                return pins;
+            }
+
+            @Override
+            public void activatePinListeners() {
+            }
+
+            @Override
+            public void stopPinListeners() {
+            }
+
+            @Override
+            public String name() {
+                return "memory";
+            }
+
+            @Override
+            public Boolean hasPin(String name) {
+                return pins.containsKey(name);
+            }
+        };
+        PinCapture capture = device.capture(ByteBuffer.allocateDirect(1024), TimeUnit.MICROSECONDS.toNanos(100));
+        Thread.sleep(20);
+        high.set(true);
+        Thread.sleep(20);
+        capture.stop();
+        Assert.assertEquals(Integer.valueOf(1), capture.lines().get("HIGH"));
+        Assert.assertEquals(2, capture.records());
+        Assert.assertEquals(0, capture.levels(0));
+        Assert.assertEquals(1 << 1, capture.levels(1));
+    }
+
+    private static InPin pin(final String name, final AtomicBoolean value) {
+        return new InPin() {
+            @Override
+            public Boolean value() {
+                return value.get();
+            }
+
+            @Override
+            public void addListener(InputPinListener listener) {
+            }
+
+            @Override
+            public void removeListener(InputPinListener listener) {
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    public void testStopRightAfterStart() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            PinCapture capture = PinCapture.start("test", Collections.singletonMap("CTS", 4),
+                    ByteBuffer.allocateDirect(1024), TimeUnit.SECONDS.toNanos(10), new PollingSampler() {
+                        @Override
+                        protected int levels() {
+                            return 0;
+                        }
+                    });
+            capture.stop();
+            Assert.assertTrue(capture.await(1000L));
+        }
+    }
+}
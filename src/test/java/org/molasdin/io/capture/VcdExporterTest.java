@@ -0,0 +1,56 @@
+package org.molasdin.io.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Export of records written by fake sampler
+ */
+public class VcdExporterTest {
+
+    @Test
+    public void testExport() throws Exception {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        lines.put("CTS", 4);
+        lines.put("DSR", 5);
+        PinCapture capture = PinCapture.start("test", lines, ByteBuffer.allocateDirect(64), 1000L,
+                new PinCapture.Sampler() {
+                    @Override
+                    public void sample(ByteBuffer buffer, long periodNanos, long[] stats) {
+                        buffer.order(ByteOrder.nativeOrder());
+                        record(buffer, 3, 0);
+                        record(buffer, 2, 1 << 4);
+                        record(buffer, 5, (1 << 4) | (1 << 5));
+                        stats[0] = buffer.position();
+                        stats[1] = 10;
+                        stats[3] = 10 * periodNanos;
+                    }
+
+                    @Override
+                    public void stop() {
+                    }
+                });
+        Assert.assertTrue(capture.await(5000L));
+        Assert.assertEquals(3, capture.records());
+        Assert.assertEquals(2, capture.run(1));
+
+        StringWriter out = new StringWriter();
+        VcdExporter.export(capture, out);
+        String dump = out.toString();
+        Assert.assertTrue(dump.contains("$var wire 1 ! CTS $end"));
+        Assert.assertTrue(dump.contains("#0\n$dumpvars\n0!\n0\"\n$end\n"));
+        Assert.assertTrue(dump.contains("#3000\n1!\n#5000\n1\"\n#10000\n"));
+    }
+
+    private static void record(ByteBuffer buffer, int run, int levels) {
+        buffer.putInt(run);
+        buffer.put((byte) levels);
+        buffer.put(new byte[3]);
+    }
+}
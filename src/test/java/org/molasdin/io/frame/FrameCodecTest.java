@@ -0,0 +1,114 @@
+package org.molasdin.io.frame;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Round trip of every codec with input split into random parts
+ */
+public class FrameCodecTest {
+
+    private static final int MAX_FRAME = 600;
+
+    @Test
+    public void testSlip() {
+        roundTrip(new SlipCodec(MAX_FRAME), new SlipCodec(MAX_FRAME), true);
+    }
+
+    @Test
+    public void testCobs() {
+        roundTrip(new CobsCodec(MAX_FRAME), new CobsCodec(MAX_FRAME), true);
+    }
+
+    @Test
+    public void testLengthPrefixed() {
+        roundTrip(new LengthPrefixedCodec(2, ByteOrder.BIG_ENDIAN, MAX_FRAME),
+                new LengthPrefixedCodec(2, ByteOrder.BIG_ENDIAN, MAX_FRAME), true);
+        roundTrip(new LengthPrefixedCodec(4, ByteOrder.LITTLE_ENDIAN, MAX_FRAME),
+                new LengthPrefixedCodec(4, ByteOrder.LITTLE_ENDIAN, MAX_FRAME), true);
+    }
+
+    @Test
+    public void testDelimiter() {
+        byte[] delimiter = {'\r', '\n'};
+        roundTrip(new DelimiterCodec(delimiter, MAX_FRAME), new DelimiterCodec(delimiter, MAX_FRAME), false);
+    }
+
+    @Test
+    public void testOverlappingDelimiter() {
+        DelimiterCodec codec = new DelimiterCodec(new byte[]{'a', 'a', 'b'}, 16);
+        List<byte[]> frames = decodeAll(codec, bytes("xaaab12aab"), 1);
+        Assert.assertEquals(2, frames.size());
+        Assert.assertArrayEquals(bytes("xa"), frames.get(0));
+        Assert.assertArrayEquals(bytes("12"), frames.get(1));
+    }
+
+    @Test
+    public void testTooLongFrameIsDropped() {
+        SlipCodec codec = new SlipCodec(4);
+        ByteBuffer stream = ByteBuffer.allocate(64);
+        codec.encode(ByteBuffer.wrap(bytes("123456")), stream);
+        codec.encode(ByteBuffer.wrap(bytes("ok")), stream);
+        stream.flip();
+        List<byte[]> frames = decodeAll(codec, stream.array(), stream.limit(), 3);
+        Assert.assertEquals(1, frames.size());
+        Assert.assertArrayEquals(bytes("ok"), frames.get(0));
+        Assert.assertEquals(1, codec.droppedFrames());
+    }
+
+    private void roundTrip(AbstractFrameCodec encoder, AbstractFrameCodec decoder, boolean binary) {
+        Random random = new Random(7);
+        List<byte[]> payloads = new ArrayList<>();
+        ByteBuffer stream = ByteBuffer.allocate(256 * 1024);
+        for (int i = 0; i < 200; i++) {
+            byte[] payload = new byte[1 + random.nextInt(MAX_FRAME)];
+            for (int j = 0; j < payload.length; j++) {
+                payload[j] = binary ? (byte) random.nextInt(256) : (byte) ('a' + random.nextInt(26));
+            }
+            if (binary && i % 10 == 0) {
+                Arrays.fill(payload, (byte) 0);
+            }
+            payloads.add(payload);
+            encoder.encode(ByteBuffer.wrap(payload), stream);
+        }
+        stream.flip();
+        for (int part : new int[]{1, 7, 300, stream.limit()}) {
+            decoder.reset();
+            List<byte[]> frames = decodeAll(decoder, stream.array(), stream.limit(), part);
+            Assert.assertEquals(payloads.size(), frames.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                Assert.assertArrayEquals(payloads.get(i), frames.get(i));
+            }
+        }
+        Assert.assertEquals(0, decoder.droppedFrames());
+    }
+
+    private static List<byte[]> decodeAll(FrameDecoder decoder, byte[] data, int part) {
+        return decodeAll(decoder, data, data.length, part);
+    }
+
+    private static List<byte[]> decodeAll(FrameDecoder decoder, byte[] data, int length, int part) {
+        List<byte[]> frames = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += part) {
+            ByteBuffer chunk = ByteBuffer.wrap(data, offset, Math.min(part, length - offset));
+            decoder.decode(chunk, frame -> {
+                byte[] copy = new byte[frame.remaining()];
+                frame.get(copy);
+                frames.add(copy);
+            });
+            Assert.assertFalse(chunk.hasRemaining());
+        }
+        return frames;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.metrics;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.serial.BasicSerial;
+import org.molasdin.io.serial.PseudoTerminal;
+
+import java.nio.ByteBuffer;
+
+public class DeviceMetricsTest {
+
+    private PseudoTerminal terminal;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        terminal.close();
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        BasicSerial master = (BasicSerial) terminal.master();
+        BasicSerial slave = (BasicSerial) terminal.slave();
+        DeviceMetrics in = slave.metrics();
+        DeviceMetrics out = master.metrics();
+        in.setTiming(true);
+        out.setTiming(true);
+
+        master.output().write(ByteBuffer.wrap(new byte[10]));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+        slave.input().setExactMode(true);
+        slave.input().read(buffer);
+        Assert.assertEquals(10L, out.bytesOut());
+        Assert.assertEquals(1L, out.writes());
+        Assert.assertEquals(10L, in.bytesIn());
+        Assert.assertEquals(in.reads(), in.readTime().count());
+        Assert.assertEquals(1L, out.writeTime().count());
+
+        slave.input().setExactMode(false);
+        slave.setReadTimeout(50L);
+        buffer.clear();
+        Assert.assertEquals(0, slave.input().read(buffer));
+        Assert.assertEquals(1L, in.zeroReads());
+
+        MetricsSnapshot snapshot = in.snapshot();
+        Assert.assertEquals(slave.name(), snapshot.name());
+        Assert.assertEquals(10L, snapshot.bytesIn());
+        Assert.assertEquals(in.reads(), snapshot.reads());
+        Assert.assertEquals(1L, snapshot.zeroReads());
+        Assert.assertTrue(snapshot.readTimeP99() >= snapshot.readTimeP50());
+
+        in.reset();
+        Assert.assertEquals(0L, in.bytesIn());
+        Assert.assertEquals(0L, in.zeroReads());
+        Assert.assertEquals(0L, in.readTime().count());
+    }
+
+    @Test
+    public void testTimingDisabled() throws Exception {
+        BasicSerial master = (BasicSerial) terminal.master();
+        master.output().write(ByteBuffer.wrap(new byte[4]));
+        Assert.assertEquals(4L, master.metrics().bytesOut());
+        Assert.assertEquals(0L, master.metrics().writeTime().count());
+    }
+}
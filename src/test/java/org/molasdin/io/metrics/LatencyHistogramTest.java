@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0L, histogram.percentile(0.5));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(10000);
+        }
+        Assert.assertEquals(100L, histogram.count());
+        Assert.assertEquals(10000L, histogram.max());
+        //upper bound of [64, 128) bucket
+        Assert.assertEquals(127L, histogram.percentile(0.5));
+        Assert.assertEquals(127L, histogram.percentile(0.9));
+        //bucket bound is limited by max
+        Assert.assertEquals(10000L, histogram.percentile(0.99));
+        Assert.assertEquals(127L, histogram.percentile(0));
+    }
+
+    @Test
+    public void testNegativeAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        Assert.assertEquals(1L, histogram.counts()[0]);
+        Assert.assertEquals(0L, histogram.percentile(0.99));
+        histogram.reset();
+        Assert.assertEquals(0L, histogram.count());
+        Assert.assertEquals(0L, histogram.max());
+    }
+}
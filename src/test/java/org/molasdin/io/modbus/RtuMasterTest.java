@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.modbus;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.serial.PseudoTerminal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class RtuMasterTest {
+
+    private PseudoTerminal terminal;
+    private RtuSlave slave;
+    private RtuMaster master;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        terminal.master().setBaudRateValue(115200);
+        terminal.slave().setBaudRateValue(115200);
+        slave = new RtuSlave(terminal.slave(), 1, 32).start();
+        master = new RtuMaster(terminal.master());
+        master.setResponseTimeout(500L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        master.close();
+        slave.close();
+        terminal.close();
+    }
+
+    @Test
+    public void testCrc() {
+        ByteBuffer check = ByteBuffer.wrap("123456789".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(0x4B37, ModbusCrc.INSTANCE.crc(check, 0, check.limit()));
+        //read of 10 holding registers from unit 1 ends with C5 CD
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.put(new byte[]{1, 3, 0, 0, 0, 10});
+        ModbusCrc.INSTANCE.append(frame);
+        Assert.assertEquals((byte) 0xC5, frame.get(6));
+        Assert.assertEquals((byte) 0xCD, frame.get(7));
+        frame.flip();
+        Assert.assertTrue(ModbusCrc.INSTANCE.check(frame));
+        frame.put(2, (byte) 1);
+        Assert.assertFalse(ModbusCrc.INSTANCE.check(frame));
+    }
+
+    @Test
+    public void testRegisters() {
+        slave.inputRegisters()[3] = 0xBEEF;
+        int[] values = {1, 2, 0xFFFF};
+        master.writeMultipleRegisters(1, 4, values, 0, values.length);
+        master.writeSingleRegister(1, 7, 42);
+        int[] result = new int[4];
+        Assert.assertEquals(4, master.readHoldingRegisters(1, 4, 4, result, 0));
+        Assert.assertArrayEquals(new int[]{1, 2, 0xFFFF, 42}, result);
+        master.readInputRegisters(1, 3, 1, result, 0);
+        Assert.assertEquals(0xBEEF, result[0]);
+        Assert.assertEquals(4, master.transactions());
+    }
+
+    @Test
+    public void testCoils() {
+        int[] values = {1, 0, 1, 1, 0, 0, 0, 0, 1, 1};
+        master.writeMultipleCoils(1, 2, values, 0, values.length);
+        master.writeSingleCoil(1, 20, true);
+        int[] result = new int[values.length];
+        master.readCoils(1, 2, values.length, result, 0);
+        Assert.assertArrayEquals(values, result);
+        master.readCoils(1, 20, 1, result, 0);
+        Assert.assertEquals(1, result[0]);
+    }
+
+    @Test
+    public void testExceptionResponse() {
+        try {
+            master.readHoldingRegisters(1, 30, 10, new int[10], 0);
+            Assert.fail("Read outside of table should fail");
+        } catch (ModbusException ex) {
+            Assert.assertEquals(2, ex.exceptionCode());
+        }
+        Assert.assertEquals(1, master.errors());
+    }
+}
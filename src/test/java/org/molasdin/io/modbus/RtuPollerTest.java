@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.modbus;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.DeviceExecution;
+import org.molasdin.io.serial.PseudoTerminal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RtuPollerTest {
+
+    private PseudoTerminal terminal;
+    private RtuSlave slave;
+    private RtuMaster master;
+    private RtuPoller poller;
+    private final List<Throwable> reported = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        terminal.master().setBaudRateValue(115200);
+        terminal.slave().setBaudRateValue(115200);
+        slave = new RtuSlave(terminal.slave(), 1, 32).start();
+        master = new RtuMaster(terminal.master());
+        master.setResponseTimeout(500L);
+        poller = new RtuPoller();
+        DeviceExecution.INSTANCE.setFailureHandler((thread, ex) -> reported.add(ex));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        poller.close();
+        DeviceExecution.INSTANCE.setFailureHandler(null);
+        master.close();
+        slave.close();
+        terminal.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCount() {
+        poller.schedule(master, ModbusFunction.READ_HOLDING_REGISTERS, 1, 0, RtuMaster.MAX_REGISTERS + 1, 10L,
+                new Listener(new CountDownLatch(1)));
+    }
+
+    @Test
+    public void testListenerFailure() throws Exception {
+        CountDownLatch polled = new CountDownLatch(3);
+        RuntimeException thrown = new IllegalStateException("listener");
+        poller.schedule(master, ModbusFunction.READ_HOLDING_REGISTERS, 1, 0, 4, 5L, new Listener(polled) {
+            @Override
+            public void polled(RtuPoller.Poll poll, int[] values, int count) {
+                super.polled(poll, values, count);
+                throw thrown;
+            }
+        });
+        //bus keeps polling after listener failures
+        Assert.assertTrue(polled.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(reported.size() >= 2);
+        Assert.assertSame(thrown, reported.get(0));
+    }
+
+    @Test
+    public void testClosedMaster() throws Exception {
+        master.close();
+        RtuPoller.Poll poll = poller.schedule(master, ModbusFunction.READ_HOLDING_REGISTERS, 1, 0, 4, 5L,
+                new Listener(new CountDownLatch(1)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (reported.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(reported.get(0) instanceof IllegalStateException);
+        Thread.sleep(50);
+        //poll is cancelled, so failure is reported once
+        Assert.assertEquals(1, reported.size());
+        Assert.assertEquals(1, poller.failures());
+        Assert.assertEquals(4, poll.count());
+    }
+
+    private static class Listener implements RtuPoller.PollListener {
+        private final CountDownLatch polled;
+
+        Listener(CountDownLatch polled) {
+            this.polled = polled;
+        }
+
+        @Override
+        public void polled(RtuPoller.Poll poll, int[] values, int count) {
+            polled.countDown();
+        }
+
+        @Override
+        public void failed(RtuPoller.Poll poll, ModbusException ex) {
+        }
+    }
+}
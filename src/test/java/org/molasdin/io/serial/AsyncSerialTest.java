@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncSerialTest {
+
+    private PseudoTerminal terminal;
+    private SerialReactor reactor;
+    private AsyncSerial async;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        reactor = new SerialReactor(1);
+        async = new AsyncSerial(reactor, terminal.slave());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        async.close();
+        reactor.close();
+        terminal.close();
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        ByteBuffer dst = ByteBuffer.allocateDirect(16);
+        CompletableFuture<Integer> future = async.read(dst);
+        Assert.assertFalse(future.isDone());
+        send(1, 2, 3);
+        int total = future.get(2, TimeUnit.SECONDS);
+        Assert.assertTrue(total >= 1 && total <= 3);
+        Assert.assertEquals(1, dst.get(0));
+        Assert.assertEquals(0, async.pendingReads());
+    }
+
+    @Test
+    public void testReadFully() throws Exception {
+        ByteBuffer dst = ByteBuffer.allocateDirect(6);
+        CompletableFuture<Integer> future = async.readFully(dst);
+        send(1, 2, 3);
+        Thread.sleep(50);
+        Assert.assertFalse(future.isDone());
+        send(4, 5, 6);
+        Assert.assertEquals(6, future.get(2, TimeUnit.SECONDS).intValue());
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i + 1, dst.get(i));
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        ByteBuffer src = ByteBuffer.allocateDirect(8);
+        for (int i = 0; i < 8; i++) {
+            src.put(i, (byte) i);
+        }
+        Assert.assertEquals(8, async.write(src).get(2, TimeUnit.SECONDS).intValue());
+        Assert.assertFalse(src.hasRemaining());
+        ByteBuffer in = ByteBuffer.allocateDirect(8);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        Assert.assertEquals(8, terminal.master().input().read(in, 8, deadline));
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(i, in.get(i));
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        async.setTimeout(50L);
+        ByteBuffer dst = ByteBuffer.allocateDirect(4);
+        CompletableFuture<Integer> future = async.readFully(dst);
+        send(7);
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            Assert.fail("Read should time out");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof InterruptedByTimeoutException);
+        }
+        //bytes read before timeout are kept
+        Assert.assertEquals(1, dst.position());
+        Assert.assertEquals(0, async.pendingReads());
+    }
+
+    @Test
+    public void testCloseFailsPending() throws Exception {
+        CompletableFuture<Integer> first = async.read(ByteBuffer.allocateDirect(4));
+        CompletableFuture<Integer> second = async.readFully(ByteBuffer.allocateDirect(4));
+        Assert.assertEquals(2, async.pendingReads());
+        async.close();
+        for (CompletableFuture<Integer> future : Arrays.asList(first, second)) {
+            try {
+                future.get(2, TimeUnit.SECONDS);
+                Assert.fail("Pending read should fail");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof AsynchronousCloseException);
+            }
+        }
+        try {
+            async.read(ByteBuffer.allocateDirect(4)).get(2, TimeUnit.SECONDS);
+            Assert.fail("Read after close should fail");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof AsynchronousCloseException);
+        }
+    }
+
+    @Test
+    public void testPeerClosed() throws Exception {
+        CompletableFuture<Integer> future = async.read(ByteBuffer.allocateDirect(4));
+        terminal.master().close();
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            Assert.fail("Read should fail after hangup");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(0, async.pendingReads());
+    }
+
+    private void send(int... values) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            terminal.master().output().write(buffer);
+        }
+    }
+}
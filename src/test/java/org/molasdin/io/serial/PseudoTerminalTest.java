@@ -0,0 +1,369 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.molasdin.io.serial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.DeviceExecution;
+import org.molasdin.io.InPin;
+import org.molasdin.io.OutPin;
+import org.molasdin.io.PinEventPolicy;
+import org.molasdin.io.Sleep;
+import org.molasdin.io.capture.PinCapture;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PseudoTerminalTest {
+
+    private PseudoTerminal terminal;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        terminal.close();
+    }
+
+    @Test
+    public void testConfig() {
+        Serial serial = terminal.slave();
+        for (Integer entry : Arrays.asList(9600, 115200, 250000, 921600)) {
+            serial.setBaudRateValue(entry);
+            Assert.assertEquals(entry, serial.baudRateValue());
+            Assert.assertEquals(entry, terminal.master().baudRateValue());
+        }
+        for (DataBits entry : DataBits.values()) {
+            serial.setDataBits(entry);
+            Assert.assertEquals(entry, serial.dataBits());
+        }
+        for (StopBits entry : StopBits.values()) {
+            serial.setStopBits(entry);
+            Assert.assertEquals(entry, serial.stopBits());
+        }
+        for (FlowControl entry : FlowControl.values()) {
+            serial.setFlowControl(entry);
+            Assert.assertEquals(entry, serial.flowControl());
+        }
+        for (Parity entry : Parity.values()) {
+            serial.setParity(entry);
+            Assert.assertEquals(entry, serial.parity());
+        }
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        ByteBuffer outBuffer = ByteBuffer.allocateDirect(64);
+        for (int i = 0; i < outBuffer.capacity(); i++) {
+            outBuffer.put((byte) i);
+        }
+        outBuffer.flip();
+        ByteBuffer inBuffer = ByteBuffer.allocateDirect(64);
+        terminal.master().output().write(outBuffer);
+        terminal.slave().input().setExactMode(true);
+        terminal.slave().input().read(inBuffer);
+        inBuffer.flip();
+        outBuffer.flip();
+        Assert.assertEquals(outBuffer, inBuffer);
+    }
+
+    @Test
+    public void testReadMinBytes() throws Exception {
+        ByteBuffer inBuffer = ByteBuffer.allocateDirect(16);
+        terminal.master().output().write(ByteBuffer.wrap(new byte[4]));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        Assert.assertEquals(4, terminal.slave().input().read(inBuffer, 8, deadline));
+        Assert.assertTrue(System.nanoTime() >= deadline);
+
+        terminal.master().output().write(ByteBuffer.wrap(new byte[8]));
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Assert.assertEquals(8, terminal.slave().input().read(inBuffer, 8, deadline));
+        Assert.assertEquals(12, inBuffer.position());
+    }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        ByteBuffer header = ByteBuffer.allocateDirect(8);
+        header.put(new byte[]{9, 9, 0x01, 0x03});
+        header.flip();
+        header.position(2);
+        ByteBuffer payload = ByteBuffer.allocateDirect(16);
+        for (int i = 0; i < 6; i++) {
+            payload.put((byte) (0x10 + i));
+        }
+        payload.flip();
+        ByteBuffer crc = ByteBuffer.allocateDirect(2);
+        crc.put((byte) 0x7A).put((byte) 0x5C).flip();
+        ByteBuffer[] frame = {ByteBuffer.allocateDirect(4), header, payload, crc};
+
+        Assert.assertEquals(10L, terminal.master().output().write(frame, 1, 3));
+        Assert.assertFalse(header.hasRemaining());
+        Assert.assertFalse(payload.hasRemaining());
+        Assert.assertFalse(crc.hasRemaining());
+        Assert.assertEquals(0, frame[0].position());
+
+        ByteBuffer inBuffer = ByteBuffer.allocateDirect(10);
+        terminal.slave().input().setExactMode(true);
+        terminal.slave().input().read(inBuffer);
+        Assert.assertArrayEquals(new byte[]{0x01, 0x03, 0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x7A, 0x5C}, content(inBuffer));
+    }
+
+    @Test
+    public void testScatteringExactRead() throws Exception {
+        ByteBuffer header = ByteBuffer.allocateDirect(2);
+        ByteBuffer payload = ByteBuffer.allocateDirect(5);
+        ByteBuffer crc = ByteBuffer.allocateDirect(2);
+        ByteBuffer[] frame = {header, payload, crc};
+        terminal.master().output().write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        try {
+            //rest of frame arrives while exact read is waiting
+            sender.submit(() -> {
+                Thread.sleep(30);
+                return terminal.master().output().write(ByteBuffer.wrap(new byte[]{4, 5, 6, 7, 8, 9}));
+            });
+            terminal.slave().input().setExactMode(true);
+            Assert.assertEquals(9L, terminal.slave().input().read(frame));
+        } finally {
+            sender.shutdown();
+        }
+        Assert.assertArrayEquals(new byte[]{1, 2}, content(header));
+        Assert.assertArrayEquals(new byte[]{3, 4, 5, 6, 7}, content(payload));
+        Assert.assertArrayEquals(new byte[]{8, 9}, content(crc));
+    }
+
+    @Test
+    public void testHeapBufferWindow() throws Exception {
+        byte[] outData = new byte[32];
+        for (int i = 0; i < outData.length; i++) {
+            outData[i] = (byte) i;
+        }
+        ByteBuffer sliced = ByteBuffer.wrap(outData, 8, 12).slice();
+        sliced.position(2).limit(6);
+        Assert.assertEquals(4, terminal.master().output().write(sliced));
+        Assert.assertEquals(6, sliced.position());
+        ByteBuffer readOnly = ByteBuffer.wrap(outData).asReadOnlyBuffer();
+        readOnly.position(20).limit(24);
+        Assert.assertEquals(4, terminal.master().output().write(readOnly));
+        Assert.assertEquals(24, readOnly.position());
+
+        byte[] inData = new byte[24];
+        Arrays.fill(inData, (byte) -1);
+        ByteBuffer target = ByteBuffer.wrap(inData, 4, 16).slice();
+        target.position(3).limit(11);
+        terminal.slave().input().setExactMode(true);
+        Assert.assertEquals(8, terminal.slave().input().read(target));
+        Assert.assertEquals(11, target.position());
+        byte[] expected = new byte[24];
+        Arrays.fill(expected, (byte) -1);
+        byte[] received = {10, 11, 12, 13, 20, 21, 22, 23};
+        System.arraycopy(received, 0, expected, 7, received.length);
+        Assert.assertArrayEquals(expected, inData);
+    }
+
+    private static byte[] content(ByteBuffer buffer) {
+        buffer.flip();
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    @Test
+    public void testPins() {
+        OutPin dtr = terminal.master().outputPinFor(OutputSignal.DTR);
+        OutPin rts = terminal.master().outputPinFor(OutputSignal.RTS);
+        InPin dsr = terminal.slave().inputPinFor(InputSignal.DSR);
+        InPin dcd = terminal.slave().inputPinFor(InputSignal.DCD);
+        InPin cts = terminal.slave().inputPinFor(InputSignal.CTS);
+        Assert.assertTrue(dsr.value() && dcd.value() && cts.value());
+        dtr.setValue(false);
+        Assert.assertFalse(dsr.value());
+        Assert.assertFalse(dcd.value());
+        Assert.assertTrue(cts.value());
+        rts.setValue(false);
+        Assert.assertFalse(cts.value());
+
+        List<Boolean> outputs = Arrays.asList(true, false, true, false, true, false);
+        List<Boolean> results = Collections.synchronizedList(new ArrayList<>(outputs.size()));
+        cts.addListener(results::add);
+        terminal.slave().activatePinListeners();
+        for (Boolean entry : outputs) {
+            rts.setValue(entry);
+            Sleep.sleepMillis(10);
+        }
+        terminal.slave().stopPinListeners();
+        Assert.assertEquals(outputs, results);
+    }
+
+    @Test
+    public void testWireTiming() throws Exception {
+        terminal.setWireTiming(true);
+        terminal.master().setBaudRateValue(9600);
+        //8N1 takes 10 bits per character, so 96 bytes need 100 millis
+        ByteBuffer outBuffer = ByteBuffer.allocateDirect(96);
+        ByteBuffer inBuffer = ByteBuffer.allocateDirect(96);
+        long start = System.nanoTime();
+        terminal.master().output().write(outBuffer);
+        terminal.slave().input().setExactMode(true);
+        terminal.slave().input().read(inBuffer);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertFalse(inBuffer.hasRemaining());
+        Assert.assertTrue("Transfer took " + elapsed + " millis", elapsed >= 90);
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        OutPin rts = terminal.master().outputPinFor(OutputSignal.RTS);
+        PinCapture capture = terminal.slave().capture(ByteBuffer.allocateDirect(1024),
+                TimeUnit.MICROSECONDS.toNanos(100));
+        try {
+            terminal.slave().capture(ByteBuffer.allocateDirect(64), 1000L);
+            Assert.fail("Second capture should be rejected");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+        Sleep.sleepMillis(10);
+        rts.setValue(false);
+        Sleep.sleepMillis(10);
+        capture.stop();
+        int cts = 1 << InputSignal.CTS.value();
+        Assert.assertEquals(2, capture.records());
+        Assert.assertEquals(cts, capture.levels(0) & cts);
+        Assert.assertEquals(0, capture.levels(1) & cts);
+        //finished capture is forgotten, so next one may start
+        terminal.slave().capture(ByteBuffer.allocateDirect(64), 1000L).stop();
+    }
+
+    @Test
+    public void testPinEventPolicy() throws Exception {
+        BasicSerial slave = (BasicSerial) terminal.slave();
+        OutPin rts = terminal.master().outputPinFor(OutputSignal.RTS);
+        slave.setPinEventPolicy(PinEventPolicy.DROP_OLDEST, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        slave.inputPinFor(InputSignal.CTS).addListener(value -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        slave.activatePinListeners();
+        for (int i = 0; i < 10; i++) {
+            rts.setValue(i % 2 != 0);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (slave.signalsProcessor().droppedEvents() == 0 && System.nanoTime() < deadline) {
+            Sleep.sleepMillis(5);
+        }
+        release.countDown();
+        slave.stopPinListeners();
+        Assert.assertTrue(slave.signalsProcessor().droppedEvents() > 0);
+    }
+
+    @Test
+    public void testListenerFailure() throws Exception {
+        RuntimeException thrown = new IllegalStateException("listener");
+        List<Throwable> reported = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch received = new CountDownLatch(2);
+        DeviceExecution.INSTANCE.setFailureHandler((thread, ex) -> reported.add(ex));
+        try {
+            Serial slave = terminal.slave();
+            slave.inputPinFor(InputSignal.CTS).addListener(value -> {
+                received.countDown();
+                throw thrown;
+            });
+            slave.activatePinListeners();
+            OutPin rts = terminal.master().outputPinFor(OutputSignal.RTS);
+            rts.setValue(false);
+            rts.setValue(true);
+            Assert.assertTrue(received.await(2, TimeUnit.SECONDS));
+            slave.stopPinListeners();
+        } finally {
+            DeviceExecution.INSTANCE.setFailureHandler(null);
+        }
+        Assert.assertEquals(Arrays.asList(thrown, thrown), reported);
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        Serial slave = terminal.slave();
+        OutPin rts = terminal.master().outputPinFor(OutputSignal.RTS);
+        InPin cts = slave.inputPinFor(InputSignal.CTS);
+        cts.setDebounce(50000L, 0);
+        List<Boolean> events = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch received = new CountDownLatch(1);
+        cts.addListener(value -> {
+            events.add(value);
+            received.countDown();
+        });
+        slave.activatePinListeners();
+        for (int i = 0; i < 5; i++) {
+            rts.setValue(false);
+            rts.setValue(true);
+        }
+        Sleep.sleepMillis(150);
+        Assert.assertTrue(events.isEmpty());
+
+        long started = System.nanoTime();
+        rts.setValue(false);
+        Assert.assertTrue(received.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        Sleep.sleepMillis(100);
+        slave.stopPinListeners();
+        Assert.assertEquals(Collections.singletonList(false), events);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDebounceSamples() {
+        terminal.slave().inputPinFor(InputSignal.CTS).setDebounce(1000L, 32);
+    }
+
+    @Test
+    public void testListenerExecutor() throws Exception {
+        BasicSerial slave = (BasicSerial) terminal.slave();
+        AtomicInteger executed = new AtomicInteger();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            slave.setExecutor(task -> {
+                executed.incrementAndGet();
+                pool.execute(task);
+            });
+            CountDownLatch received = new CountDownLatch(1);
+            slave.inputPinFor(InputSignal.CTS).addListener(value -> received.countDown());
+            slave.activatePinListeners();
+            terminal.master().outputPinFor(OutputSignal.RTS).setValue(false);
+            Assert.assertTrue(received.await(2, TimeUnit.SECONDS));
+            slave.stopPinListeners();
+            Assert.assertTrue(executed.get() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.ReadAhead;
+import org.molasdin.io.Sleep;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class ReadAheadTest {
+
+    private static final int TOTAL = 1000;
+
+    private PseudoTerminal terminal;
+    private BasicSerial slave;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        slave = (BasicSerial) terminal.slave();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        slave.disableReadAhead();
+        terminal.close();
+    }
+
+    @Test
+    public void testSlowConsumer() throws Exception {
+        slave.enableReadAhead(4096);
+        ReadAhead readAhead = slave.readAhead();
+        send(TOTAL);
+        Assert.assertTrue(await(() -> readAhead.received() == TOTAL));
+        Assert.assertEquals(TOTAL, readAhead.occupancy());
+        Assert.assertEquals(TOTAL, readAhead.peakOccupancy());
+        Assert.assertEquals(0, readAhead.overruns());
+        check(receive(TOTAL));
+        Assert.assertEquals(0, readAhead.occupancy());
+    }
+
+    @Test
+    public void testOverrun() throws Exception {
+        slave.enableReadAhead(64);
+        ReadAhead readAhead = slave.readAhead();
+        Assert.assertEquals(64, readAhead.capacity());
+        send(TOTAL);
+        Assert.assertTrue(await(() -> readAhead.overruns() > 0));
+        Assert.assertEquals(64, readAhead.peakOccupancy());
+        //reader resumes when consumer frees ring, so nothing is lost
+        check(receive(TOTAL));
+        Assert.assertEquals(TOTAL, readAhead.received());
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        slave.enableReadAhead(64);
+        terminal.master().close();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        Assert.assertTrue(await(() -> slave.readAhead().isFailed()));
+        Assert.assertEquals(-1, slave.readAhead().read(buffer, 100L));
+    }
+
+    @Test
+    public void testZeroReadIsEndOfStream() throws Exception {
+        ReadAhead readAhead = new ReadAhead(16, "zero-read") {
+            @Override
+            protected boolean waitForData(long micros) {
+                return true;
+            }
+
+            @Override
+            protected int fill(ByteBuffer buffer, int offset, int size) {
+                return 0;
+            }
+        };
+        readAhead.start();
+        try {
+            Assert.assertEquals(-1, readAhead.read(ByteBuffer.allocateDirect(4), 2000L));
+            Assert.assertTrue(readAhead.isFailed());
+        } finally {
+            readAhead.stop();
+        }
+    }
+
+    private void send(int total) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(total);
+        for (int i = 0; i < total; i++) {
+            buffer.put((byte) i);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            terminal.master().output().write(buffer);
+        }
+    }
+
+    private ByteBuffer receive(int total) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(total);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (buffer.hasRemaining() && System.nanoTime() < deadline) {
+            //slow consumer takes small parts
+            ByteBuffer part = buffer.duplicate();
+            part.limit(Math.min(buffer.limit(), buffer.position() + 10));
+            int result = slave.input().read(part);
+            Assert.assertTrue(result >= 0);
+            buffer.position(part.position());
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void check(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            Assert.assertEquals((byte) i, buffer.get(i));
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Sleep.sleepMillis(5);
+        }
+        return true;
+    }
+}
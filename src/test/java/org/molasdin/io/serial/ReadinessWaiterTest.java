@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ReadinessWaiterTest {
+
+    private PseudoTerminal terminal;
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+        terminal.close();
+    }
+
+    @Test
+    public void testWakesOnData() throws Exception {
+        ReadinessWaiter waiter = ReadinessWaiter.shared();
+        Assert.assertNotNull(waiter);
+        int descriptor = ((BasicSerial) terminal.slave()).descriptor();
+        scheduler.schedule(() -> {
+            terminal.master().output().write(ByteBuffer.wrap(new byte[]{1}));
+            return null;
+        }, 20, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        Assert.assertTrue(waiter.await(descriptor, TimeUnit.SECONDS.toNanos(2)));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("Woken after " + elapsed + " millis", elapsed < 1000);
+    }
+
+    @Test
+    public void testTimeout() {
+        ReadinessWaiter waiter = ReadinessWaiter.shared();
+        int descriptor = ((BasicSerial) terminal.slave()).descriptor();
+        long start = System.nanoTime();
+        Assert.assertFalse(waiter.await(descriptor, TimeUnit.MILLISECONDS.toNanos(20)));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        //descriptor is released so it can be awaited again
+        Assert.assertFalse(waiter.await(descriptor, TimeUnit.MILLISECONDS.toNanos(5)));
+    }
+
+    @Test
+    public void testInterrupted() {
+        ReadinessWaiter waiter = ReadinessWaiter.shared();
+        int descriptor = ((BasicSerial) terminal.slave()).descriptor();
+        Thread.currentThread().interrupt();
+        try {
+            Assert.assertFalse(waiter.await(descriptor, TimeUnit.SECONDS.toNanos(2)));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
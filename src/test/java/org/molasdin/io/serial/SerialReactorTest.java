@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SerialReactorTest {
+
+    private PseudoTerminal terminal;
+    private SerialReactor reactor;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+        reactor = new SerialReactor(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reactor.close();
+        terminal.close();
+    }
+
+    @Test
+    public void testHandlerFailure() throws Exception {
+        RuntimeException thrown = new IllegalStateException("handler");
+        AtomicReference<RuntimeException> reported = new AtomicReference<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        CountDownLatch served = new CountDownLatch(1);
+        reactor.register(terminal.slave(), SerialReactor.OP_READ, new SerialReactor.ReadyHandler() {
+            private boolean first = true;
+
+            @Override
+            public void ready(SerialReactor.Key key, int readyOps) {
+                key.read(ByteBuffer.allocateDirect(16));
+                if (first) {
+                    first = false;
+                    throw thrown;
+                }
+                served.countDown();
+            }
+
+            @Override
+            public void failed(SerialReactor.Key key, RuntimeException ex) {
+                reported.set(ex);
+                failed.countDown();
+            }
+        });
+        write(1);
+        Assert.assertTrue(failed.await(2, TimeUnit.SECONDS));
+        Assert.assertSame(thrown, reported.get());
+        write(2);
+        Assert.assertTrue(served.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCloseWithBusyHandler() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        reactor.register(terminal.slave(), SerialReactor.OP_READ, (key, readyOps) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        write(1);
+        Assert.assertTrue(entered.await(2, TimeUnit.SECONDS));
+        reactor.close();
+        //loop thread outlived close and frees native reactor on exit
+        release.countDown();
+        Thread.sleep(100);
+        reactor.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegisterAfterClose() {
+        reactor.close();
+        reactor.register(terminal.slave(), SerialReactor.OP_READ, (key, readyOps) -> {
+        });
+    }
+
+    private void write(int value) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+        buffer.put(0, (byte) value);
+        terminal.master().output().write(buffer);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.serial.manager;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.molasdin.io.metrics.MetricsSnapshot;
+import org.molasdin.io.serial.PseudoTerminal;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class SerialManagerTest {
+
+    private PseudoTerminal terminal;
+
+    @Before
+    public void setUp() {
+        terminal = PseudoTerminal.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SerialManager.INSTANCE.close();
+        terminal.close();
+    }
+
+    @Test
+    public void testMetricsRegistration() throws Exception {
+        String name = terminal.slave().name();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("org.molasdin.io:type=Serial,name=" + ObjectName.quote(name));
+
+        SerialManager.INSTANCE.create(name);
+        Assert.assertTrue(server.isRegistered(objectName));
+        Assert.assertEquals(name, server.getAttribute(objectName, "Name"));
+        Assert.assertEquals(0L, server.getAttribute(objectName, "BytesIn"));
+        List<MetricsSnapshot> snapshots = SerialManager.INSTANCE.snapshots();
+        Assert.assertEquals(1, snapshots.size());
+        Assert.assertEquals(name, snapshots.get(0).name());
+
+        SerialManager.INSTANCE.close();
+        Assert.assertFalse(server.isRegistered(objectName));
+        Assert.assertTrue(SerialManager.INSTANCE.snapshots().isEmpty());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.spi;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.molasdin.io.InPin;
+import org.molasdin.io.InputPinListener;
+import org.molasdin.io.OutPin;
+
+import java.nio.ByteBuffer;
+
+public class PinsSPITest {
+
+    private static final byte[] MASTER = {(byte) 0xA5, 0x3C, (byte) 0x81};
+    private static final byte[] SLAVE = {0x5A, (byte) 0xC3, 0x7E};
+
+    /**
+     * Slave which shifts on clock edges according to its own mode
+     */
+    private static final class Slave {
+        final boolean cpol;
+        final boolean cpha;
+        final ByteBuffer in = ByteBuffer.allocate(SLAVE.length);
+        boolean selected;
+        boolean sck;
+        boolean mosi;
+        boolean miso;
+        int shifted;
+        int bits;
+        int sent;
+        int selections;
+
+        Slave(boolean cpol, boolean cpha) {
+            this.cpol = cpol;
+            this.cpha = cpha;
+            this.sck = cpol;
+        }
+
+        void select(boolean flag) {
+            if (flag && !selected) {
+                selections++;
+                if (!cpha) {
+                    shiftOut();
+                }
+            }
+            selected = flag;
+        }
+
+        void clock(boolean value) {
+            if (value == sck) {
+                return;
+            }
+            sck = value;
+            if (!selected) {
+                return;
+            }
+            boolean leading = value != cpol;
+            if (leading == cpha) {
+                shiftOut();
+            } else {
+                shifted = (shifted << 1) | (mosi ? 1 : 0);
+                if (++bits == 8) {
+                    in.put((byte) shifted);
+                    bits = 0;
+                }
+            }
+        }
+
+        void shiftOut() {
+            int bit = sent++;
+            miso = bit < SLAVE.length * 8 && ((SLAVE[bit >> 3] >> (7 - (bit & 7))) & 1) != 0;
+        }
+    }
+
+    private static final class Line implements OutPin, InPin {
+        private final String name;
+        private final Slave slave;
+
+        Line(String name, Slave slave) {
+            this.name = name;
+            this.slave = slave;
+        }
+
+        @Override
+        public void setValue(Boolean value) {
+            switch (name) {
+                case "SCK":
+                    slave.clock(value);
+                    break;
+                case "MOSI":
+                    slave.mosi = value;
+                    break;
+                default:
+                    slave.select(!value);
+            }
+        }
+
+        @Override
+        public Boolean value() {
+            return slave.miso;
+        }
+
+        @Override
+        public void addListener(InputPinListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeListener(InputPinListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testModes() {
+        for (int mode = 0; mode < 4; mode++) {
+            Slave slave = new Slave((mode & 2) != 0, (mode & 1) != 0);
+            PinsSPI spi = spi(slave);
+            ByteBuffer rx = ByteBuffer.allocate(MASTER.length);
+            spi.transfer(ByteBuffer.wrap(MASTER), rx);
+            Assert.assertArrayEquals("mode " + mode, SLAVE, rx.array());
+            Assert.assertArrayEquals("mode " + mode, MASTER, slave.in.array());
+            Assert.assertFalse(slave.selected);
+        }
+    }
+
+    @Test
+    public void testChainedTransfer() {
+        Slave slave = new Slave(false, false);
+        PinsSPI spi = spi(slave);
+        ByteBuffer data = ByteBuffer.wrap(MASTER.clone());
+        data.limit(1);
+        spi.transfer(data, data, true);
+        Assert.assertTrue(slave.selected);
+        data.limit(MASTER.length);
+        spi.transfer(data, data, true);
+        spi.transfer(ByteBuffer.allocate(0), null, false);
+        Assert.assertFalse(slave.selected);
+        Assert.assertEquals(1, slave.selections);
+        Assert.assertEquals(MASTER.length, data.position());
+        Assert.assertArrayEquals(SLAVE, data.array());
+        Assert.assertArrayEquals(MASTER, slave.in.array());
+    }
+
+    private static PinsSPI spi(Slave slave) {
+        PinsSPI spi = new PinsSPI(new Line("SCK", slave), new Line("MOSI", slave),
+                new Line("MISO", slave), new Line("CS", slave));
+        spi.setCPOL(slave.cpol);
+        spi.setCPHA(slave.cpha);
+        spi.setSCKPeriod(0L);
+        return spi;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ByteRingTest {
+
+    @Test
+    public void testCapacityFor() {
+        Assert.assertEquals(1, ByteRing.capacityFor(0));
+        Assert.assertEquals(64, ByteRing.capacityFor(64));
+        Assert.assertEquals(128, ByteRing.capacityFor(65));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapStorage() {
+        new ByteRing(ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void testWrapAround() {
+        ByteRing ring = new ByteRing(ByteBuffer.allocateDirect(8));
+        Assert.assertEquals(6, ring.offer(bytes(0, 6)));
+        Assert.assertEquals(4, ring.poll(ByteBuffer.allocate(4)));
+        Assert.assertEquals(2, ring.size());
+        //free space is split by end of storage
+        Assert.assertEquals(2, ring.writableRegion());
+        Assert.assertEquals(6, ring.offer(bytes(6, 8)));
+        Assert.assertEquals(8, ring.size());
+        Assert.assertEquals(0, ring.writableRegion());
+        ByteBuffer target = ByteBuffer.allocate(16);
+        Assert.assertEquals(8, ring.poll(target));
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(i + 4, target.get(i));
+        }
+        Assert.assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testCommit() {
+        ByteRing ring = new ByteRing(ByteBuffer.allocateDirect(4));
+        ring.storage().put(ring.writeOffset(), (byte) 7);
+        ring.commit(1);
+        ByteBuffer target = ByteBuffer.allocate(4);
+        Assert.assertEquals(1, ring.poll(target));
+        Assert.assertEquals(7, target.get(0));
+        ring.offer(bytes(0, 3));
+        ring.clear();
+        Assert.assertEquals(0, ring.size());
+    }
+
+    private static ByteBuffer bytes(int from, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) (from + i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Bersenev Dmitry molasdin@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.molasdin.io.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DirectBufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        DirectBufferPool pool = new DirectBufferPool();
+        ByteBuffer first = pool.acquire(100);
+        Assert.assertEquals(100, first.limit());
+        Assert.assertEquals(128, first.capacity());
+        pool.release(first);
+        Assert.assertSame(first, pool.acquire(70));
+        Assert.assertEquals(1, pool.reused());
+    }
+
+    @Test
+    public void testDoubleRelease() {
+        for (boolean threadCache : new boolean[]{true, false}) {
+            DirectBufferPool pool = new DirectBufferPool(64, 1024, 4, threadCache, false);
+            ByteBuffer buffer = pool.acquire(64);
+            pool.release(buffer);
+            try {
+                pool.release(buffer);
+                Assert.fail("Second release should be rejected");
+            } catch (IllegalStateException ex) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void testLeakReporter() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(64, 1024, 4, true, true);
+        AtomicInteger reported = new AtomicInteger();
+        pool.setLeakReporter((capacity, site) -> reported.addAndGet(capacity));
+        pool.acquire(64);
+        for (int i = 0; i < 50 && pool.leaked() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+            pool.release(pool.acquire(64));
+        }
+        Assert.assertEquals(1, pool.leaked());
+        Assert.assertEquals(64, reported.get());
+        Assert.assertEquals(0, pool.outstanding());
+    }
+}